@@ -0,0 +1,65 @@
+package com.weather;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agregacja dzienna/miesięczna dziesięciu lat danych godzinowych oraz samo jądro redukcji
+ * w wersji skalarnej i wektorowej.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"DAY", "MONTH"})
+    public Aggregator.Period period;
+
+    private long[] times;
+    private double[] values;
+    private final double[] out = new double[4];
+    private final ColumnKernels scalar = new ColumnKernels.Scalar();
+    private final ColumnKernels best = ColumnKernels.best();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceStdout();
+        WeatherService parser = new WeatherService();
+        WeatherData data = parser.parseWeatherResponse(BenchmarkData.payload(3653));
+        parser.close();
+        times = data.getTimeEpochs();
+        values = data.getValues(WeatherVariable.TEMPERATURE);
+    }
+
+    @Benchmark
+    public Rollup rollup() {
+        return Aggregator.rollup(times, values, period);
+    }
+
+    @Benchmark
+    public double[] reduceScalar() {
+        scalar.reduce(values, 0, values.length, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] reduceBest() {
+        best.reduce(values, 0, values.length, out);
+        return out;
+    }
+}
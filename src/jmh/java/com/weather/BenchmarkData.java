@@ -0,0 +1,70 @@
+package com.weather;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Dane wejściowe dla benchmarków: odpowiedzi w formacie Open-Meteo o zadanej długości
+ * i syntetyczny plik miast wielkości bazy światowej.
+ */
+final class BenchmarkData {
+
+    static final int WORLD_CITIES = 45_000;
+
+    private static final String[] SYLLABLES = {
+            "war", "kra", "gda", "wro", "poz", "lo", "ber", "par", "lon", "ma", "dri", "to",
+            "ky", "new", "york", "san", "ta", "ri", "no", "vi", "sko", "burg", "ville", "ow"
+    };
+    private static final String[] COUNTRIES = {
+            "Poland", "Germany", "France", "Spain", "Italy", "Japan", "Brazil", "India", "United States", "Nigeria"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Odpowiedź API z danymi godzinowymi dla podanej liczby dni (ten sam generator co OpenMeteoStub).
+     */
+    static String payload(int days) {
+        LocalDate end = LocalDate.of(2024, 12, 31);
+        return OpenMeteoStub.hourlyJson(52.2297, 21.0122, end.minusDays(days - 1), end);
+    }
+
+    /**
+     * CSV w formacie worldcities (11 kolumn, nagłówek), z deterministycznymi nazwami i rozkładem populacji.
+     */
+    static byte[] worldCitiesCsv(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder csv = new StringBuilder(count * 96);
+        csv.append("city,city_ascii,lat,lng,country,iso2,iso3,admin_name,capital,population,id\n");
+        for (int i = 0; i < count; i++) {
+            StringBuilder name = new StringBuilder();
+            int parts = 2 + random.nextInt(2);
+            for (int p = 0; p < parts; p++) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            // Heavy-tailed population like real city lists
+            int population = (int) Math.min(Integer.MAX_VALUE, 1000 / Math.pow(random.nextDouble() + 1e-6, 1.2));
+            csv.append(String.format(Locale.US, "\"%s\",\"%s\",\"%.4f\",\"%.4f\",\"%s\",\"XX\",\"XXX\",\"\",\"\",\"%d\",\"%d\"%n",
+                    name, name, random.nextDouble(-60, 70), random.nextDouble(-180, 180),
+                    COUNTRIES[random.nextInt(COUNTRIES.length)], population, i));
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Services log through the asynchronous writer; drop everything below WARN and discard stdout,
+     * otherwise the writer thread competes with the measured code for the console.
+     */
+    static void silenceStdout() {
+        Log.setLevel("CacheService", Log.Level.WARN);
+        Log.setLevel("CityService", Log.Level.WARN);
+        Log.setLevel("WeatherService", Log.Level.WARN);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
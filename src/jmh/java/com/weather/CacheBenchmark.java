@@ -0,0 +1,70 @@
+package com.weather;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zapis i odczyt CacheService (serializacja JSON + nośnik) dla obu warstw. Wariant REDIS wymaga
+ * lokalnego serwera na porcie 6379; bez niego kończy się błędem w setUp, a pozostałe benchmarki działają dalej.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final String KEY = "benchmark_cache_entry";
+
+    @Param({"FILE", "REDIS"})
+    public String tier;
+
+    @Param({"7", "366"})
+    public int days;
+
+    private CacheService cacheService;
+    private WeatherData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceStdout();
+        cacheService = new CacheService("REDIS".equals(tier));
+        if ("REDIS".equals(tier) && !cacheService.isRedisAvailable()) {
+            cacheService.close();
+            throw new IllegalStateException("Redis niedostępny na localhost:6379");
+        }
+        WeatherService parser = new WeatherService();
+        data = parser.parseWeatherResponse(BenchmarkData.payload(days));
+        parser.close();
+        cacheService.cacheWeatherData(KEY, data, 3600);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheService.close();
+    }
+
+    @Benchmark
+    public void put() {
+        cacheService.cacheWeatherData(KEY, data, 3600);
+    }
+
+    @Benchmark
+    public WeatherData get() {
+        return cacheService.getWeatherData(KEY);
+    }
+}
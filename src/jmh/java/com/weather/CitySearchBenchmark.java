@@ -0,0 +1,59 @@
+package com.weather;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wyszukiwanie miast na syntetycznej liście wielkości bazy światowej: autouzupełnianie
+ * (krótkie i dłuższe prefiksy, brak wyników), wyszukiwanie dokładne i najbliższe miasto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CitySearchBenchmark {
+
+    @Param({"wa", "krato", "qqq"})
+    public String query;
+
+    private CityService cityService;
+    private String existingName;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceStdout();
+        cityService = new CityService(new ByteArrayInputStream(BenchmarkData.worldCitiesCsv(BenchmarkData.WORLD_CITIES)));
+        existingName = cityService.getPopularCities(1).get(0).getName();
+    }
+
+    @Benchmark
+    public List<City> search() {
+        return cityService.searchCities(query, 10);
+    }
+
+    @Benchmark
+    public City findByName() {
+        return cityService.findCityByName(existingName);
+    }
+
+    @Benchmark
+    public List<City> nearest() {
+        return cityService.findNearest(52.2297, 21.0122, 5);
+    }
+}
@@ -0,0 +1,58 @@
+package com.weather;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsowanie odpowiedzi Open-Meteo: prognoza tygodniowa, kwartał, rok i pięć lat danych godzinowych.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"7", "92", "366", "1827"})
+    public int days;
+
+    private WeatherService weatherService;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceStdout();
+        weatherService = new WeatherService();
+        payload = BenchmarkData.payload(days);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        weatherService.close();
+    }
+
+    @Benchmark
+    public WeatherData parse() {
+        return weatherService.parseWeatherResponse(payload);
+    }
+
+    @Benchmark
+    public double[] parseAndColumn() {
+        // Parsing plus the first primitive column access, as every chart and export does
+        return weatherService.parseWeatherResponse(payload).getValues(WeatherVariable.TEMPERATURE);
+    }
+}
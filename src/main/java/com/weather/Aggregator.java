@@ -0,0 +1,181 @@
+package com.weather;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Agregacje dzienne, tygodniowe i miesięczne kolumn WeatherData (min, max, suma, średnia, percentyle).
+ * Dane godzinowe są uporządkowane w czasie, więc każdy okres to ciągły fragment tablicy.
+ * Min, max, suma i średnia powstają w jednym sekwencyjnym przebiegu okresu, a percentyle są dokładne
+ * (najbliższa ranga): wartości okresu, najwyżej 744 godziny, są kopiowane do bufora i wybierane quickselectem.
+ */
+public class Aggregator {
+
+    public enum Period {
+        DAY("Dzienna"), WEEK("Tygodniowa"), MONTH("Miesięczna");
+
+        private final String label;
+
+        Period(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final ColumnKernels KERNELS = ColumnKernels.best();
+
+    private Aggregator() {
+    }
+
+    public static Rollup rollup(WeatherData data, WeatherVariable variable, Period period) {
+        return rollup(data.getTimeEpochs(), data.getValues(variable), period);
+    }
+
+    /**
+     * @param times  rosnące sekundy epoki
+     * @param values wartości (NaN = brak), co najmniej tyle co times
+     */
+    public static Rollup rollup(long[] times, double[] values, Period period) {
+        int[] offsets = periodOffsets(times, period);
+        int periods = offsets.length - 1;
+        Rollup rollup = new Rollup(period, periods);
+
+        double[] reduced = new double[4];
+        double[] scratch = new double[0];
+        for (int p = 0; p < periods; p++) {
+            int from = offsets[p];
+            int to = Math.min(offsets[p + 1], values.length);
+            rollup.getPeriodStarts()[p] = periodStart(times[from], period);
+
+            KERNELS.reduce(values, from, Math.max(from, to), reduced);
+            int count = (int) reduced[ColumnKernels.COUNT];
+            rollup.getCounts()[p] = count;
+            if (count == 0) {
+                rollup.getMin()[p] = Double.NaN;
+                rollup.getMax()[p] = Double.NaN;
+                rollup.getMean()[p] = Double.NaN;
+                rollup.getP10()[p] = Double.NaN;
+                rollup.getP50()[p] = Double.NaN;
+                rollup.getP90()[p] = Double.NaN;
+                continue;
+            }
+            rollup.getMin()[p] = reduced[ColumnKernels.MIN];
+            rollup.getMax()[p] = reduced[ColumnKernels.MAX];
+            rollup.getSum()[p] = reduced[ColumnKernels.SUM];
+            rollup.getMean()[p] = reduced[ColumnKernels.SUM] / count;
+
+            // Percentiles by selection on a copy of this period only; the slice is still in cache
+            if (scratch.length < count) {
+                scratch = new double[Math.max(count, scratch.length * 2)];
+            }
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                double v = values[i];
+                if (v == v) {
+                    scratch[n++] = v;
+                }
+            }
+            // Each selection leaves larger values above its rank, so the next one searches only those
+            int k10 = rank(0.10, n);
+            int k50 = rank(0.50, n);
+            rollup.getP10()[p] = select(scratch, 0, n, k10);
+            rollup.getP50()[p] = select(scratch, k10, n, k50);
+            rollup.getP90()[p] = select(scratch, k50, n, rank(0.90, n));
+        }
+        return rollup;
+    }
+
+    /**
+     * Start indices of consecutive periods plus a final times.length sentinel.
+     */
+    static int[] periodOffsets(long[] times, Period period) {
+        int[] offsets = new int[16];
+        int count = 0;
+        long currentKey = Long.MIN_VALUE;
+        long currentDay = Long.MIN_VALUE;
+        for (int i = 0; i < times.length; i++) {
+            long day = Math.floorDiv(times[i], SECONDS_PER_DAY);
+            if (day == currentDay) {
+                continue; // periods never change within a day
+            }
+            currentDay = day;
+            long key = periodKey(day, period);
+            if (key != currentKey) {
+                currentKey = key;
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = i;
+            }
+        }
+        offsets = Arrays.copyOf(offsets, count + 1);
+        offsets[count] = times.length;
+        return offsets;
+    }
+
+    private static long periodKey(long epochDay, Period period) {
+        return switch (period) {
+            case DAY -> epochDay;
+            // 1970-01-01 was a Thursday; shift so weeks start on Monday
+            case WEEK -> Math.floorDiv(epochDay + 3, 7);
+            case MONTH -> {
+                LocalDate date = LocalDate.ofEpochDay(epochDay);
+                yield date.getYear() * 12L + date.getMonthValue();
+            }
+        };
+    }
+
+    private static long periodStart(long time, Period period) {
+        long epochDay = Math.floorDiv(time, SECONDS_PER_DAY);
+        long startDay = switch (period) {
+            case DAY -> epochDay;
+            case WEEK -> Math.floorDiv(epochDay + 3, 7) * 7 - 3;
+            case MONTH -> LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+        };
+        return startDay * SECONDS_PER_DAY;
+    }
+
+    // Nearest-rank index for quantile q among n values
+    private static int rank(double q, int n) {
+        return Math.min(n - 1, Math.max(0, (int) Math.ceil(q * n) - 1));
+    }
+
+    /**
+     * Quickselect: returns the k-th smallest of values[0, n), reordering values[from, n) so that
+     * no larger value stays below k and no smaller one above it. values[0, from) must already hold
+     * the from smallest values (e.g. from an earlier selection of a lower rank).
+     */
+    static double select(double[] values, int from, int n, int k) {
+        int left = from;
+        int right = n - 1;
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    double tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+}
@@ -0,0 +1,68 @@
+package com.weather;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Usługi aplikacji okienkowej: każda tworzona jest raz, w tle i równolegle z pozostałymi
+ * (WeatherService czeka na Redis, CityService parsuje CSV), i zamykana w close().
+ * Okno pokazuje się od razu, a kontrolki włączają się w miarę gotowości kolejnych usług.
+ */
+final class AppServices implements AutoCloseable {
+
+    private static final Log LOG = Log.get(AppServices.class);
+
+    private final CompletableFuture<WeatherService> weather;
+    private final CompletableFuture<CityService> cities;
+    private final CompletableFuture<ClimatologyService> climatology;
+
+    private AppServices(ExecutorService executor) {
+        this.weather = create("WeatherService", WeatherService::new, executor);
+        this.cities = create("CityService", CityService::new, executor);
+        this.climatology = weather.thenApply(ClimatologyService::new);
+    }
+
+    static AppServices start() {
+        ExecutorService executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "service-init");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AppServices services = new AppServices(executor);
+        // Already submitted tasks still run; the threads go away once they finish
+        executor.shutdown();
+        return services;
+    }
+
+    private static <T> CompletableFuture<T> create(String name, Supplier<T> factory, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            T service = factory.get();
+            LOG.info("{} gotowy po {} ms", name, (System.nanoTime() - start) / 1_000_000);
+            return service;
+        }, executor);
+    }
+
+    CompletableFuture<WeatherService> weather() {
+        return weather;
+    }
+
+    CompletableFuture<CityService> cities() {
+        return cities;
+    }
+
+    CompletableFuture<ClimatologyService> climatology() {
+        return climatology;
+    }
+
+    /**
+     * Zamyka usługi (pule połączeń HTTP i Redis, magazyn archiwum); usługa, która jeszcze się
+     * tworzy, zostanie zamknięta zaraz po utworzeniu.
+     */
+    @Override
+    public void close() {
+        weather.thenAccept(WeatherService::close);
+    }
+}
@@ -0,0 +1,270 @@
+package com.weather;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tryb wsadowy bez interfejsu graficznego: pobiera prognozę lub dane historyczne dla listy miast
+ * albo współrzędnych i zapisuje każdą lokalizację do osobnego pliku (CSV, TSV lub binarnego).
+ * Na końcu wypisuje podsumowanie przepustowości: zapytania/s, trafienia w cache i opóźnienia p50/p99.
+ *
+ * <pre>
+ *   java com.weather.BatchRunner --mode historical --from 2020-01-01 --to 2024-12-31 \
+ *        --format binary --input miasta.txt Warszawa 50.06,19.94
+ * </pre>
+ */
+public class BatchRunner {
+
+    private static final Log LOG = Log.get(BatchRunner.class);
+    private static final String USAGE = """
+            Użycie: BatchRunner [opcje] <miasto | lat,lon>...
+              --input <plik>          lokalizacje z pliku, jedna w wierszu (# rozpoczyna komentarz)
+              --mode forecast|historical   (domyślnie forecast)
+              --days <1-16>           dni prognozy (domyślnie 7)
+              --from <rrrr-mm-dd>     początek zakresu historycznego
+              --to <rrrr-mm-dd>       koniec zakresu historycznego
+              --format csv|tsv|binary (domyślnie csv)
+              --out <katalog>         katalog wynikowy (domyślnie batch_output)
+              --concurrency <n>       liczba równoczesnych lokalizacji (domyślnie 8)""";
+
+    private static final int PROGRESS_EVERY = 100;
+
+    enum Mode { FORECAST, HISTORICAL }
+
+    record Location(String name, double latitude, double longitude) { }
+
+    private Mode mode = Mode.FORECAST;
+    private int forecastDays = 7;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private DataExporter.Format format = DataExporter.Format.CSV;
+    private Path outputDir = Paths.get("batch_output");
+    private int concurrency = 8;
+    private final List<String> locationArgs = new ArrayList<>();
+
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parseArguments(args);
+        } catch (IllegalArgumentException | IOException | DateTimeParseException e) {
+            System.err.println("Błąd: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Metrics.startExporters();
+        System.exit(runner.run() ? 0 : 1);
+    }
+
+    private void parseArguments(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                locationArgs.add(arg);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Brak wartości dla " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--input" -> readLocationFile(Paths.get(value));
+                case "--mode" -> mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+                case "--days" -> forecastDays = Integer.parseInt(value);
+                case "--from" -> startDate = LocalDate.parse(value);
+                case "--to" -> endDate = LocalDate.parse(value);
+                case "--format" -> format = DataExporter.Format.valueOf(value.toUpperCase(Locale.ROOT));
+                case "--out" -> outputDir = Paths.get(value);
+                case "--concurrency" -> concurrency = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Nieznana opcja: " + arg);
+            }
+        }
+
+        if (locationArgs.isEmpty()) {
+            throw new IllegalArgumentException("Nie podano żadnej lokalizacji");
+        }
+        if (forecastDays < 1 || forecastDays > 16) {
+            throw new IllegalArgumentException("Liczba dni prognozy musi być w zakresie 1-16");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Współbieżność musi być dodatnia");
+        }
+        if (mode == Mode.HISTORICAL) {
+            if (startDate == null || endDate == null) {
+                throw new IllegalArgumentException("Tryb historyczny wymaga --from i --to");
+            }
+            if (startDate.isAfter(endDate)) {
+                throw new IllegalArgumentException("Data początkowa jest późniejsza niż końcowa");
+            }
+        }
+    }
+
+    private void readLocationFile(Path file) throws IOException {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                locationArgs.add(trimmed);
+            }
+        }
+    }
+
+    private List<Location> resolveLocations() {
+        CityService cityService = new CityService();
+        List<Location> locations = new ArrayList<>(locationArgs.size());
+        for (String arg : locationArgs) {
+            Location location = parseCoordinates(arg);
+            if (location == null) {
+                City city = cityService.findCityByName(arg);
+                if (city == null) {
+                    LOG.warn("Nie znaleziono miasta, pomijam: {}", arg);
+                    continue;
+                }
+                location = new Location(city.getName(), city.getLatitude(), city.getLongitude());
+            }
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    private static Location parseCoordinates(String arg) {
+        String[] parts = arg.split(",");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            double latitude = Double.parseDouble(parts[0].trim());
+            double longitude = Double.parseDouble(parts[1].trim());
+            return new Location(String.format(Locale.US, "%.4f_%.4f", latitude, longitude), latitude, longitude);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean run() {
+        List<Location> locations = resolveLocations();
+        int unresolved = locationArgs.size() - locations.size();
+        try {
+            Files.createDirectories(outputDir);
+        } catch (IOException e) {
+            LOG.error("Nie można utworzyć katalogu wynikowego: {}", e.getMessage());
+            return false;
+        }
+
+        WeatherService weatherService = new WeatherService(concurrency);
+        CacheService cache = weatherService.getCacheService();
+        long hitsBefore = cache.getHitCount();
+        long missesBefore = cache.getMissCount();
+
+        // Bounded concurrency: a fixed pool of workers, each handles one location at a time
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] latencies = new long[locations.size()];
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        long started = System.nanoTime();
+        for (Location location : locations) {
+            workers.execute(() -> {
+                long requestStart = System.nanoTime();
+                WeatherEvents.Request request = new WeatherEvents.Request();
+                request.begin();
+                try (RequestContext.Scope scope = RequestContext.begin(RequestContext.Priority.BATCH)) {
+                    request.requestId = RequestContext.current();
+                    WeatherData data = fetch(weatherService, location);
+                    DataExporter.export(data, outputDir.resolve(fileName(location)), format,
+                            (written, total) -> { }, () -> false);
+                    latencies[succeeded.getAndIncrement()] = System.nanoTime() - requestStart;
+                    request.success = true;
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    LOG.warn("Błąd dla {}: {}", location.name(), e.getMessage());
+                }
+                request.kind = "batch-" + mode.name().toLowerCase(Locale.ROOT);
+                request.commit();
+                int finished = done.incrementAndGet();
+                if (finished % PROGRESS_EVERY == 0) {
+                    LOG.info("Przetworzono {}/{} lokalizacji", finished, locations.size());
+                }
+            });
+        }
+
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        // The summary goes straight to stdout, so let queued log lines land before it
+        Log.flush();
+        printSummary(locations.size(), unresolved, succeeded.get(), failed.get(), elapsed,
+                cache.getHitCount() - hitsBefore, cache.getMissCount() - missesBefore,
+                Arrays.copyOf(latencies, succeeded.get()));
+        weatherService.close();
+        return failed.get() == 0 && unresolved == 0;
+    }
+
+    private WeatherData fetch(WeatherService weatherService, Location location) throws Exception {
+        if (mode == Mode.FORECAST) {
+            return weatherService.getForecastData(location.latitude(), location.longitude(), forecastDays);
+        }
+        WeatherService.ChunkSize chunkSize = WeatherService.ChunkSize.forRange(startDate, endDate);
+        if (chunkSize == null) {
+            return weatherService.getHistoricalData(location.latitude(), location.longitude(), startDate, endDate);
+        }
+        return weatherService.getHistoricalDataChunked(location.latitude(), location.longitude(),
+                startDate, endDate, chunkSize);
+    }
+
+    private String fileName(Location location) {
+        String suffix = mode == Mode.FORECAST
+                ? "forecast_" + forecastDays + "d"
+                : "historical_" + startDate + "_" + endDate;
+        String name = location.name().replaceAll("[^\\p{L}0-9._-]", "_");
+        return name + "_" + suffix + format.getExtension().substring(1);
+    }
+
+    private static void printSummary(int total, int unresolved, int succeeded, int failed, long elapsedNanos,
+                                     long cacheHits, long cacheMisses, long[] latencies) {
+        double seconds = elapsedNanos / 1e9;
+        long lookups = cacheHits + cacheMisses;
+        Arrays.sort(latencies);
+
+        System.out.println("=== Podsumowanie ===");
+        System.out.printf(Locale.US, "Lokalizacje: %d (ok: %d, błędy: %d, nierozpoznane: %d)%n",
+                total + unresolved, succeeded, failed, unresolved);
+        System.out.printf(Locale.US, "Czas: %.1f s, przepustowość: %.1f zapytań/s%n",
+                seconds, seconds > 0 ? (succeeded + failed) / seconds : 0.0);
+        System.out.printf(Locale.US, "Cache: %.1f%% trafień (%d/%d)%n",
+                lookups > 0 ? 100.0 * cacheHits / lookups : 0.0, cacheHits, lookups);
+        if (latencies.length > 0) {
+            System.out.printf(Locale.US, "Opóźnienie: p50 %.0f ms, p99 %.0f ms, max %.0f ms%n",
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    // Nearest-rank percentile of a sorted array
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
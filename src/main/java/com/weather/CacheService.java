@@ -4,29 +4,184 @@ import com.google.gson.Gson;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.exceptions.JedisException;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
-
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache danych pogodowych w Redis albo, gdy żaden węzeł Redis nie odpowiada, w plikach. Obie warstwy
+ * mogą być podzielone na kilka węzłów (serwerów Redis, katalogów) przypisanych kluczom przez pierścień
+ * spójnego haszowania (HashRing), a każdy wpis może być zapisywany na kilku kolejnych węzłach pierścienia;
+ * odczyt trafia wtedy do repliki, gdy węzeł główny jest niedostępny.
+ *
+ * <pre>
+ *   redis-server --port 6380 --save "" --daemonize yes   (tak samo 6381 i 6382)
+ *   java -Dweather.cache.redis=localhost:6380,localhost:6381,localhost:6382 -Dweather.cache.replicas=2 ...
+ *   java -Dweather.cache.dirs=/mnt/a/weather_cache,/mnt/b/weather_cache ...
+ * </pre>
+ */
 public class CacheService {
 
+    private static final Log LOG = Log.get(CacheService.class);
     private static final String CACHE_DIR = "weather_cache";
+    // Remembered upstream failures live apart from the data: other Redis keys, other file suffix
+    private static final String FAILURE_PREFIX = "weather-failure:";
+    private static final String FAILURE_SUFFIX = ".failure";
+    // Shards, as comma-separated host:port endpoints and directories
+    private static final String REDIS_NODES = System.getProperty("weather.cache.redis", "localhost:6379");
+    private static final String CACHE_DIRS = System.getProperty("weather.cache.dirs", CACHE_DIR);
+    // Copies of each entry on consecutive ring nodes (1 = no replication)
+    private static final int REPLICAS = Math.max(1, Integer.getInteger("weather.cache.replicas", 1));
+    private static final int VIRTUAL_NODES = Integer.getInteger("weather.cache.virtualNodes", 512);
+    // A Redis node that failed is skipped for this long instead of waiting for its timeout on every call
+    private static final long NODE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
     private final Gson gson;
-    private JedisPool jedisPool;
+    private final int replicas;
+    private final HashRing<RedisNode> redisRing = new HashRing<>(VIRTUAL_NODES);
+    private final HashRing<Path> fileRing = new HashRing<>(VIRTUAL_NODES);
     private boolean redisAvailable = false;
+    // Set once a failure went to the file tier because Redis could not take it
+    private volatile boolean failuresInFiles;
+
+    private static final Metrics.Counter REDIS_HITS =
+            Metrics.counter("weather_cache_hits_total", "Trafienia w cache", "tier=\"redis\"");
+    private static final Metrics.Counter FILE_HITS =
+            Metrics.counter("weather_cache_hits_total", "Trafienia w cache", "tier=\"file\"");
+    private static final Metrics.Counter REDIS_MISSES =
+            Metrics.counter("weather_cache_misses_total", "Chybienia w cache", "tier=\"redis\"");
+    private static final Metrics.Counter FILE_MISSES =
+            Metrics.counter("weather_cache_misses_total", "Chybienia w cache", "tier=\"file\"");
+    private static final Metrics.Histogram REDIS_GET =
+            Metrics.histogram("weather_cache_get_seconds", "Czas odczytu z cache", "tier=\"redis\"");
+    private static final Metrics.Histogram FILE_GET =
+            Metrics.histogram("weather_cache_get_seconds", "Czas odczytu z cache", "tier=\"file\"");
+    private static final Metrics.Histogram REDIS_PUT =
+            Metrics.histogram("weather_cache_put_seconds", "Czas zapisu do cache", "tier=\"redis\"");
+    private static final Metrics.Histogram FILE_PUT =
+            Metrics.histogram("weather_cache_put_seconds", "Czas zapisu do cache", "tier=\"file\"");
+    private static final Metrics.Counter FAILURE_HITS = Metrics.counter("weather_negative_cache_hits_total",
+            "Zapytania odrzucone bez odpytywania Open-Meteo, bo ostatnio zakończyły się błędem", "");
+    private static final Metrics.Counter REDIS_REPLICA_READS = Metrics.counter("weather_cache_replica_reads_total",
+            "Odczyty z repliki, bo węzeł główny klucza był niedostępny", "tier=\"redis\"");
+    private static final Metrics.Counter FILE_REPLICA_READS = Metrics.counter("weather_cache_replica_reads_total",
+            "Odczyty z repliki, bo węzeł główny klucza był niedostępny", "tier=\"file\"");
+
+    /**
+     * Jeden serwer Redis na pierścieniu; po błędzie jest pomijany przez NODE_RETRY_NANOS.
+     */
+    private static final class RedisNode {
+        final String name;
+        final JedisPool pool;
+        final Metrics.Counter errors;
+        private volatile long downUntil = System.nanoTime();
+
+        RedisNode(String name, JedisPool pool) {
+            this.name = name;
+            this.pool = pool;
+            this.errors = Metrics.counter("weather_cache_node_errors_total",
+                    "Błędy połączenia z węzłem Redis", "node=\"" + name + "\"");
+        }
+
+        boolean isUp() {
+            return System.nanoTime() - downUntil >= 0;
+        }
+
+        void markDown(JedisException error) {
+            errors.increment();
+            if (isUp()) {
+                LOG.warn("Węzeł Redis {} niedostępny, chwilowo pomijany: {}", name, error.getMessage());
+            }
+            skip();
+        }
+
+        void skip() {
+            downUntil = System.nanoTime() + NODE_RETRY_NANOS;
+        }
+    }
 
     public CacheService() {
+        this(true);
+    }
+
+    /**
+     * @param useRedis false wymusza cache plików nawet wtedy, gdy Redis jest dostępny (np. w benchmarkach)
+     */
+    public CacheService(boolean useRedis) {
+        this(useRedis ? REDIS_NODES : "", CACHE_DIRS, REPLICAS);
+    }
+
+    /**
+     * @param redisNodes węzły Redis (host:port po przecinku), pusty ciąg wyłącza Redis
+     * @param cacheDirs katalogi cache plików po przecinku
+     * @param replicas kopie każdego wpisu
+     */
+    CacheService(String redisNodes, String cacheDirs, int replicas) {
         this.gson = new Gson();
-        initializeRedis();
-        initializeFileCache();
+        this.replicas = Math.max(1, replicas);
+        if (!redisNodes.isBlank()) {
+            initializeRedis(redisNodes);
+        }
+        initializeFileCache(cacheDirs);
+        registerGauges();
     }
 
-    private void initializeRedis() {
-        try {
+    private void registerGauges() {
+        Metrics.gauge("weather_cache_entries", "Liczba wpisów w cache", "tier=\"file\"",
+                () -> countFiles(".cache"));
+        Metrics.gauge("weather_negative_cache_entries", "Liczba zapamiętanych błędów", "tier=\"file\"",
+                () -> countFiles(FAILURE_SUFFIX));
+        if (redisAvailable) {
+            for (RedisNode node : redisRing.nodes()) {
+                String labels = "tier=\"redis\",node=\"" + node.name + "\"";
+                Metrics.gauge("weather_cache_entries", "Liczba wpisów w cache", labels, () -> {
+                    try (Jedis jedis = node.pool.getResource()) {
+                        return jedis.dbSize();
+                    } catch (JedisException e) {
+                        return -1;
+                    }
+                });
+                Metrics.gauge("weather_redis_pool_connections", "Połączenia w puli Redis",
+                        "state=\"active\",node=\"" + node.name + "\"", () -> node.pool.getNumActive());
+                Metrics.gauge("weather_redis_pool_connections", "Połączenia w puli Redis",
+                        "state=\"idle\",node=\"" + node.name + "\"", () -> node.pool.getNumIdle());
+            }
+        }
+    }
+
+    private long countFiles(String suffix) {
+        long count = 0;
+        for (Path dir : fileRing.nodes()) {
+            try (var files = Files.list(dir)) {
+                count += files.filter(path -> path.toString().endsWith(suffix)).count();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return count;
+    }
+
+    public boolean isRedisAvailable() {
+        return redisAvailable;
+    }
+
+    private void initializeRedis(String redisNodes) {
+        for (String endpoint : redisNodes.split(",")) {
+            endpoint = endpoint.trim();
+            if (endpoint.isEmpty()) {
+                continue;
+            }
+            int colon = endpoint.lastIndexOf(':');
+            String host = colon > 0 ? endpoint.substring(0, colon) : endpoint;
+            int port = colon > 0 ? Integer.parseInt(endpoint.substring(colon + 1)) : 6379;
+
             JedisPoolConfig poolConfig = new JedisPoolConfig();
             poolConfig.setMaxTotal(10);
             poolConfig.setMaxIdle(5);
@@ -35,103 +190,249 @@ public class CacheService {
             poolConfig.setTestOnReturn(true);
             poolConfig.setTestWhileIdle(true);
 
-            // Try to connect to local Redis instance
-            jedisPool = new JedisPool(poolConfig, "localhost", 6379, 2000);
+            RedisNode node = new RedisNode(host + ":" + port, new JedisPool(poolConfig, host, port, 2000));
+            // Nodes that are down now still join the ring, so every instance places keys the same way
+            redisRing.add(node.name, node);
 
             // Test connection
-            try (Jedis jedis = jedisPool.getResource()) {
+            try (Jedis jedis = node.pool.getResource()) {
                 jedis.ping();
                 redisAvailable = true;
-                System.out.println("Redis cache dostępny");
+                LOG.info("Redis cache dostępny: {}", node.name);
+            } catch (JedisException e) {
+                LOG.info("Redis {} niedostępny: {}", node.name, e.getMessage());
+                node.skip();
             }
-        } catch (Exception e) {
-            System.out.println("Redis niedostępny, używam cache plików: " + e.getMessage());
-            redisAvailable = false;
+        }
+        if (!redisAvailable) {
+            LOG.info("Redis niedostępny, używam cache plików");
+            close();
+        } else if (redisRing.size() > 1) {
+            LOG.info("Cache Redis podzielony na {} węzłów, kopii każdego wpisu: {}",
+                    redisRing.size(), Math.min(replicas, redisRing.size()));
         }
     }
 
-    private void initializeFileCache() {
-        try {
-            Path cacheDir = Paths.get(CACHE_DIR);
-            if (!Files.exists(cacheDir)) {
-                Files.createDirectories(cacheDir);
+    private void initializeFileCache(String cacheDirs) {
+        for (String dir : cacheDirs.split(",")) {
+            if (dir.isBlank()) {
+                continue;
             }
-        } catch (IOException e) {
-            System.err.println("Nie można utworzyć katalogu cache: " + e.getMessage());
+            Path cacheDir = Paths.get(dir.trim());
+            try {
+                if (!Files.exists(cacheDir)) {
+                    Files.createDirectories(cacheDir);
+                }
+            } catch (IOException e) {
+                LOG.warn("Nie można utworzyć katalogu cache: {}", e.getMessage());
+            }
+            fileRing.add(cacheDir.toString(), cacheDir);
         }
     }
 
     public void cacheWeatherData(String key, WeatherData data, int ttlSeconds) {
+        long start = System.nanoTime();
         if (redisAvailable) {
             cacheWithRedis(key, data, ttlSeconds);
+            REDIS_PUT.recordSince(start);
         } else {
             cacheWithFile(key, data, ttlSeconds);
+            FILE_PUT.recordSince(start);
         }
     }
 
     public WeatherData getWeatherData(String key) {
+        WeatherEvents.CacheLookup event = new WeatherEvents.CacheLookup();
+        event.begin();
+        long start = System.nanoTime();
+        WeatherData data;
         if (redisAvailable) {
-            return getFromRedis(key);
+            data = getFromRedis(key);
+            REDIS_GET.recordSince(start);
+            (data != null ? REDIS_HITS : REDIS_MISSES).increment();
         } else {
-            return getFromFile(key);
+            data = getFromFile(key);
+            FILE_GET.recordSince(start);
+            (data != null ? FILE_HITS : FILE_MISSES).increment();
+        }
+        if (event.shouldCommit()) {
+            event.requestId = RequestContext.current();
+            event.tier = redisAvailable ? "redis" : "file";
+            event.key = key;
+            event.hit = data != null;
+            event.commit();
         }
+        return data;
+    }
+
+    /**
+     * Zapamiętuje błąd zapytania key na ttlSeconds; do tego czasu getFailure(key) zwraca message.
+     */
+    public void cacheFailure(String key, String message, int ttlSeconds) {
+        CachedFailure failure = new CachedFailure(message, Instant.now().getEpochSecond() + ttlSeconds);
+        String json = gson.toJson(failure);
+        if (redisAvailable) {
+            try {
+                writeRedis(FAILURE_PREFIX + key, ttlSeconds, json);
+                return;
+            } catch (JedisException e) {
+                LOG.warn("Błąd Redis cache: {}", e.getMessage());
+                failuresInFiles = true;
+            }
+        }
+        writeFile(sanitizeFileName(key) + FAILURE_SUFFIX, json);
+    }
+
+    /**
+     * Komunikat błędu zapamiętanego dla key przez cacheFailure() albo null, gdy brak lub wygasł.
+     * Gdy Redis nie odpowiada albo część błędów trafiła do plików podczas jego awarii, czyta też pliki.
+     */
+    public String getFailure(String key) {
+        String json = null;
+        Path filePath = null;
+        boolean fromFile = !redisAvailable || failuresInFiles;
+        if (redisAvailable) {
+            try {
+                json = readRedis(FAILURE_PREFIX + key);
+            } catch (JedisException e) {
+                LOG.warn("Błąd odczytu z Redis: {}", e.getMessage());
+                fromFile = true;
+            }
+        }
+        if (json == null && fromFile) {
+            filePath = readFile(sanitizeFileName(key) + FAILURE_SUFFIX);
+            try {
+                if (filePath != null) {
+                    json = Files.readString(filePath);
+                }
+            } catch (IOException e) {
+                LOG.warn("Błąd odczytu z cache pliku: {}", e.getMessage());
+            }
+        }
+        if (json == null) {
+            return null;
+        }
+        CachedFailure failure = gson.fromJson(json, CachedFailure.class);
+        if (failure.expiryTime <= Instant.now().getEpochSecond()) {
+            // Redis expires its copy itself; an expired file would stay forever
+            if (filePath != null) {
+                try {
+                    Files.deleteIfExists(filePath);
+                } catch (IOException e) {
+                    LOG.warn("Błąd usuwania z cache pliku: {}", e.getMessage());
+                }
+            }
+            return null;
+        }
+        FAILURE_HITS.increment();
+        return failure.message;
+    }
+
+    /**
+     * Liczba trafień w cache (obie warstwy) od uruchomienia procesu, np. do statystyk trybu wsadowego.
+     */
+    public long getHitCount() {
+        return REDIS_HITS.get() + FILE_HITS.get();
+    }
+
+    public long getMissCount() {
+        return REDIS_MISSES.get() + FILE_MISSES.get();
     }
 
     private void cacheWithRedis(String key, WeatherData data, int ttlSeconds) {
-        try (Jedis jedis = jedisPool.getResource()) {
+        try {
             CachedData cachedData = new CachedData(data, Instant.now().getEpochSecond() + ttlSeconds);
             String jsonData = gson.toJson(cachedData);
-            jedis.setex("weather:" + key, ttlSeconds, jsonData);
-            System.out.println("Dane zapisane w Redis cache");
+            writeRedis("weather:" + key, ttlSeconds, jsonData);
+            LOG.debug("Dane zapisane w Redis cache: {}", key);
         } catch (JedisException e) {
-            System.err.println("Błąd Redis cache: " + e.getMessage());
+            LOG.warn("Błąd Redis cache: {}", e.getMessage());
             // Fallback to file cache
             cacheWithFile(key, data, ttlSeconds);
         }
     }
 
     private WeatherData getFromRedis(String key) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            String jsonData = jedis.get("weather:" + key);
+        try {
+            String jsonData = readRedis("weather:" + key);
             if (jsonData != null) {
                 CachedData cachedData = gson.fromJson(jsonData, CachedData.class);
                 if (cachedData.getExpiryTime() > Instant.now().getEpochSecond()) {
-                    System.out.println("Dane pobrane z Redis cache");
+                    LOG.debug("Dane pobrane z Redis cache: {}", key);
                     return cachedData.getData();
-                } else {
-                    jedis.del("weather:" + key);
                 }
             }
         } catch (JedisException e) {
-            System.err.println("Błąd odczytu z Redis: " + e.getMessage());
+            LOG.warn("Błąd odczytu z Redis: {}", e.getMessage());
             // Fallback to file cache
             return getFromFile(key);
         }
         return null;
     }
 
-    private void cacheWithFile(String key, WeatherData data, int ttlSeconds) {
-        try {
-            String fileName = sanitizeFileName(key) + ".cache";
-            Path filePath = Paths.get(CACHE_DIR, fileName);
-
-            CachedData cachedData = new CachedData(data, Instant.now().getEpochSecond() + ttlSeconds);
-            String jsonData = gson.toJson(cachedData);
+    /**
+     * Zapisuje wpis na węźle głównym klucza i jego replikach; rzuca wyjątek, gdy nie udało się na żadnym.
+     */
+    private void writeRedis(String redisKey, int ttlSeconds, String json) {
+        JedisException failure = null;
+        boolean written = false;
+        for (RedisNode node : redisRing.nodesFor(redisKey, replicas)) {
+            if (!node.isUp()) {
+                continue;
+            }
+            try (Jedis jedis = node.pool.getResource()) {
+                jedis.setex(redisKey, ttlSeconds, json);
+                written = true;
+            } catch (JedisException e) {
+                node.markDown(e);
+                failure = e;
+            }
+        }
+        if (!written) {
+            throw failure != null ? failure : new JedisConnectionException("Węzły Redis klucza niedostępne");
+        }
+    }
 
-            Files.write(filePath, jsonData.getBytes());
-            System.out.println("Dane zapisane w cache pliku: " + fileName);
+    /**
+     * Czyta wpis z pierwszego dostępnego węzła klucza (główny, potem repliki); null, gdy go tam nie ma.
+     * Rzuca wyjątek, gdy żaden z węzłów nie odpowiada.
+     */
+    private String readRedis(String redisKey) {
+        JedisException failure = null;
+        List<RedisNode> nodes = redisRing.nodesFor(redisKey, replicas);
+        for (int i = 0; i < nodes.size(); i++) {
+            RedisNode node = nodes.get(i);
+            if (!node.isUp()) {
+                continue;
+            }
+            try (Jedis jedis = node.pool.getResource()) {
+                String json = jedis.get(redisKey);
+                if (i > 0) {
+                    REDIS_REPLICA_READS.increment();
+                }
+                return json;
+            } catch (JedisException e) {
+                node.markDown(e);
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new JedisConnectionException("Węzły Redis klucza niedostępne");
+    }
 
-        } catch (IOException e) {
-            System.err.println("Błąd zapisu do cache pliku: " + e.getMessage());
+    private void cacheWithFile(String key, WeatherData data, int ttlSeconds) {
+        String fileName = sanitizeFileName(key) + ".cache";
+        CachedData cachedData = new CachedData(data, Instant.now().getEpochSecond() + ttlSeconds);
+        if (writeFile(fileName, gson.toJson(cachedData))) {
+            LOG.debug("Dane zapisane w cache pliku: {}", fileName);
         }
     }
 
     private WeatherData getFromFile(String key) {
         try {
             String fileName = sanitizeFileName(key) + ".cache";
-            Path filePath = Paths.get(CACHE_DIR, fileName);
+            Path filePath = readFile(fileName);
 
-            if (!Files.exists(filePath)) {
+            if (filePath == null) {
                 return null;
             }
 
@@ -139,16 +440,45 @@ public class CacheService {
             CachedData cachedData = gson.fromJson(jsonData, CachedData.class);
 
             if (cachedData.getExpiryTime() > Instant.now().getEpochSecond()) {
-                System.out.println("Dane pobrane z cache pliku: " + fileName);
+                LOG.debug("Dane pobrane z cache pliku: {}", fileName);
                 return cachedData.getData();
             } else {
                 // Cache expired, delete file
                 Files.deleteIfExists(filePath);
-                System.out.println("Cache wygasł, usuwam plik: " + fileName);
+                LOG.debug("Cache wygasł, usuwam plik: {}", fileName);
             }
 
         } catch (IOException e) {
-            System.err.println("Błąd odczytu z cache pliku: " + e.getMessage());
+            LOG.warn("Błąd odczytu z cache pliku: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    // Writes the file into the key's directory and its replicas; false when no copy was written
+    private boolean writeFile(String fileName, String json) {
+        boolean written = false;
+        for (Path dir : fileRing.nodesFor(fileName, replicas)) {
+            try {
+                Files.write(dir.resolve(fileName), json.getBytes(StandardCharsets.UTF_8));
+                written = true;
+            } catch (IOException e) {
+                LOG.warn("Błąd zapisu do cache pliku: {}", e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    // The first copy of the file, looked up in the key's directory and then in its replicas
+    private Path readFile(String fileName) {
+        List<Path> dirs = fileRing.nodesFor(fileName, replicas);
+        for (int i = 0; i < dirs.size(); i++) {
+            Path filePath = dirs.get(i).resolve(fileName);
+            if (Files.exists(filePath)) {
+                if (i > 0) {
+                    FILE_REPLICA_READS.increment();
+                }
+                return filePath;
+            }
         }
         return null;
     }
@@ -161,37 +491,59 @@ public class CacheService {
     public void clearCache() {
         // Clear Redis cache
         if (redisAvailable) {
-            try (Jedis jedis = jedisPool.getResource()) {
-                jedis.del(jedis.keys("weather:*").toArray(new String[0]));
-                System.out.println("Redis cache wyczyszczony");
-            } catch (JedisException e) {
-                System.err.println("Błąd czyszczenia Redis: " + e.getMessage());
+            for (RedisNode node : redisRing.nodes()) {
+                try (Jedis jedis = node.pool.getResource()) {
+                    String[] failures = jedis.keys(FAILURE_PREFIX + "*").toArray(new String[0]);
+                    if (failures.length > 0) {
+                        jedis.del(failures);
+                    }
+                    jedis.del(jedis.keys("weather:*").toArray(new String[0]));
+                    LOG.info("Redis cache wyczyszczony: {}", node.name);
+                } catch (JedisException e) {
+                    LOG.warn("Błąd czyszczenia Redis {}: {}", node.name, e.getMessage());
+                }
             }
         }
 
         // Clear file cache
-        try {
-            Path cacheDir = Paths.get(CACHE_DIR);
-            if (Files.exists(cacheDir)) {
-                Files.list(cacheDir)
-                        .filter(path -> path.toString().endsWith(".cache"))
+        for (Path cacheDir : fileRing.nodes()) {
+            if (!Files.exists(cacheDir)) {
+                continue;
+            }
+            try (var files = Files.list(cacheDir)) {
+                files.filter(path -> path.toString().endsWith(".cache")
+                                || path.toString().endsWith(FAILURE_SUFFIX))
                         .forEach(path -> {
                             try {
                                 Files.delete(path);
                             } catch (IOException e) {
-                                System.err.println("Nie można usunąć pliku cache: " + e.getMessage());
+                                LOG.warn("Nie można usunąć pliku cache: {}", e.getMessage());
                             }
                         });
-                System.out.println("Cache plików wyczyszczony");
+                LOG.info("Cache plików wyczyszczony: {}", cacheDir);
+            } catch (IOException e) {
+                LOG.warn("Błąd czyszczenia cache plików: {}", e.getMessage());
             }
-        } catch (IOException e) {
-            System.err.println("Błąd czyszczenia cache plików: " + e.getMessage());
         }
     }
 
     public void close() {
-        if (jedisPool != null && !jedisPool.isClosed()) {
-            jedisPool.close();
+        for (RedisNode node : redisRing.nodes()) {
+            if (!node.pool.isClosed()) {
+                node.pool.close();
+            }
+        }
+    }
+
+    private static class CachedFailure {
+        private String message;
+        private long expiryTime;
+
+        public CachedFailure() {}
+
+        public CachedFailure(String message, long expiryTime) {
+            this.message = message;
+            this.expiryTime = expiryTime;
         }
     }
 
@@ -223,4 +575,4 @@ public class CacheService {
             this.expiryTime = expiryTime;
         }
     }
-}
\ No newline at end of file
+}
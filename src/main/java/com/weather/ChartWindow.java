@@ -0,0 +1,499 @@
+package com.weather;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Okno z wykresem jednej zmiennej. Renderer (LineChart lub Canvas) można przełączać w każdym oknie.
+ */
+public class ChartWindow {
+
+    private static final Log LOG = Log.get(ChartWindow.class);
+    // Above this many points the Canvas renderer is selected by default
+    private static final int CANVAS_THRESHOLD = 5_000;
+
+    public enum Renderer {
+        LINE_CHART("Wykres standardowy"),
+        CANVAS("Canvas (duże zbiory danych)");
+
+        private final String label;
+
+        Renderer(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final Color PRIMARY_COLOR = Color.web("#E74C3C");
+    private static final Color MIN_COLOR = Color.web("#3498DB");
+    private static final Color MAX_COLOR = Color.web("#E67E22");
+    private static final Color NORMAL_COLOR = Color.web("#7F8C8D");
+    private static final Color NORMAL_RANGE_COLOR = Color.web("#BDC3C7");
+
+    /**
+     * Jedna seria na wykresie; wszystkie serie okna dzielą tę samą oś czasu.
+     */
+    private record PlotSeries(String name, Color color, double[] values) {
+    }
+
+    private final String title;
+    // Raw variable shown in the window, null for derived series
+    private final WeatherVariable variable;
+    // Column read from the data, and the series computed from it (null when plotted as is)
+    private final WeatherVariable source;
+    private final DerivedSeries derived;
+    // Rollups of cumulative values (rainfall) are summed, others are averaged
+    private final boolean cumulative;
+    private final int expectedPoints;
+    private final Consumer<WeatherData> exportAction;
+    private WeatherData weatherData;
+
+    // Hourly series of the window. After append() the arrays are buffers owned by the window,
+    // longer than size and extended in place; otherwise they are shared with weatherData.
+    private long[] times;
+    private double[] column;
+    private double[] values;
+    private int size;
+    private boolean ownsBuffers;
+    // Climatology looked up for times, null until plotted
+    private double[] normMean;
+    private double[] normP10;
+    private double[] normP90;
+
+    private final Stage stage = new Stage();
+    private final VBox chartBox = new VBox(10);
+    private Node chartNode;
+    private Renderer renderer;
+    // null shows the raw hourly series
+    private Aggregator.Period aggregation;
+    // Optional multi-year baseline drawn under the raw series
+    private Climatology climatology;
+
+    // What is currently plotted, derived from weatherData and aggregation
+    private long[] plotTimes;
+    private int plotSize;
+    private List<PlotSeries> plotSeries;
+
+    // State of the active renderer, used when data is appended
+    private TimeSeriesCanvas canvas;
+    private NumberAxis lineYAxis;
+    private List<XYChart.Series<Number, Number>> lineSeries;
+    private int renderedPoints;
+
+    public ChartWindow(WeatherVariable variable, WeatherData weatherData, Consumer<WeatherData> exportAction) {
+        this(variable, weatherData, weatherData.getTimeEpochs().length, exportAction);
+    }
+
+    /**
+     * @param expectedPoints spodziewana liczba punktów, gdy dane będą dopływać przez update()
+     */
+    public ChartWindow(WeatherVariable variable, WeatherData weatherData, int expectedPoints,
+                       Consumer<WeatherData> exportAction) {
+        this(variable.getLabel(), variable, variable, null,
+                variable == WeatherVariable.PRECIPITATION, weatherData, expectedPoints, exportAction);
+    }
+
+    public ChartWindow(DerivedSeries derived, WeatherData weatherData, int expectedPoints,
+                       Consumer<WeatherData> exportAction) {
+        this(derived.getLabel(), null, derived.getSource(), derived, false, weatherData, expectedPoints, exportAction);
+    }
+
+    private ChartWindow(String title, WeatherVariable variable, WeatherVariable source, DerivedSeries derived,
+                        boolean cumulative, WeatherData weatherData, int expectedPoints,
+                        Consumer<WeatherData> exportAction) {
+        this.title = title;
+        this.variable = variable;
+        this.source = source;
+        this.derived = derived;
+        this.cumulative = cumulative;
+        this.expectedPoints = expectedPoints;
+        this.exportAction = exportAction;
+        load(weatherData);
+    }
+
+    public void show() {
+        stage.initModality(Modality.NONE);
+        stage.setTitle("Wykres: " + title);
+
+        chartBox.setPadding(new Insets(15));
+
+        ComboBox<Renderer> rendererBox = new ComboBox<>();
+        rendererBox.getItems().addAll(Renderer.values());
+        rendererBox.setValue(Math.max(expectedPoints, size) > CANVAS_THRESHOLD
+                ? Renderer.CANVAS : Renderer.LINE_CHART);
+        rendererBox.setOnAction(e -> {
+            renderer = rendererBox.getValue();
+            showRenderer();
+        });
+
+        ComboBox<String> aggregationBox = new ComboBox<>();
+        aggregationBox.getItems().add("Brak (dane godzinowe)");
+        for (Aggregator.Period period : Aggregator.Period.values()) {
+            aggregationBox.getItems().add(period.toString());
+        }
+        aggregationBox.getSelectionModel().select(0);
+        aggregationBox.setOnAction(e -> {
+            int index = aggregationBox.getSelectionModel().getSelectedIndex();
+            aggregation = index > 0 ? Aggregator.Period.values()[index - 1] : null;
+            showRenderer();
+        });
+
+        // Export button
+        Button exportButton = new Button("Eksportuj dane");
+        exportButton.setStyle("-fx-background-color: #27AE60; -fx-text-fill: white;");
+        exportButton.setOnAction(e -> exportAction.accept(this.weatherData));
+
+        HBox toolbar = new HBox(10, new Label("Renderer:"), rendererBox,
+                new Label("Agregacja:"), aggregationBox, exportButton);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        chartBox.getChildren().add(toolbar);
+
+        renderer = rendererBox.getValue();
+        showRenderer();
+
+        Scene chartScene = new Scene(chartBox, 900, 500);
+        stage.setScene(chartScene);
+        stage.show();
+    }
+
+    /**
+     * Podmienia dane okna na nowszą (dłuższą) wersję tej samej serii; wywoływać na wątku JavaFX.
+     * LineChart z danymi godzinowymi dostaje tylko nowe punkty, Canvas przerysowuje się przy najbliższym pulsie.
+     */
+    public void update(WeatherData newData) {
+        load(newData);
+        redraw();
+    }
+
+    /**
+     * Dopisuje na koniec serii kolejny (późniejszy) fragment danych; wywoływać na wątku JavaFX.
+     * Kopiowane są tylko kolumny fragmentu, więc strumień n fragmentów kosztuje O(n), a nie O(n^2)
+     * jak update() z coraz dłuższą sklejoną serią. Dane do eksportu ustawia complete().
+     */
+    public void append(WeatherData chunk) {
+        long[] chunkTimes = chunk.getTimeEpochs();
+        int added = chunkTimes.length;
+        if (added == 0) {
+            return;
+        }
+        int from = size;
+        ensureCapacity(from + added);
+        System.arraycopy(chunkTimes, 0, times, from, added);
+        double[] chunkColumn = chunk.getValues(source);
+        int copied = Math.min(added, chunkColumn.length);
+        System.arraycopy(chunkColumn, 0, column, from, copied);
+        Arrays.fill(column, from + copied, from + added, Double.NaN);
+        size = from + added;
+        if (derived != null) {
+            // Only the new hours change; their windows reach back at most lookback() hours
+            int tailFrom = Math.max(0, from - derived.lookback());
+            double[] tail = derived.compute(Arrays.copyOfRange(column, tailFrom, size));
+            System.arraycopy(tail, from - tailFrom, values, from, added);
+        }
+        if (normMean != null) {
+            System.arraycopy(climatology.mean(variable, chunkTimes), 0, normMean, from, added);
+            System.arraycopy(climatology.p10(variable, chunkTimes), 0, normP10, from, added);
+            System.arraycopy(climatology.p90(variable, chunkTimes), 0, normP90, from, added);
+        }
+        redraw();
+    }
+
+    /**
+     * Ustawia pełne dane serii (np. sklejone po zakończeniu strumienia z append()) jako dane eksportu,
+     * bez przerysowania wykresu.
+     */
+    public void complete(WeatherData data) {
+        this.weatherData = data;
+    }
+
+    private void redraw() {
+        computePlotData();
+        if (canvas != null) {
+            canvas.setTimes(plotTimes, plotSize);
+            for (PlotSeries series : plotSeries) {
+                canvas.setSeriesValues(series.name(), series.values());
+            }
+        } else if (lineSeries != null) {
+            if (aggregation != null) {
+                // Rollups are small and their last period changes as data arrives
+                renderedPoints = 0;
+                lineSeries.forEach(series -> series.getData().clear());
+            }
+            appendPoints();
+            updateYAxis();
+        }
+    }
+
+    /**
+     * Nakłada odświeżoną prognozę; wywoływać na wątku JavaFX. Przy tej samej osi czasu LineChart
+     * z danymi godzinowymi zmienia tylko punkty z update.changed(), pozostałe węzły wykresu zostają.
+     */
+    public void refresh(ForecastUpdate update) {
+        if (!update.hasChanges()) {
+            return;
+        }
+        if (canvas != null || lineSeries == null) {
+            update(update.data());
+            return;
+        }
+        load(update.data());
+        computePlotData();
+        // Points map 1:1 to hours only without rollups and without skipped NaN hours
+        boolean inPlace = update.sameTimeAxis() && aggregation == null;
+        for (int s = 0; inPlace && s < plotSeries.size(); s++) {
+            inPlace = lineSeries.get(s).getData().size() == plotSize
+                    && plotSeries.get(s).values().length >= plotSize;
+        }
+        if (!inPlace) {
+            showRenderer();
+            return;
+        }
+        BitSet changed = update.changed();
+        for (int s = 0; s < plotSeries.size(); s++) {
+            double[] values = plotSeries.get(s).values();
+            List<XYChart.Data<Number, Number>> points = lineSeries.get(s).getData();
+            for (int i = changed.nextSetBit(0); i >= 0 && i < values.length; i = changed.nextSetBit(i + 1)) {
+                if (Double.isNaN(values[i])) {
+                    // An hour went missing; the 1:1 mapping no longer holds
+                    showRenderer();
+                    return;
+                }
+                points.get(i).setYValue(values[i]);
+            }
+        }
+        updateYAxis();
+    }
+
+    public boolean isShowing() {
+        return stage.isShowing();
+    }
+
+    /**
+     * Dodaje do wykresu normę klimatyczną (średnia i zakres P10-P90) dla zmiennej tego okna.
+     */
+    public void setClimatology(Climatology climatology) {
+        this.climatology = climatology;
+        normMean = normP10 = normP90 = null;
+        if (chartNode != null) {
+            showRenderer();
+        }
+    }
+
+    private void load(WeatherData data) {
+        this.weatherData = data;
+        times = data.getTimeEpochs();
+        column = data.getValues(source);
+        values = derived != null ? derived.compute(column) : column;
+        size = times.length;
+        ownsBuffers = false;
+        normMean = normP10 = normP90 = null;
+    }
+
+    /**
+     * Przed dopisaniem: kopiuje współdzielone tablice do własnych buforów, a pełne podwaja.
+     */
+    private void ensureCapacity(int needed) {
+        if (ownsBuffers && needed <= times.length) {
+            return;
+        }
+        int capacity = Math.max(needed, Math.max(expectedPoints, times.length * 2));
+        times = Arrays.copyOf(times, capacity);
+        column = grow(column, capacity);
+        values = derived != null ? grow(values, capacity) : column;
+        if (normMean != null) {
+            normMean = grow(normMean, capacity);
+            normP10 = grow(normP10, capacity);
+            normP90 = grow(normP90, capacity);
+        }
+        ownsBuffers = true;
+    }
+
+    private double[] grow(double[] array, int capacity) {
+        double[] grown = new double[capacity];
+        int valid = Math.min(array.length, size);
+        System.arraycopy(array, 0, grown, 0, valid);
+        // Columns missing from the data are plotted as gaps
+        Arrays.fill(grown, valid, size, Double.NaN);
+        return grown;
+    }
+
+    private long[] exactTimes() {
+        return times.length == size ? times : Arrays.copyOf(times, size);
+    }
+
+    private void computePlotData() {
+        if (aggregation == null) {
+            plotTimes = times;
+            plotSize = size;
+            List<PlotSeries> series = new ArrayList<>(4);
+            series.add(new PlotSeries(title, PRIMARY_COLOR, values));
+            if (climatology != null && variable != null && climatology.has(variable)) {
+                if (normMean == null) {
+                    long[] epochs = exactTimes();
+                    normMean = climatology.mean(variable, epochs);
+                    normP10 = climatology.p10(variable, epochs);
+                    normP90 = climatology.p90(variable, epochs);
+                    if (ownsBuffers) {
+                        normMean = grow(normMean, times.length);
+                        normP10 = grow(normP10, times.length);
+                        normP90 = grow(normP90, times.length);
+                    }
+                }
+                String years = climatology.getFromYear() + "-" + climatology.getToYear();
+                series.add(new PlotSeries("Norma " + years, NORMAL_COLOR, normMean));
+                series.add(new PlotSeries("Norma P10", NORMAL_RANGE_COLOR, normP10));
+                series.add(new PlotSeries("Norma P90", NORMAL_RANGE_COLOR, normP90));
+            }
+            plotSeries = series;
+            return;
+        }
+
+        // Rollups are small and their last period changes as data arrives, so they are recomputed
+        Rollup rollup = Aggregator.rollup(exactTimes(), values, aggregation);
+        plotTimes = rollup.getPeriodStarts();
+        plotSize = plotTimes.length;
+        PlotSeries primary = cumulative
+                ? new PlotSeries("Suma", PRIMARY_COLOR, rollup.getSum())
+                : new PlotSeries("Średnia", PRIMARY_COLOR, rollup.getMean());
+        plotSeries = List.of(primary,
+                new PlotSeries("Minimum", MIN_COLOR, rollup.getMin()),
+                new PlotSeries("Maksimum", MAX_COLOR, rollup.getMax()));
+    }
+
+    private void showRenderer() {
+        WeatherEvents.ChartBuild event = new WeatherEvents.ChartBuild();
+        event.begin();
+        if (chartNode != null) {
+            chartBox.getChildren().remove(chartNode);
+        }
+        canvas = null;
+        lineSeries = null;
+        computePlotData();
+
+        if (renderer == Renderer.CANVAS) {
+            canvas = new TimeSeriesCanvas(title);
+            canvas.setTimes(plotTimes, plotSize);
+            for (PlotSeries series : plotSeries) {
+                canvas.addSeries(series.name(), series.color(), series.values());
+            }
+            chartNode = canvas;
+        } else {
+            chartNode = createChart();
+        }
+        VBox.setVgrow(chartNode, Priority.ALWAYS);
+        chartBox.getChildren().add(1, chartNode);
+
+        if (event.shouldCommit()) {
+            event.requestId = RequestContext.current();
+            event.title = title;
+            event.renderer = renderer.name();
+            event.points = (long) plotSize * plotSeries.size();
+            event.commit();
+        }
+    }
+
+    private LineChart<Number, Number> createChart() {
+        TimeAxis xAxis = new TimeAxis();
+        lineYAxis = new NumberAxis();
+        xAxis.setLabel("Data i godzina");
+        lineYAxis.setLabel(title);
+        updateYAxis();
+
+        LineChart<Number, Number> chart = new LineChart<>(xAxis, lineYAxis);
+        chart.setTitle(title);
+        chart.setPrefHeight(400);
+        chart.setCreateSymbols(true); // Pokaż punkty na wykresie
+
+        lineSeries = new ArrayList<>();
+        for (PlotSeries plot : plotSeries) {
+            XYChart.Series<Number, Number> series = new XYChart.Series<>();
+            series.setName(plot.name());
+            lineSeries.add(series);
+        }
+        renderedPoints = 0;
+
+        if (plotSize == 0) {
+            LOG.debug("No time data available for chart: {}", title);
+        }
+        appendPoints();
+
+        chart.getData().addAll(lineSeries);
+
+        return chart;
+    }
+
+    private void appendPoints() {
+        // Points are placed directly on the numeric time axis, ticks are generated by TimeAxis
+        int count = plotSize;
+        for (int s = 0; s < plotSeries.size(); s++) {
+            double[] data = plotSeries.get(s).values();
+            int end = Math.min(data.length, count);
+            List<XYChart.Data<Number, Number>> points = new ArrayList<>(Math.max(0, end - renderedPoints));
+            for (int i = renderedPoints; i < end; i++) {
+                if (!Double.isNaN(data[i])) {
+                    points.add(new XYChart.Data<>(plotTimes[i], data[i]));
+                }
+            }
+            lineSeries.get(s).getData().addAll(points);
+        }
+        renderedPoints = Math.max(renderedPoints, count);
+    }
+
+    private void updateYAxis() {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (PlotSeries series : plotSeries) {
+            double[] data = series.values();
+            for (int i = 0, end = Math.min(data.length, plotSize); i < end; i++) {
+                double value = data[i];
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+        }
+
+        // Automatyczne skalowanie osi Y na podstawie danych
+        NumberAxis yAxis = lineYAxis;
+        yAxis.setAutoRanging(false);
+        if (min > max) {
+            // Empty chart with default range
+            yAxis.setLowerBound(0);
+            yAxis.setUpperBound(100);
+        } else {
+            // Dodaj margines 10% z każdej strony dla lepszej wizualizacji
+            double margin = (max - min) * 0.1;
+            // Only non-negative series are kept above zero (temperatures and tendencies go below)
+            yAxis.setLowerBound(min >= 0 ? Math.max(0, min - margin) : min - margin);
+            yAxis.setUpperBound(max + margin);
+
+            // Dla ciśnienia, ustaw jeszcze bardziej precyzyjne granice
+            if (title.contains("Ciśnienie")) {
+                yAxis.setLowerBound(Math.max(900, min - 20));
+                yAxis.setUpperBound(Math.min(1100, max + 20));
+            }
+        }
+    }
+}
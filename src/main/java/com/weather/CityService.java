@@ -1,32 +1,49 @@
 package com.weather;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class CityService {
 
+    private static final Log LOG = Log.get(CityService.class);
     private static final String CITIES_FILE = "/cities.csv";
     private List<City> cities;
     private Map<String, City> cityLookup;
+    // Unit vectors of city positions (x, y, z interleaved) for nearest-city queries
+    private double[] cityVectors;
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private static final Metrics.Histogram SEARCH_TIME =
+            Metrics.histogram("weather_city_search_seconds", "Czas wyszukiwania miast", "operation=\"search\"");
+    private static final Metrics.Histogram NEAREST_TIME =
+            Metrics.histogram("weather_city_search_seconds", "Czas wyszukiwania miast", "operation=\"nearest\"");
 
     public CityService() {
-        loadCitiesFromCSV();
+        this(CityService.class.getResourceAsStream(CITIES_FILE));
+    }
+
+    /**
+     * Wczytuje miasta z podanego strumienia CSV (format jak cities.csv); null oznacza listę domyślną.
+     */
+    CityService(InputStream citiesCsv) {
+        loadCitiesFromCSV(citiesCsv);
         buildLookupMap();
+        Metrics.gauge("weather_cities_loaded", "Liczba wczytanych miast", "", () -> cities.size());
     }
 
-    private void loadCitiesFromCSV() {
+    private void loadCitiesFromCSV(InputStream inputStream) {
         cities = new ArrayList<>();
 
-        try (InputStream inputStream = getClass().getResourceAsStream(CITIES_FILE);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-
-            if (inputStream == null) {
-                System.err.println("Plik cities.csv nie został znaleziony w resources");
-                loadDefaultCities();
-                return;
-            }
+        if (inputStream == null) {
+            LOG.warn("Plik cities.csv nie został znaleziony w resources");
+            loadDefaultCities();
+            return;
+        }
 
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
             String line;
             boolean isFirstLine = true;
 
@@ -43,10 +60,10 @@ public class CityService {
                 }
             }
 
-            System.out.println("Załadowano " + cities.size() + " miast z pliku CSV");
+            LOG.info("Załadowano {} miast z pliku CSV", cities.size());
 
         } catch (IOException e) {
-            System.err.println("Błąd podczas wczytywania pliku miast: " + e.getMessage());
+            LOG.warn("Błąd podczas wczytywania pliku miast: {}", e.getMessage());
             loadDefaultCities();
         }
     }
@@ -67,7 +84,7 @@ public class CityService {
             }
 
         } catch (Exception e) {
-            System.err.println("Błąd parsowania linii CSV: " + line + " - " + e.getMessage());
+            LOG.warn("Błąd parsowania linii CSV: {} - {}", line, e.getMessage());
         }
 
         return null;
@@ -115,11 +132,19 @@ public class CityService {
                 new City("Poznań", "Poland", 52.4064, 16.9252, 540372),
                 new City("Łódź", "Poland", 51.7592, 19.4550, 679941)
         );
-        System.out.println("Załadowano domyślne miasta (fallback)");
+        LOG.info("Załadowano domyślne miasta (fallback)");
     }
 
     private void buildLookupMap() {
         cityLookup = new HashMap<>();
+        cityVectors = new double[cities.size() * 3];
+        for (int i = 0; i < cities.size(); i++) {
+            double lat = Math.toRadians(cities.get(i).getLatitude());
+            double lon = Math.toRadians(cities.get(i).getLongitude());
+            cityVectors[i * 3] = Math.cos(lat) * Math.cos(lon);
+            cityVectors[i * 3 + 1] = Math.cos(lat) * Math.sin(lon);
+            cityVectors[i * 3 + 2] = Math.sin(lat);
+        }
 
         for (City city : cities) {
             // Klucze wyszukiwania (bez polskich znaków, małe litery)
@@ -166,9 +191,10 @@ public class CityService {
             return new ArrayList<>();
         }
 
+        long start = System.nanoTime();
         String normalizedQuery = normalizeString(query.trim());
 
-        return cities.stream()
+        List<City> result = cities.stream()
                 .filter(city -> normalizeString(city.getName()).contains(normalizedQuery))
                 .sorted((c1, c2) -> {
                     // Sortuj według populacji (większe miasta pierwsze)
@@ -176,6 +202,54 @@ public class CityService {
                 })
                 .limit(maxResults)
                 .collect(Collectors.toList());
+        SEARCH_TIME.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Zwraca miasta najbliższe podanemu punktowi, od najbliższego
+     */
+    public List<City> findNearest(double latitude, double longitude, int maxResults) {
+        if (maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double x = Math.cos(lat) * Math.cos(lon);
+        double y = Math.cos(lat) * Math.sin(lon);
+        double z = Math.sin(lat);
+
+        // Largest dot product = smallest great-circle distance; keep the best k in a min-heap on the dot product
+        PriorityQueue<double[]> best = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(e -> e[0]));
+        for (int i = 0; i < cities.size(); i++) {
+            double dot = x * cityVectors[i * 3] + y * cityVectors[i * 3 + 1] + z * cityVectors[i * 3 + 2];
+            if (best.size() < maxResults) {
+                best.add(new double[]{dot, i});
+            } else if (dot > best.peek()[0]) {
+                best.poll();
+                best.add(new double[]{dot, i});
+            }
+        }
+
+        List<City> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(cities.get((int) best.poll()[1]));
+        }
+        Collections.reverse(result);
+        NEAREST_TIME.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Odległość po wielkim kole w kilometrach
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
     }
 
     /**
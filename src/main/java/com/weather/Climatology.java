@@ -0,0 +1,148 @@
+package com.weather;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Norma klimatyczna dla jednej lokalizacji: średnia oraz percentyle P10/P90 każdej zmiennej
+ * dla każdej godziny każdego dnia roku, policzone z danych archiwalnych z lat fromYear..toYear.
+ */
+public class Climatology {
+
+    // Day-of-year slots follow a leap year, so 29 February has its own slot
+    static final int DAYS = 366;
+    static final int CELLS = DAYS * 24;
+
+    private static final int MAGIC = 0x434C494D; // "CLIM"
+    private static final int VERSION = 1;
+
+    private final int fromYear;
+    private final int toYear;
+    private final Map<WeatherVariable, float[][]> stats = new EnumMap<>(WeatherVariable.class);
+
+    private static final int MEAN = 0;
+    private static final int P10 = 1;
+    private static final int P90 = 2;
+
+    Climatology(int fromYear, int toYear) {
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+    }
+
+    public int getFromYear() {
+        return fromYear;
+    }
+
+    public int getToYear() {
+        return toYear;
+    }
+
+    void setStats(WeatherVariable variable, float[] mean, float[] p10, float[] p90) {
+        stats.put(variable, new float[][]{mean, p10, p90});
+    }
+
+    public boolean has(WeatherVariable variable) {
+        return stats.containsKey(variable);
+    }
+
+    /**
+     * Średnia wieloletnia dla podanych chwil (sekundy epoki jak w WeatherData.getTimeEpochs()).
+     */
+    public double[] mean(WeatherVariable variable, long[] epochs) {
+        return lookup(variable, MEAN, epochs);
+    }
+
+    public double[] p10(WeatherVariable variable, long[] epochs) {
+        return lookup(variable, P10, epochs);
+    }
+
+    public double[] p90(WeatherVariable variable, long[] epochs) {
+        return lookup(variable, P90, epochs);
+    }
+
+    private double[] lookup(WeatherVariable variable, int statistic, long[] epochs) {
+        double[] result = new double[epochs.length];
+        float[][] columns = stats.get(variable);
+        if (columns == null) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        float[] column = columns[statistic];
+        long cachedDay = Long.MIN_VALUE;
+        int dayBase = 0;
+        for (int i = 0; i < epochs.length; i++) {
+            long epochDay = Math.floorDiv(epochs[i], 86_400L);
+            if (epochDay != cachedDay) {
+                cachedDay = epochDay;
+                dayBase = dayIndex(epochDay) * 24;
+            }
+            int hour = (int) (Math.floorMod(epochs[i], 86_400L) / 3_600L);
+            result[i] = column[dayBase + hour];
+        }
+        return result;
+    }
+
+    /**
+     * Zero-based day-of-year slot of the given epoch day in a leap-year calendar.
+     */
+    static int dayIndex(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return LocalDate.of(2000, date.getMonthValue(), date.getDayOfMonth()).getDayOfYear() - 1;
+    }
+
+    /**
+     * Zapisuje normę w zwartej postaci binarnej (float, gzip).
+     */
+    public void write(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 1 << 16);
+        DataOutputStream data = new DataOutputStream(gzip);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(fromYear);
+        data.writeInt(toYear);
+        data.writeInt(stats.size());
+        for (Map.Entry<WeatherVariable, float[][]> entry : stats.entrySet()) {
+            data.writeUTF(entry.getKey().getApiName());
+            for (float[] column : entry.getValue()) {
+                for (float value : column) {
+                    data.writeFloat(value);
+                }
+            }
+        }
+        data.flush();
+        gzip.finish();
+    }
+
+    public static Climatology read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in, 1 << 16));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Nieprawidłowy format pliku normy klimatycznej");
+        }
+        Climatology climatology = new Climatology(data.readInt(), data.readInt());
+        int variables = data.readInt();
+        for (int v = 0; v < variables; v++) {
+            String apiName = data.readUTF();
+            float[][] columns = new float[3][CELLS];
+            for (float[] column : columns) {
+                for (int i = 0; i < CELLS; i++) {
+                    column[i] = data.readFloat();
+                }
+            }
+            for (WeatherVariable variable : WeatherVariable.values()) {
+                if (variable.getApiName().equals(apiName)) {
+                    climatology.stats.put(variable, columns);
+                }
+            }
+        }
+        return climatology;
+    }
+}
@@ -0,0 +1,249 @@
+package com.weather;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Wylicza normy klimatyczne z wieloletnich danych archiwalnych i przechowuje je na dysku,
+ * dzięki czemu kolejne wykresy dla tej samej lokalizacji nie wymagają zapytań do archiwum.
+ */
+public class ClimatologyService {
+
+    private static final Log LOG = Log.get(ClimatologyService.class);
+    private static final String CLIMATOLOGY_DIR = "climatology";
+    public static final int DEFAULT_YEARS = 10;
+
+    private final WeatherService weatherService;
+
+    public ClimatologyService(WeatherService weatherService) {
+        this.weatherService = weatherService;
+    }
+
+    /**
+     * Zwraca normę z ostatnich pełnych lat (z pliku, jeśli była już liczona).
+     */
+    public Climatology getClimatology(double latitude, double longitude, int years) throws Exception {
+        int toYear = LocalDate.now().getYear() - 1;
+        int fromYear = toYear - years + 1;
+        Path file = Paths.get(CLIMATOLOGY_DIR, String.format(Locale.US, "clim_%.4f_%.4f_%d_%d.bin",
+                latitude, longitude, fromYear, toYear));
+
+        if (Files.exists(file)) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                LOG.info("Norma klimatyczna z pliku: {}", file.getFileName());
+                return Climatology.read(in);
+            } catch (IOException e) {
+                LOG.warn("Błąd odczytu normy klimatycznej, liczę od nowa: {}", e.getMessage());
+            }
+        }
+
+        List<WeatherData> yearlyData = fetchYears(latitude, longitude, fromYear, toYear);
+        Climatology climatology = compute(yearlyData, fromYear, toYear);
+        save(climatology, file);
+        return climatology;
+    }
+
+    private List<WeatherData> fetchYears(double latitude, double longitude, int fromYear, int toYear)
+            throws Exception {
+        // One archive slice per year; each is cached on its own by WeatherService
+        List<WeatherData> years = new ArrayList<>();
+        try {
+            weatherService.streamHistoricalData(latitude, longitude,
+                    LocalDate.of(fromYear, 1, 1), LocalDate.of(toYear, 12, 31),
+                    WeatherService.ChunkSize.YEAR, years::add).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        return years;
+    }
+
+    private void save(Climatology climatology, Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                climatology.write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Zapisano normę klimatyczną: {}", file.getFileName());
+        } catch (IOException e) {
+            LOG.warn("Nie można zapisać normy klimatycznej: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Liczy normę z danych rocznych: wypełnianie próbek i sumy są redukowane fork/join po latach,
+     * percentyle liczone równolegle po komórkach (dzień roku x godzina).
+     */
+    static Climatology compute(List<WeatherData> yearlyData, int fromYear, int toYear) {
+        int years = yearlyData.size();
+        Climatology climatology = new Climatology(fromYear, toYear);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        for (WeatherVariable variable : WeatherVariable.values()) {
+            // samples[cell * years + year]; each year writes only its own slots
+            float[] samples = new float[Climatology.CELLS * years];
+            Arrays.fill(samples, Float.NaN);
+            Partial totals = pool.invoke(new YearReduction(yearlyData, variable, samples, 0, years));
+            if (Arrays.stream(totals.count).allMatch(count -> count == 0)) {
+                continue; // variable not present in the archive for this location
+            }
+
+            float[] mean = new float[Climatology.CELLS];
+            float[] p10 = new float[Climatology.CELLS];
+            float[] p90 = new float[Climatology.CELLS];
+            pool.invoke(new CellStatistics(samples, years, totals, mean, p10, p90, 0, Climatology.CELLS));
+            climatology.setStats(variable, mean, p10, p90);
+        }
+        return climatology;
+    }
+
+    /**
+     * Per-cell sums and counts; the part of the statistics that reduces associatively across years.
+     */
+    private static final class Partial {
+        final double[] sum = new double[Climatology.CELLS];
+        final int[] count = new int[Climatology.CELLS];
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < Climatology.CELLS; i++) {
+                sum[i] += other.sum[i];
+                count[i] += other.count[i];
+            }
+            return this;
+        }
+    }
+
+    private static final class YearReduction extends RecursiveTask<Partial> {
+        private final List<WeatherData> yearlyData;
+        private final WeatherVariable variable;
+        private final float[] samples;
+        private final int from;
+        private final int to;
+
+        YearReduction(List<WeatherData> yearlyData, WeatherVariable variable, float[] samples, int from, int to) {
+            this.yearlyData = yearlyData;
+            this.variable = variable;
+            this.samples = samples;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= 1) {
+                return from < to ? accumulateYear(from) : new Partial();
+            }
+            int middle = (from + to) >>> 1;
+            YearReduction left = new YearReduction(yearlyData, variable, samples, from, middle);
+            YearReduction right = new YearReduction(yearlyData, variable, samples, middle, to);
+            left.fork();
+            Partial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+
+        private Partial accumulateYear(int year) {
+            int years = yearlyData.size();
+            WeatherData data = yearlyData.get(year);
+            long[] epochs = data.getTimeEpochs();
+            double[] values = data.getValues(variable);
+            Partial partial = new Partial();
+
+            long cachedDay = Long.MIN_VALUE;
+            int dayBase = 0;
+            for (int i = 0; i < epochs.length && i < values.length; i++) {
+                double value = values[i];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                long epochDay = Math.floorDiv(epochs[i], 86_400L);
+                if (epochDay != cachedDay) {
+                    cachedDay = epochDay;
+                    dayBase = Climatology.dayIndex(epochDay) * 24;
+                }
+                int cell = dayBase + (int) (Math.floorMod(epochs[i], 86_400L) / 3_600L);
+                // DST repeats an hour once a year; the first value wins
+                if (Float.isNaN(samples[cell * years + year])) {
+                    samples[cell * years + year] = (float) value;
+                    partial.sum[cell] += value;
+                    partial.count[cell]++;
+                }
+            }
+            return partial;
+        }
+    }
+
+    private static final class CellStatistics extends RecursiveAction {
+        private static final int THRESHOLD = 512;
+
+        private final float[] samples;
+        private final int years;
+        private final Partial totals;
+        private final float[] mean, p10, p90;
+        private final int from, to;
+
+        CellStatistics(float[] samples, int years, Partial totals,
+                       float[] mean, float[] p10, float[] p90, int from, int to) {
+            this.samples = samples;
+            this.years = years;
+            this.totals = totals;
+            this.mean = mean;
+            this.p10 = p10;
+            this.p90 = p90;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CellStatistics(samples, years, totals, mean, p10, p90, from, middle),
+                        new CellStatistics(samples, years, totals, mean, p10, p90, middle, to));
+                return;
+            }
+            double[] scratch = new double[years];
+            for (int cell = from; cell < to; cell++) {
+                int count = 0;
+                for (int y = 0; y < years; y++) {
+                    float value = samples[cell * years + y];
+                    if (!Float.isNaN(value)) {
+                        scratch[count++] = value;
+                    }
+                }
+                if (count == 0) {
+                    mean[cell] = p10[cell] = p90[cell] = Float.NaN;
+                    continue;
+                }
+                mean[cell] = (float) (totals.sum[cell] / totals.count[cell]);
+                Arrays.sort(scratch, 0, count);
+                p10[cell] = (float) percentile(scratch, count, 0.10);
+                p90[cell] = (float) percentile(scratch, count, 0.90);
+            }
+        }
+
+        // Linear interpolation between closest ranks; a handful of years per cell
+        private static double percentile(double[] sorted, int count, double q) {
+            double position = q * (count - 1);
+            int lower = (int) Math.floor(position);
+            int upper = Math.min(count - 1, lower + 1);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+        }
+    }
+}
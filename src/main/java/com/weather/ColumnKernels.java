@@ -0,0 +1,55 @@
+package com.weather;
+
+/**
+ * Podstawowe redukcje na fragmencie kolumny (min, max, suma, liczba wartości z pominięciem NaN).
+ * Implementacja wektorowa (jdk.incubator.vector) jest używana, gdy moduł jest dostępny w runtime,
+ * w przeciwnym razie skalarna.
+ */
+interface ColumnKernels {
+
+    int MIN = 0;
+    int MAX = 1;
+    int SUM = 2;
+    int COUNT = 3;
+
+    /**
+     * Zapisuje do out[MIN], out[MAX], out[SUM], out[COUNT] wyniki dla values[from, to).
+     */
+    void reduce(double[] values, int from, int to, double[] out);
+
+    static ColumnKernels best() {
+        // -Dweather.vector=false forces the scalar path, e.g. for comparing both in benchmarks
+        if (Boolean.parseBoolean(System.getProperty("weather.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorColumnKernels();
+            } catch (LinkageError e) {
+                Log.get(ColumnKernels.class).warn("Vector API niedostępne, używam wersji skalarnej: {}", e.getMessage());
+            }
+        }
+        return new Scalar();
+    }
+
+    final class Scalar implements ColumnKernels {
+        @Override
+        public void reduce(double[] values, int from, int to, double[] out) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                double v = values[i];
+                if (v == v) { // skips NaN
+                    if (v < min) min = v;
+                    if (v > max) max = v;
+                    sum += v;
+                    count++;
+                }
+            }
+            out[MIN] = min;
+            out[MAX] = max;
+            out[SUM] = sum;
+            out[COUNT] = count;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.weather;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Eksport danych pogodowych do plików CSV, TSV lub binarnego formatu kolumnowego.
+ * Zapis odbywa się przez bufor i FileChannel, bez formatowania Stringów dla każdego wiersza,
+ * więc może działać w tle dla wieloletnich danych godzinowych.
+ *
+ * <p>Format binarny (.wxb, big-endian):
+ * <pre>
+ *   magic "WXB1" | int rowCount | int columnCount
+ *   columnCount x (short nameLength | UTF-8 name)
+ *   long[rowCount] time (sekundy epoki, czas lokalny API traktowany jak UTC)
+ *   columnCount x double[rowCount] (brak wartości = NaN)
+ * </pre>
+ * Zapisywane są tylko zmienne obecne w danych, więc kolumna NaN oznacza brak pomiarów, a nie
+ * zmienną, której nie pobrano.
+ * np. w NumPy: {@code np.frombuffer(data, dtype='>f8', offset=..., count=rows)}.
+ */
+public class DataExporter {
+
+    public enum Format {
+        CSV("Pliki CSV", "*.csv", (byte) ','),
+        TSV("Pliki TSV", "*.tsv", (byte) '\t'),
+        BINARY("Binarny format kolumnowy", "*.wxb", (byte) 0);
+
+        private final String description;
+        private final String extension;
+        private final byte separator;
+
+        Format(String description, String extension, byte separator) {
+            this.description = description;
+            this.extension = extension;
+            this.separator = separator;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(long done, long total);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final byte[] MAGIC = {'W', 'X', 'B', '1'};
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private final FileChannel channel;
+    private final ProgressListener progress;
+    private final BooleanSupplier cancelled;
+
+    private DataExporter(FileChannel channel, ProgressListener progress, BooleanSupplier cancelled) {
+        this.channel = channel;
+        this.progress = progress;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Zapisuje do pliku zmienne, które WeatherData zawiera (np. tylko zaznaczone w oknie wykresu). Sprawdza cancelled przy każdym opróżnieniu
+     * bufora i wtedy przerywa zapis wyjątkiem CancellationException (plik zostaje niekompletny).
+     */
+    public static void export(WeatherData data, Path file, Format format,
+                              ProgressListener progress, BooleanSupplier cancelled) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataExporter exporter = new DataExporter(channel, progress, cancelled);
+            if (format == Format.BINARY) {
+                exporter.writeBinary(data);
+            } else {
+                exporter.writeText(data, format.separator);
+            }
+        }
+    }
+
+    // Columns that were fetched; a chart window holds only its selected variables
+    private static WeatherVariable[] presentVariables(WeatherData data) {
+        return Arrays.stream(WeatherVariable.values())
+                .filter(variable -> data.getValues(variable).length > 0)
+                .toArray(WeatherVariable[]::new);
+    }
+
+    private void writeText(WeatherData data, byte separator) throws IOException {
+        WeatherVariable[] variables = presentVariables(data);
+        List<String> times = data.getTimes();
+        int rows = times != null ? times.size() : 0;
+        double[][] columns = new double[variables.length][];
+        for (int v = 0; v < variables.length; v++) {
+            columns[v] = data.getValues(variables[v]);
+        }
+
+        StringBuilder header = new StringBuilder("Czas");
+        for (WeatherVariable variable : variables) {
+            header.append((char) separator).append(variable.getLabel());
+        }
+        header.append('\n');
+        putBytes(header.toString().getBytes(StandardCharsets.UTF_8));
+
+        for (int row = 0; row < rows; row++) {
+            // Longest row is well below 256 bytes
+            ensureRoom(256, row, rows);
+            putAscii(times.get(row));
+            for (double[] column : columns) {
+                buffer.put(separator);
+                if (row < column.length) {
+                    putFixed2(column[row]);
+                }
+            }
+            buffer.put((byte) '\n');
+        }
+        flush(rows, rows);
+    }
+
+    private void writeBinary(WeatherData data) throws IOException {
+        WeatherVariable[] variables = presentVariables(data);
+        long[] times = data.getTimeEpochs();
+        int rows = times.length;
+        long total = (long) rows * (variables.length + 1);
+
+        buffer.put(MAGIC);
+        buffer.putInt(rows);
+        buffer.putInt(variables.length);
+        for (WeatherVariable variable : variables) {
+            byte[] name = variable.getApiName().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+
+        long done = 0;
+        for (long time : times) {
+            ensureRoom(Long.BYTES, done, total);
+            buffer.putLong(time);
+            done++;
+        }
+        for (WeatherVariable variable : variables) {
+            double[] column = data.getValues(variable);
+            for (int row = 0; row < rows; row++) {
+                ensureRoom(Double.BYTES, done, total);
+                buffer.putDouble(row < column.length ? column[row] : Double.NaN);
+                done++;
+            }
+        }
+        flush(total, total);
+    }
+
+    private void ensureRoom(int bytes, long done, long total) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(done, total);
+        }
+    }
+
+    private void flush(long done, long total) throws IOException {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Eksport anulowany");
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        progress.onProgress(done, total);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush(0, 1);
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    // Open-Meteo timestamps are plain ASCII
+    private void putAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the value rounded to two decimals with '.' as separator; NaN leaves the field empty.
+     */
+    private void putFixed2(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        long scaled = Math.round(value * 100);
+        if (scaled < 0) {
+            buffer.put((byte) '-');
+            scaled = -scaled;
+        }
+        long integerPart = scaled / 100;
+        int fraction = (int) (scaled % 100);
+
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + integerPart % 10);
+            integerPart /= 10;
+        } while (integerPart > 0);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + fraction / 10));
+        buffer.put((byte) ('0' + fraction % 10));
+    }
+}
@@ -0,0 +1,49 @@
+package com.weather;
+
+/**
+ * Serie pochodne liczone z kolumn WeatherData operatorami okna przesuwnego (WindowOperators).
+ */
+public enum DerivedSeries {
+    RAIN_SUM_24H("Suma opadów 24 h (mm)", WeatherVariable.PRECIPITATION, 24),
+    TEMPERATURE_MEAN_24H("Średnia krocząca temperatury 24 h (°C)", WeatherVariable.TEMPERATURE, 24),
+    PRESSURE_TENDENCY_3H("Tendencja ciśnienia 3 h (hPa)", WeatherVariable.PRESSURE, 3);
+
+    private final String label;
+    private final WeatherVariable source;
+    private final int lookback;
+
+    DerivedSeries(String label, WeatherVariable source, int lookback) {
+        this.label = label;
+        this.source = source;
+        this.lookback = lookback;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public WeatherVariable getSource() {
+        return source;
+    }
+
+    /**
+     * Ile wcześniejszych próbek wpływa na wartość serii w danej godzinie; przy dopisywaniu danych
+     * wystarczy przeliczyć nowe godziny razem z tyloma poprzednimi.
+     */
+    public int lookback() {
+        return lookback;
+    }
+
+    public double[] compute(WeatherData data) {
+        return compute(data.getValues(source));
+    }
+
+    public double[] compute(double[] in) {
+        double[] out = new double[in.length];
+        return switch (this) {
+            case RAIN_SUM_24H -> WindowOperators.rollingSum(in, 24, out);
+            case TEMPERATURE_MEAN_24H -> WindowOperators.rollingMean(in, 24, out);
+            case PRESSURE_TENDENCY_3H -> WindowOperators.difference(in, 3, out);
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.weather;
+
+import java.util.BitSet;
+
+/**
+ * Wynik odświeżenia prognozy: aktualne dane i godziny (indeksy w data), których wartości różnią się
+ * od poprzednio zwróconej wersji. Gdy sameTimeAxis, indeksy odpowiadają tym samym godzinom co
+ * w poprzedniej wersji i wykres może przerysować tylko zmienione punkty.
+ */
+public record ForecastUpdate(WeatherData data, BitSet changed, boolean sameTimeAxis) {
+
+    /**
+     * Porównuje dwie wersje prognozy godzina po godzinie; previous == null oznacza pierwsze pobranie.
+     */
+    static ForecastUpdate between(WeatherData previous, WeatherData current) {
+        long[] times = current.getTimeEpochs();
+        BitSet changed = new BitSet(times.length);
+        if (previous == null) {
+            changed.set(0, times.length);
+            return new ForecastUpdate(current, changed, false);
+        }
+
+        long[] previousTimes = previous.getTimeEpochs();
+        boolean sameTimeAxis = previousTimes.length == times.length
+                && (times.length == 0 || previousTimes[0] == times[0]);
+        // Both series are hourly and gap-free, so matching hours are a fixed offset apart
+        int offset = previousTimes.length > 0 && times.length > 0
+                ? (int) ((times[0] - previousTimes[0]) / 3600) : 0;
+        WeatherVariable[] variables = WeatherVariable.values();
+        double[][] now = new double[variables.length][];
+        double[][] before = new double[variables.length][];
+        for (WeatherVariable variable : variables) {
+            now[variable.ordinal()] = current.getValues(variable);
+            before[variable.ordinal()] = previous.getValues(variable);
+        }
+        for (int i = 0; i < times.length; i++) {
+            int j = i + offset;
+            if (j < 0 || j >= previousTimes.length || previousTimes[j] != times[i]) {
+                changed.set(i);
+                continue;
+            }
+            for (int v = 0; v < variables.length; v++) {
+                // A missing column reads as NaN on both sides and compares equal
+                double a = i < now[v].length ? now[v][i] : Double.NaN;
+                double b = j < before[v].length ? before[v][j] : Double.NaN;
+                if (Double.compare(a, b) != 0) {
+                    changed.set(i);
+                    break;
+                }
+            }
+        }
+        return new ForecastUpdate(current, changed, sameTimeAxis);
+    }
+
+    public int changedHours() {
+        return changed.cardinality();
+    }
+
+    public boolean hasChanges() {
+        return !changed.isEmpty();
+    }
+}
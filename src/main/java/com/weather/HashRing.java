@@ -0,0 +1,119 @@
+package com.weather;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pierścień spójnego haszowania. Każdy węzeł zajmuje virtualNodes punktów na okręgu 64-bitowych
+ * skrótów, a klucz należy do pierwszego węzła za swoim skrótem. Dołączenie lub odejście jednego z N węzłów
+ * przenosi więc średnio 1/N kluczy (tylko te z jego łuków), a punkty wirtualne wyrównują obciążenie.
+ * Skróty (MD5) nie zależą od procesu, więc wszystkie instancje aplikacji przypisują klucze tak samo.
+ *
+ * <p>Odczyty nie blokują: add() i remove() publikują nową kopię pierścienia.
+ */
+final class HashRing<N> {
+
+    private record Snapshot<N>(TreeMap<Long, N> points, Map<String, N> nodes) { }
+
+    // Looked up on every cache access; getInstance() walks the security providers each time.
+    // MD5 stays (rather than a faster hash) so keys keep their nodes across upgrades.
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide MD5
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int virtualNodes;
+    private volatile Snapshot<N> snapshot = new Snapshot<>(new TreeMap<>(), new LinkedHashMap<>());
+
+    HashRing(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    /**
+     * Dodaje węzeł pod nazwą name (np. host:port), od której zależą jego punkty na pierścieniu.
+     */
+    synchronized void add(String name, N node) {
+        Snapshot<N> current = snapshot;
+        TreeMap<Long, N> points = new TreeMap<>(current.points());
+        Map<String, N> nodes = new LinkedHashMap<>(current.nodes());
+        nodes.put(name, node);
+        for (int i = 0; i < virtualNodes; i++) {
+            points.put(hash(name + "#" + i), node);
+        }
+        snapshot = new Snapshot<>(points, nodes);
+    }
+
+    synchronized void remove(String name) {
+        Snapshot<N> current = snapshot;
+        Map<String, N> nodes = new LinkedHashMap<>(current.nodes());
+        N node = nodes.remove(name);
+        if (node == null) {
+            return;
+        }
+        TreeMap<Long, N> points = new TreeMap<>(current.points());
+        points.values().removeIf(point -> point == node);
+        snapshot = new Snapshot<>(points, nodes);
+    }
+
+    Collection<N> nodes() {
+        return snapshot.nodes().values();
+    }
+
+    int size() {
+        return snapshot.nodes().size();
+    }
+
+    /**
+     * Węzeł klucza; null, gdy pierścień jest pusty.
+     */
+    N nodeFor(String key) {
+        List<N> nodes = nodesFor(key, 1);
+        return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    /**
+     * Do count różnych węzłów kolejnych na pierścieniu od skrótu klucza: pierwszy to węzeł główny,
+     * następne to repliki. Po odejściu węzła główne staje się jego pierwsza replika.
+     */
+    List<N> nodesFor(String key, int count) {
+        Snapshot<N> current = snapshot;
+        int wanted = Math.min(count, current.nodes().size());
+        List<N> result = new ArrayList<>(wanted);
+        if (wanted == 0) {
+            return result;
+        }
+        long hash = hash(key);
+        Iterator<N> tail = current.points().tailMap(hash, true).values().iterator();
+        Iterator<N> head = current.points().values().iterator();
+        while (result.size() < wanted) {
+            // Wrap around past the largest point
+            N node = tail.hasNext() ? tail.next() : head.next();
+            if (!result.contains(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    static long hash(String key) {
+        MessageDigest md5 = MD5.get();
+        byte[] digest = md5.digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = hash << 8 | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+}
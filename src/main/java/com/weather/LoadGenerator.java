@@ -0,0 +1,270 @@
+package com.weather;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generator obciążenia dla WeatherService i CacheService (bez interfejsu i bez serwera HTTP):
+ * N symulowanych użytkowników na wątkach wirtualnych wybiera miasta z rozkładem Zipfa
+ * (popularne miasta częściej) i miesza horyzonty: prognozy na 1-16 dni, miesiące i lata archiwum.
+ * Domyślnie pyta lokalną atrapę Open-Meteo; z --no-stub adresy API są brane z
+ * -Dweather.forecast.url i -Dweather.historical.url. Na końcu wypisuje przepustowość,
+ * trafienia w cache i percentyle opóźnień osobno dla każdego rodzaju zapytania.
+ *
+ * <pre>
+ *   java com.weather.LoadGenerator --users 200 --duration 60 --cities 2000 --zipf 1.1 \
+ *        --think-time 100 --stub-latency 80 --stub-jitter 0.5 --stub-error-rate 0.01
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final String USAGE = """
+            Użycie: LoadGenerator [opcje]
+              --users <n>             liczba równoczesnych użytkowników (domyślnie 100)
+              --duration <s>          czas trwania testu w sekundach (domyślnie 30)
+              --think-time <ms>       średnia przerwa użytkownika między zapytaniami (domyślnie 0)
+              --cities <n>            liczba najludniejszych miast w puli (domyślnie 1000)
+              --zipf <s>              wykładnik rozkładu Zipfa (domyślnie 1.0)
+              --connections <n>       połączenia HTTP do Open-Meteo (domyślnie 64)
+              --stub-latency <ms>     mediana opóźnienia atrapy (domyślnie 50)
+              --stub-jitter <sigma>   rozrzut log-normalny opóźnienia (domyślnie 0.4)
+              --stub-error-rate <p>   odsetek odpowiedzi 500 (domyślnie 0)
+              --stub-throttle-rate <p> odsetek odpowiedzi 429 (domyślnie 0)
+              --no-stub               pytaj API z -Dweather.forecast.url / -Dweather.historical.url""";
+
+    /**
+     * Rodzaj zapytania z udziałem w ruchu (w procentach).
+     */
+    enum Kind {
+        FORECAST_SHORT(35), FORECAST_LONG(25), HISTORICAL_MONTH(30), HISTORICAL_YEAR(10);
+
+        final int share;
+        final Metrics.Histogram latency;
+        final LongAdder errors = new LongAdder();
+
+        Kind(int share) {
+            this.share = share;
+            this.latency = Metrics.histogram("weather_loadgen_latency_seconds",
+                    "Opóźnienie zapytań generatora obciążenia", "kind=\"" + name().toLowerCase(Locale.ROOT) + "\"");
+        }
+    }
+
+    private int users = 100;
+    private int durationSeconds = 30;
+    private long thinkTimeMs;
+    private int cityCount = 1000;
+    private double zipfExponent = 1.0;
+    private int connections = 64;
+    private long stubLatencyMs = 50;
+    private double stubJitter = 0.4;
+    private double stubErrorRate;
+    private double stubThrottleRate;
+    private boolean useStub = true;
+
+    private List<City> cities;
+    private double[] zipfCdf;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Błąd: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Metrics.startExporters();
+        generator.run();
+        System.exit(0);
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--no-stub".equals(arg)) {
+                useStub = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Brak wartości dla " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--users" -> users = Integer.parseInt(value);
+                case "--duration" -> durationSeconds = Integer.parseInt(value);
+                case "--think-time" -> thinkTimeMs = Long.parseLong(value);
+                case "--cities" -> cityCount = Integer.parseInt(value);
+                case "--zipf" -> zipfExponent = Double.parseDouble(value);
+                case "--connections" -> connections = Integer.parseInt(value);
+                case "--stub-latency" -> stubLatencyMs = Long.parseLong(value);
+                case "--stub-jitter" -> stubJitter = Double.parseDouble(value);
+                case "--stub-error-rate" -> stubErrorRate = Double.parseDouble(value);
+                case "--stub-throttle-rate" -> stubThrottleRate = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Nieznana opcja: " + arg);
+            }
+        }
+        if (users < 1 || durationSeconds < 1 || cityCount < 1) {
+            throw new IllegalArgumentException("Liczba użytkowników, czas i liczba miast muszą być dodatnie");
+        }
+    }
+
+    private void run() throws Exception {
+        OpenMeteoStub stub = null;
+        WeatherService weatherService;
+        if (useStub) {
+            stub = new OpenMeteoStub(0, stubLatencyMs);
+            stub.setLatencyJitter(stubJitter);
+            stub.setFaults(stubErrorRate, 0, 0);
+            stub.setThrottleRate(stubThrottleRate);
+            stub.start();
+            // The stub has no quota; measure the services, not the client-side rate limit
+            for (WeatherService.Endpoint endpoint : WeatherService.Endpoint.values()) {
+                endpoint.limiter.setRate(0, 1);
+            }
+            weatherService = new WeatherService(connections, stub.getForecastUrl(), stub.getHistoricalUrl());
+        } else {
+            weatherService = new WeatherService(connections);
+        }
+
+        cities = new CityService().getPopularCities(cityCount);
+        zipfCdf = zipfCdf(cities.size(), zipfExponent);
+        CacheService cache = weatherService.getCacheService();
+        long hitsBefore = cache.getHitCount();
+        long missesBefore = cache.getMissCount();
+
+        System.out.printf(Locale.US, "%d użytkowników, %d s, %d miast (Zipf s=%.2f), przerwa %d ms%n",
+                users, durationSeconds, cities.size(), zipfExponent, thinkTimeMs);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try (ExecutorService simulated = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < users; u++) {
+                simulated.execute(() -> simulateUser(weatherService, deadline));
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Log.flush();
+        printSummary(elapsed, cache.getHitCount() - hitsBefore, cache.getMissCount() - missesBefore);
+        weatherService.close();
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    private void simulateUser(WeatherService weatherService, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            City city = cities.get(sampleZipf(random));
+            Kind kind = sampleKind(random);
+            long start = System.nanoTime();
+            try (RequestContext.Scope scope = RequestContext.begin()) {
+                request(weatherService, kind, city, random);
+            } catch (Exception e) {
+                kind.errors.increment();
+            }
+            kind.latency.recordSince(start);
+
+            if (thinkTimeMs > 0) {
+                // Exponential pauses: arrivals of one user form a Poisson process
+                long pause = (long) (-Math.log(1 - random.nextDouble()) * thinkTimeMs);
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void request(WeatherService weatherService, Kind kind, City city, ThreadLocalRandom random)
+            throws Exception {
+        double latitude = city.getLatitude();
+        double longitude = city.getLongitude();
+        LocalDate lastMonth = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+        switch (kind) {
+            case FORECAST_SHORT -> weatherService.getForecastData(latitude, longitude, 1 + random.nextInt(3));
+            case FORECAST_LONG -> weatherService.getForecastData(latitude, longitude, 7 + random.nextInt(10));
+            case HISTORICAL_MONTH -> {
+                // Recent months are asked for more often than old ones
+                LocalDate month = lastMonth.minusMonths((long) (random.nextDouble() * random.nextDouble() * 36));
+                weatherService.getHistoricalData(latitude, longitude, month, month.plusMonths(1).minusDays(1));
+            }
+            case HISTORICAL_YEAR -> {
+                int year = lastMonth.getYear() - 1 - random.nextInt(10);
+                weatherService.getHistoricalDataChunked(latitude, longitude, LocalDate.of(year, 1, 1),
+                        LocalDate.of(year, 12, 31), WeatherService.ChunkSize.QUARTER);
+            }
+        }
+    }
+
+    private static Kind sampleKind(ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        for (Kind kind : Kind.values()) {
+            roll -= kind.share;
+            if (roll < 0) {
+                return kind;
+            }
+        }
+        return Kind.FORECAST_SHORT;
+    }
+
+    // P(rank k) proportional to 1 / k^s; cities are ordered by population, so rank 1 is the largest
+    static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private int sampleZipf(ThreadLocalRandom random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = zipfCdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (zipfCdf[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void printSummary(long elapsedNanos, long cacheHits, long cacheMisses) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        long errors = 0;
+        for (Kind kind : Kind.values()) {
+            total += kind.latency.getCount();
+            errors += kind.errors.sum();
+        }
+        long lookups = cacheHits + cacheMisses;
+
+        System.out.println("=== Wynik generatora obciążenia ===");
+        System.out.printf(Locale.US, "Zapytania: %d w %.1f s, %.1f zapytań/s, błędy: %d%n",
+                total, seconds, total / seconds, errors);
+        System.out.printf(Locale.US, "Cache: %.1f%% trafień (%d/%d)%n",
+                lookups > 0 ? 100.0 * cacheHits / lookups : 0.0, cacheHits, lookups);
+        System.out.println("Rodzaj               liczba   błędy    p50 ms    p90 ms    p99 ms  p99.9 ms");
+        for (Kind kind : Kind.values()) {
+            Metrics.Histogram latency = kind.latency;
+            System.out.printf(Locale.US, "%-18s %8d %7d %9.1f %9.1f %9.1f %9.1f%n",
+                    kind.name().toLowerCase(Locale.ROOT), latency.getCount(), kind.errors.sum(),
+                    latency.quantile(0.5) / 1e6, latency.quantile(0.9) / 1e6,
+                    latency.quantile(0.99) / 1e6, latency.quantile(0.999) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.weather;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Logowanie z poziomami i asynchronicznym zapisem: wątki wołające tylko wpisują rekord do bufora
+ * pierścieniowego, a formatowanie i wypisanie na stdout/stderr robi osobny wątek "log-writer".
+ * Komunikaty z parametrami ({} w treści) są składane dopiero przy zapisie, a przy wyłączonym poziomie
+ * wywołanie kończy się na porównaniu liczb (przeciążenia z long nie opakowują wartości).
+ *
+ * <p>Konfiguracja: -Dweather.log.level=INFO (domyślny poziom), -Dweather.log.level.WeatherService=DEBUG
+ * (poziom jednego loggera), -Dweather.log.format=json (jeden obiekt JSON na wiersz),
+ * -Dweather.log.buffer=8192 (rozmiar bufora, potęga dwójki). Gdy bufor jest pełny, komunikaty
+ * TRACE/DEBUG/INFO są odrzucane (metryka weather_log_dropped_total), a WARN/ERROR czekają na miejsce.
+ */
+public final class Log {
+
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Map<String, Log> LOGGERS = new ConcurrentHashMap<>();
+    private static final Level DEFAULT_LEVEL = parseLevel(System.getProperty("weather.log.level"), Level.INFO);
+    private static final boolean JSON = "json".equalsIgnoreCase(System.getProperty("weather.log.format"));
+    private static final RingBuffer BUFFER = new RingBuffer(Integer.getInteger("weather.log.buffer", 8192));
+
+    private final String name;
+    private volatile int threshold;
+
+    private Log(String name, Level level) {
+        this.name = name;
+        this.threshold = level.ordinal();
+    }
+
+    public static Log get(Class<?> type) {
+        return get(type.getSimpleName());
+    }
+
+    public static Log get(String name) {
+        return LOGGERS.computeIfAbsent(name,
+                n -> new Log(n, parseLevel(System.getProperty("weather.log.level." + n), DEFAULT_LEVEL)));
+    }
+
+    /**
+     * Zmienia poziom loggera w trakcie działania (np. z konsoli JMX lub debuggera).
+     */
+    public static void setLevel(String name, Level level) {
+        get(name).threshold = level.ordinal();
+    }
+
+    /**
+     * Czeka, aż wszystkie dotąd zalogowane komunikaty zostaną wypisane.
+     */
+    public static void flush() {
+        BUFFER.awaitDrained();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return Level.DEBUG.ordinal() >= threshold;
+    }
+
+    public void debug(String message) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, message, null, null, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void debug(String pattern, long arg) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, pattern, arg1, arg2, null, null);
+        }
+    }
+
+    public void debug(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, pattern, arg1, arg2, arg3, null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            BUFFER.publish(Level.DEBUG, name, message.get(), null, null, null, null);
+        }
+    }
+
+    public void info(String message) {
+        if (Level.INFO.ordinal() >= threshold) {
+            BUFFER.publish(Level.INFO, name, message, null, null, null, null);
+        }
+    }
+
+    public void info(String pattern, Object arg) {
+        if (Level.INFO.ordinal() >= threshold) {
+            BUFFER.publish(Level.INFO, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void info(String pattern, long arg) {
+        if (Level.INFO.ordinal() >= threshold) {
+            BUFFER.publish(Level.INFO, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        if (Level.INFO.ordinal() >= threshold) {
+            BUFFER.publish(Level.INFO, name, pattern, arg1, arg2, null, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (Level.WARN.ordinal() >= threshold) {
+            BUFFER.publish(Level.WARN, name, message, null, null, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object arg) {
+        if (Level.WARN.ordinal() >= threshold) {
+            BUFFER.publish(Level.WARN, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2) {
+        if (Level.WARN.ordinal() >= threshold) {
+            BUFFER.publish(Level.WARN, name, pattern, arg1, arg2, null, null);
+        }
+    }
+
+    public void warn(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Level.WARN.ordinal() >= threshold) {
+            BUFFER.publish(Level.WARN, name, pattern, arg1, arg2, arg3, null);
+        }
+    }
+
+    public void error(String message) {
+        if (Level.ERROR.ordinal() >= threshold) {
+            BUFFER.publish(Level.ERROR, name, message, null, null, null, null);
+        }
+    }
+
+    public void error(String pattern, Object arg) {
+        if (Level.ERROR.ordinal() >= threshold) {
+            BUFFER.publish(Level.ERROR, name, pattern, arg, null, null, null);
+        }
+    }
+
+    public void error(String message, Throwable thrown) {
+        if (Level.ERROR.ordinal() >= threshold) {
+            BUFFER.publish(Level.ERROR, name, message, null, null, null, thrown);
+        }
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Multi-producer, single-consumer ring of preallocated records. Producers claim a sequence with CAS
+     * (only when there is room), fill the slot and publish it by storing the sequence in published[slot].
+     */
+    private static final class RingBuffer {
+        private static final DateTimeFormatter TIME_FORMAT =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+        private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLongArray published;
+        private final AtomicLong next = new AtomicLong();
+        private final AtomicLong consumed = new AtomicLong();
+        private final Metrics.Counter dropped =
+                Metrics.counter("weather_log_dropped_total", "Komunikaty odrzucone przy pełnym buforze logów", "");
+
+        private final Thread writer;
+        // Set by the writer before it parks; publishers that see it unpark the writer
+        private volatile boolean writerWaiting;
+
+        private final StringBuilder out = new StringBuilder(16 * 1024);
+        private final StringBuilder err = new StringBuilder(4 * 1024);
+
+        RingBuffer(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(64, requestedCapacity));
+            slots = new Slot[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot();
+            }
+            mask = capacity - 1;
+            published = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                published.set(i, -1);
+            }
+
+            writer = new Thread(this::drainLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-flush"));
+        }
+
+        void publish(Level level, String logger, String pattern, Object arg1, Object arg2, Object arg3,
+                     Throwable thrown) {
+            long sequence;
+            while (true) {
+                sequence = next.get();
+                if (sequence - consumed.get() >= slots.length) {
+                    if (level.ordinal() < Level.WARN.ordinal()) {
+                        dropped.increment();
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                if (next.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            }
+
+            Slot slot = slots[(int) sequence & mask];
+            slot.level = level;
+            slot.logger = logger;
+            slot.timeMillis = System.currentTimeMillis();
+            slot.thread = Thread.currentThread().getName();
+            slot.requestId = RequestContext.current();
+            slot.pattern = pattern;
+            slot.arg1 = arg1;
+            slot.arg2 = arg2;
+            slot.arg3 = arg3;
+            slot.thrown = thrown;
+            published.set((int) sequence & mask, sequence);
+            if (writerWaiting) {
+                LockSupport.unpark(writer);
+            }
+        }
+
+        private void drainLoop() {
+            while (true) {
+                if (drain()) {
+                    continue;
+                }
+                writerWaiting = true;
+                // Checked after raising the flag: a record published before publish() could see it
+                // is found here, every later one unparks the writer
+                if (!hasPublished()) {
+                    LockSupport.park(this);
+                }
+                writerWaiting = false;
+            }
+        }
+
+        private boolean hasPublished() {
+            long sequence = consumed.get();
+            return published.get((int) sequence & mask) == sequence;
+        }
+
+        /**
+         * Writes all published records; returns false when there was nothing to write.
+         */
+        private synchronized boolean drain() {
+            long sequence = consumed.get();
+            boolean any = false;
+            while (published.get((int) sequence & mask) == sequence) {
+                Slot slot = slots[(int) sequence & mask];
+                format(slot, slot.level.ordinal() >= Level.WARN.ordinal() ? err : out);
+                slot.clear();
+                consumed.set(++sequence);
+                any = true;
+                if (out.length() > 64 * 1024) {
+                    flushStreams();
+                }
+            }
+            if (any) {
+                flushStreams();
+            }
+            return any;
+        }
+
+        void awaitDrained() {
+            long target = next.get();
+            while (consumed.get() < target) {
+                if (!drain()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        private void flushStreams() {
+            if (!out.isEmpty()) {
+                System.out.print(out);
+                System.out.flush();
+                out.setLength(0);
+            }
+            if (!err.isEmpty()) {
+                System.err.print(err);
+                System.err.flush();
+                err.setLength(0);
+            }
+        }
+
+        private static void format(Slot slot, StringBuilder line) {
+            if (JSON) {
+                line.append("{\"ts\":\"").append(Instant.ofEpochMilli(slot.timeMillis))
+                        .append("\",\"level\":\"").append(slot.level)
+                        .append("\",\"logger\":\"").append(slot.logger)
+                        .append("\",\"thread\":\"");
+                appendEscaped(line, slot.thread);
+                line.append('"');
+                if (slot.requestId != 0) {
+                    line.append(",\"requestId\":").append(slot.requestId);
+                }
+                line.append(",\"msg\":\"");
+                int start = line.length();
+                appendMessage(line, slot);
+                String message = line.substring(start);
+                line.setLength(start);
+                appendEscaped(line, message);
+                line.append('"');
+                if (slot.thrown != null) {
+                    line.append(",\"error\":\"");
+                    appendEscaped(line, String.valueOf(slot.thrown));
+                    line.append('"');
+                }
+                line.append("}\n");
+                return;
+            }
+
+            TIME_FORMAT.formatTo(Instant.ofEpochMilli(slot.timeMillis), line);
+            line.append(' ').append(slot.level);
+            if (slot.level.name().length() < 5) {
+                line.append(' ');
+            }
+            line.append(" [").append(slot.thread).append("] ").append(slot.logger);
+            if (slot.requestId != 0) {
+                line.append(" req=").append(slot.requestId);
+            }
+            line.append(" - ");
+            appendMessage(line, slot);
+            line.append('\n');
+            if (slot.thrown != null) {
+                java.io.StringWriter trace = new java.io.StringWriter();
+                slot.thrown.printStackTrace(new java.io.PrintWriter(trace));
+                line.append(trace);
+            }
+        }
+
+        // Substitutes {} placeholders in order; unused arguments are ignored
+        private static void appendMessage(StringBuilder line, Slot slot) {
+            String pattern = slot.pattern;
+            if (pattern == null) {
+                line.append("null");
+                return;
+            }
+            Object[] args = {slot.arg1, slot.arg2, slot.arg3};
+            int argIndex = 0;
+            int from = 0;
+            int at;
+            while (argIndex < args.length && (at = pattern.indexOf("{}", from)) >= 0) {
+                line.append(pattern, from, at).append(args[argIndex++]);
+                from = at + 2;
+            }
+            line.append(pattern, from, pattern.length());
+        }
+
+        private static void appendEscaped(StringBuilder line, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Slot {
+        Level level;
+        String logger;
+        long timeMillis;
+        String thread;
+        long requestId;
+        String pattern;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        Throwable thrown;
+
+        void clear() {
+            pattern = null;
+            arg1 = null;
+            arg2 = null;
+            arg3 = null;
+            thrown = null;
+        }
+    }
+}
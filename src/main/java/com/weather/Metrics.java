@@ -0,0 +1,455 @@
+package com.weather;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rejestr metryk aplikacji: liczniki, liczniki wg kodu HTTP, histogramy opóźnień i wskaźniki (gauge).
+ * Metryki rejestruje się raz (zwykle w polach static final), a zapis wartości jest bez blokad
+ * i bez alokacji. Eksport: JMX (com.weather:type=Metrics) oraz format tekstowy Prometheusa,
+ * dostępny w trybie serwera pod /metrics lub na porcie z -Dweather.metrics.port.
+ */
+public final class Metrics {
+
+    private static final Map<String, Metric> REGISTRY = new ConcurrentHashMap<>();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private Metrics() {
+    }
+
+    private abstract static sealed class Metric permits Counter, StatusCounter, Histogram, Gauge {
+        final String name;
+        final String help;
+        final String labels; // e.g. tier="redis", empty when none
+
+        Metric(String name, String help, String labels) {
+            this.name = name;
+            this.help = help;
+            this.labels = labels;
+        }
+
+        abstract String type();
+
+        abstract void writeSamples(StringBuilder out);
+
+        abstract void collectAttributes(Map<String, Object> attributes);
+
+        String series(String extraLabel) {
+            if (labels.isEmpty() && extraLabel == null) {
+                return name;
+            }
+            String all = labels.isEmpty() ? extraLabel : extraLabel == null ? labels : labels + "," + extraLabel;
+            return name + "{" + all + "}";
+        }
+
+        String attributeName() {
+            return labels.isEmpty() ? name : name + "." + labels.replaceAll("[a-z_]+=\"([^\"]*)\"", "$1").replace(',', '.');
+        }
+    }
+
+    public static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String help, String labels) {
+            super(name, help, labels);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void writeSamples(StringBuilder out) {
+            out.append(series(null)).append(' ').append(get()).append('\n');
+        }
+
+        @Override
+        void collectAttributes(Map<String, Object> attributes) {
+            attributes.put(attributeName(), get());
+        }
+    }
+
+    /**
+     * Licznik z etykietą status (kod HTTP 100-599, 0 = błąd transportu); każdy kod ma własny LongAdder
+     * tworzony przy pierwszym wystąpieniu.
+     */
+    public static final class StatusCounter extends Metric {
+        private final AtomicReferenceArray<LongAdder> byStatus = new AtomicReferenceArray<>(600);
+
+        private StatusCounter(String name, String help, String labels) {
+            super(name, help, labels);
+        }
+
+        public void increment(int status) {
+            int slot = status > 0 && status < 600 ? status : 0;
+            LongAdder adder = byStatus.get(slot);
+            if (adder == null) {
+                byStatus.compareAndSet(slot, null, new LongAdder());
+                adder = byStatus.get(slot);
+            }
+            adder.increment();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void writeSamples(StringBuilder out) {
+            for (int slot = 0; slot < byStatus.length(); slot++) {
+                LongAdder adder = byStatus.get(slot);
+                if (adder != null) {
+                    out.append(series("status=\"" + (slot == 0 ? "error" : Integer.toString(slot)) + "\""))
+                            .append(' ').append(adder.sum()).append('\n');
+                }
+            }
+        }
+
+        @Override
+        void collectAttributes(Map<String, Object> attributes) {
+            for (int slot = 0; slot < byStatus.length(); slot++) {
+                LongAdder adder = byStatus.get(slot);
+                if (adder != null) {
+                    attributes.put(attributeName() + "." + (slot == 0 ? "error" : slot), adder.sum());
+                }
+            }
+        }
+    }
+
+    /**
+     * Histogram opóźnień w nanosekundach o układzie HDR: 16 podprzedziałów na każdą potęgę dwójki,
+     * czyli błąd względny kwantyli poniżej ~6% w całym zakresie od nanosekund do godzin.
+     */
+    public static final class Histogram extends Metric {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram(String name, String help, String labels) {
+            super(name, help, labels);
+        }
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Zapisuje czas od start (wynik System.nanoTime()).
+         */
+        public void recordSince(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long bucketLowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Kwantyl (w nanosekundach) jako środek przedziału; odczyt nie blokuje zapisu,
+         * więc przy równoległych zapisach wynik jest przybliżony. Nie alokuje: wywoływany przy każdym
+         * zapytaniu do Open-Meteo (opóźnienie hedgingu).
+         */
+        public long quantile(double q) {
+            // Buckets above the maximum are empty; counts only grow, so the second pass reaches rank
+            long highest = max.get();
+            int last = bucket(highest);
+            long total = 0;
+            for (int i = 0; i <= last; i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i <= last; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    long lower = bucketLowerBound(i);
+                    long upper = i + 1 < BUCKETS ? bucketLowerBound(i + 1) : lower;
+                    return Math.min(highest, lower + (upper - lower) / 2);
+                }
+            }
+            return highest;
+        }
+
+        @Override
+        String type() {
+            return "summary";
+        }
+
+        @Override
+        void writeSamples(StringBuilder out) {
+            for (double q : QUANTILES) {
+                out.append(series("quantile=\"" + q + "\"")).append(' ')
+                        .append(seconds(quantile(q))).append('\n');
+            }
+            out.append(name).append("_sum").append(labels.isEmpty() ? "" : "{" + labels + "}")
+                    .append(' ').append(seconds(sum.sum())).append('\n');
+            out.append(name).append("_count").append(labels.isEmpty() ? "" : "{" + labels + "}")
+                    .append(' ').append(getCount()).append('\n');
+        }
+
+        @Override
+        void collectAttributes(Map<String, Object> attributes) {
+            String base = attributeName();
+            attributes.put(base + ".count", getCount());
+            attributes.put(base + ".p50_ms", quantile(0.5) / 1e6);
+            attributes.put(base + ".p99_ms", quantile(0.99) / 1e6);
+            attributes.put(base + ".max_ms", max.get() / 1e6);
+        }
+
+        private static String seconds(long nanos) {
+            return String.format(Locale.US, "%.6f", nanos / 1e9);
+        }
+    }
+
+    public static final class Gauge extends Metric {
+        private volatile LongSupplier supplier;
+
+        private Gauge(String name, String help, String labels, LongSupplier supplier) {
+            super(name, help, labels);
+            this.supplier = supplier;
+        }
+
+        public long get() {
+            try {
+                return supplier.getAsLong();
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void writeSamples(StringBuilder out) {
+            out.append(series(null)).append(' ').append(get()).append('\n');
+        }
+
+        @Override
+        void collectAttributes(Map<String, Object> attributes) {
+            attributes.put(attributeName(), get());
+        }
+    }
+
+    /**
+     * @param labels etykiety w zapisie Prometheusa, np. {@code tier="redis"}; pusty String gdy brak
+     */
+    public static Counter counter(String name, String help, String labels) {
+        return (Counter) REGISTRY.computeIfAbsent(key(name, labels), k -> new Counter(name, help, labels));
+    }
+
+    public static StatusCounter statusCounter(String name, String help, String labels) {
+        return (StatusCounter) REGISTRY.computeIfAbsent(key(name, labels), k -> new StatusCounter(name, help, labels));
+    }
+
+    public static Histogram histogram(String name, String help, String labels) {
+        return (Histogram) REGISTRY.computeIfAbsent(key(name, labels), k -> new Histogram(name, help, labels));
+    }
+
+    /**
+     * Rejestruje wskaźnik odczytywany przy eksporcie; ponowna rejestracja tej samej nazwy
+     * (np. nowa instancja serwisu) podmienia źródło wartości.
+     */
+    public static Gauge gauge(String name, String help, String labels, LongSupplier supplier) {
+        Gauge gauge = (Gauge) REGISTRY.computeIfAbsent(key(name, labels), k -> new Gauge(name, help, labels, supplier));
+        gauge.supplier = supplier;
+        return gauge;
+    }
+
+    private static String key(String name, String labels) {
+        return name + "{" + labels + "}";
+    }
+
+    /**
+     * Wszystkie metryki w formacie tekstowym Prometheusa (text/plain; version=0.0.4).
+     */
+    public static String scrape() {
+        Map<String, List<Metric>> families = new LinkedHashMap<>();
+        REGISTRY.values().stream()
+                .sorted((a, b) -> key(a.name, a.labels).compareTo(key(b.name, b.labels)))
+                .forEach(metric -> families.computeIfAbsent(metric.name, n -> new ArrayList<>()).add(metric));
+
+        StringBuilder out = new StringBuilder(8192);
+        for (List<Metric> family : families.values()) {
+            Metric first = family.get(0);
+            out.append("# HELP ").append(first.name).append(' ').append(first.help).append('\n');
+            out.append("# TYPE ").append(first.name).append(' ').append(first.type()).append('\n');
+            for (Metric metric : family) {
+                metric.writeSamples(out);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Rejestruje MBean w JMX i, jeśli ustawiono -Dweather.metrics.port, uruchamia endpoint /metrics.
+     * Wywoływane raz przy starcie aplikacji (GUI, tryb wsadowy, serwer).
+     */
+    public static synchronized void startExporters() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("com.weather:type=Metrics");
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new MetricsMBean(), objectName);
+            }
+        } catch (Exception e) {
+            Log.get(Metrics.class).warn("Nie można zarejestrować metryk w JMX: {}", e.getMessage());
+        }
+
+        Integer port = Integer.getInteger("weather.metrics.port");
+        if (port != null && metricsServer == null) {
+            try {
+                metricsServer = HttpServer.create(new InetSocketAddress(port), 16);
+                metricsServer.createContext("/metrics", exchange -> {
+                    byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                metricsServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "metrics-endpoint");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+                metricsServer.start();
+                Log.get(Metrics.class).info("Metryki Prometheus: http://localhost:{}/metrics", port);
+            } catch (IOException e) {
+                Log.get(Metrics.class).warn("Nie można uruchomić endpointu metryk: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static HttpServer metricsServer;
+
+    /**
+     * Wszystkie metryki jako atrybuty tylko do odczytu (np. do podglądu w JConsole/JMC).
+     */
+    private static final class MetricsMBean implements DynamicMBean {
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            REGISTRY.values().stream()
+                    .sorted((a, b) -> key(a.name, a.labels).compareTo(key(b.name, b.labels)))
+                    .forEach(metric -> metric.collectAttributes(attributes));
+            return attributes;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metryki są tylko do odczytu");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            snapshot().forEach((name, value) -> infos.add(new MBeanAttributeInfo(name,
+                    value.getClass().getName(), name, true, false, false)));
+            return new MBeanInfo(Metrics.class.getName(), "Metryki aplikacji pogodowej",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
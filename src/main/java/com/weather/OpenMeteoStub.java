@@ -0,0 +1,325 @@
+package com.weather;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lokalna atrapa API Open-Meteo (/v1/forecast i /v1/archive) do testów obciążeniowych.
+ * Zwraca syntetyczne dane godzinowe w tym samym formacie JSON co Open-Meteo (z hourly_units
+ * i tylko zmiennymi z parametru hourly), deterministyczne dla danej lokalizacji i godziny, dla dowolnego
+ * zakresu (start_date/end_date, forecast_days, past_days, start_hour/end_hour). Prognoza zmienia się
+ * nieco z każdą pełną godziną (nowy przebieg modelu), tym bardziej, im dalej w przyszłość.
+ *
+ * <p>Opóźnienie odpowiedzi ma rozkład log-normalny z medianą latencyMs i rozrzutem z setLatencyJitter()
+ * (0 = stałe opóźnienie); setFaults() dokłada pojedyncze bardzo wolne odpowiedzi i błędy 500,
+ * a setThrottleRate() odpowiedzi 429 z Retry-After. Testy mogą zamiast losowania zaplanować
+ * zachowanie kolejnych odpowiedzi przez queueFaults().
+ *
+ * <pre>
+ *   java com.weather.OpenMeteoStub 8081 50 0.05 0.02 3000   (port, opóźnienie, błędy, wolne, opóźnienie wolnych)
+ * </pre>
+ */
+public class OpenMeteoStub {
+
+    /**
+     * Zaplanowane zachowanie jednej odpowiedzi: OK to zwykła odpowiedź, SLOW opóźniona o slowLatencyMs.
+     */
+    enum Fault { OK, SLOW, ERROR, THROTTLE }
+
+    private static final List<String> ALL_VARIABLES = List.of("temperature_2m", "wind_speed_10m",
+            "precipitation", "surface_pressure", "soil_temperature_0cm");
+    private static final Map<String, String> UNITS = Map.of("temperature_2m", "°C", "wind_speed_10m", "km/h",
+            "precipitation", "mm", "surface_pressure", "hPa", "soil_temperature_0cm", "°C");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+    private volatile double latencyJitter;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile double slowRate;
+    private volatile long slowLatencyMs;
+    private volatile Set<String> missingVariables = Set.of();
+    private final Queue<Fault> plannedFaults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    public OpenMeteoStub(int port, long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/forecast", exchange -> respond(exchange, false));
+        server.createContext("/v1/archive", exchange -> respond(exchange, true));
+    }
+
+    /**
+     * @param sigma odchylenie standardowe logarytmu opóźnienia; 0.5 daje p99 ok. 3x mediany
+     */
+    public void setLatencyJitter(double sigma) {
+        this.latencyJitter = sigma;
+    }
+
+    /**
+     * @param errorRate     odsetek odpowiedzi 500 (0-1)
+     * @param slowRate      odsetek odpowiedzi opóźnionych o slowLatencyMs zamiast latencyMs (0-1)
+     * @param slowLatencyMs opóźnienie wolnych odpowiedzi
+     */
+    public void setFaults(double errorRate, double slowRate, long slowLatencyMs) {
+        this.errorRate = errorRate;
+        this.slowRate = slowRate;
+        this.slowLatencyMs = slowLatencyMs;
+    }
+
+    /**
+     * @param throttleRate odsetek odpowiedzi 429 z nagłówkiem Retry-After: 1 (0-1)
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * Zmienne, dla których archiwum i prognoza zwracają same null (jak temperatura gleby nad wodą).
+     */
+    void setMissingVariables(String... variables) {
+        this.missingVariables = Set.of(variables);
+    }
+
+    /**
+     * Kolejne odpowiedzi (w kolejności przyjścia zapytań) zachowają się jak podano, a dopiero potem
+     * wraca losowanie wg setFaults() i setThrottleRate().
+     */
+    void queueFaults(Fault... faults) {
+        plannedFaults.addAll(Arrays.asList(faults));
+    }
+
+    /**
+     * Liczba zapytań przyjętych od startu, także tych zakończonych błędem.
+     */
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void start() {
+        server.start();
+        Log.get(OpenMeteoStub.class).info("Atrapa Open-Meteo nasłuchuje na porcie {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getForecastUrl() {
+        return "http://localhost:" + getPort() + "/v1/forecast";
+    }
+
+    public String getHistoricalUrl() {
+        return "http://localhost:" + getPort() + "/v1/archive";
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8081;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        OpenMeteoStub stub = new OpenMeteoStub(port, latency);
+        if (args.length > 4) {
+            stub.setFaults(Double.parseDouble(args[2]), Double.parseDouble(args[3]), Long.parseLong(args[4]));
+        }
+        stub.start();
+    }
+
+    private void respond(HttpExchange exchange, boolean archive) throws IOException {
+        requestCount.incrementAndGet();
+        Fault planned = plannedFaults.poll();
+        try {
+            Map<String, String> query = new HashMap<>();
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            if (rawQuery != null) {
+                for (String pair : rawQuery.split("&")) {
+                    int eq = pair.indexOf('=');
+                    if (eq > 0) {
+                        query.put(pair.substring(0, eq),
+                                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+
+            double latitude = Double.parseDouble(query.getOrDefault("latitude", "0"));
+            double longitude = Double.parseDouble(query.getOrDefault("longitude", "0"));
+            LocalDateTime start;
+            LocalDateTime end;
+            if (query.containsKey("start_hour")) {
+                start = LocalDateTime.parse(query.get("start_hour"));
+                end = LocalDateTime.parse(query.get("end_hour"));
+            } else if (archive) {
+                start = LocalDate.parse(query.get("start_date")).atStartOfDay();
+                end = LocalDate.parse(query.get("end_date")).atTime(23, 0);
+            } else {
+                LocalDate today = LocalDate.now();
+                start = today.minusDays(Integer.parseInt(query.getOrDefault("past_days", "0"))).atStartOfDay();
+                end = today.plusDays(Integer.parseInt(query.getOrDefault("forecast_days", "7")) - 1).atTime(23, 0);
+            }
+            List<String> variables = query.containsKey("hourly")
+                    ? Arrays.asList(query.get("hourly").split(","))
+                    : ALL_VARIABLES;
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            boolean slow = planned != null ? planned == Fault.SLOW : random.nextDouble() < slowRate;
+            long delay = slow ? slowLatencyMs : sampleLatency(random);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            Fault fault = planned != null ? planned : drawFault(random);
+            if (fault == Fault.ERROR) {
+                send(exchange, 500, "{\"error\":true,\"reason\":\"Injected failure\"}");
+                return;
+            }
+            if (fault == Fault.THROTTLE) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "{\"error\":true,\"reason\":\"Too many concurrent requests\"}");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            int hours = (int) ChronoUnit.HOURS.between(start, end) + 1;
+            LocalDateTime issued = archive ? null : LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+            send(exchange, 200, hourlyJson(latitude, longitude, start, hours, variables, issued, missingVariables));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, 400, "{\"error\":true,\"reason\":\"" + e.getMessage() + "\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Fault drawFault(ThreadLocalRandom random) {
+        double fault = random.nextDouble();
+        if (fault < errorRate) {
+            return Fault.ERROR;
+        }
+        return fault < errorRate + throttleRate ? Fault.THROTTLE : Fault.OK;
+    }
+
+    private long sampleLatency(ThreadLocalRandom random) {
+        if (latencyJitter <= 0 || latencyMs <= 0) {
+            return latencyMs;
+        }
+        return Math.round(latencyMs * Math.exp(latencyJitter * random.nextGaussian()));
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String hourlyJson(double latitude, double longitude, LocalDate start, LocalDate end) {
+        int hours = (int) (end.toEpochDay() - start.toEpochDay() + 1) * 24;
+        return hourlyJson(latitude, longitude, start.atStartOfDay(), hours, ALL_VARIABLES, null, Set.of());
+    }
+
+    /**
+     * Odpowiedź z seriami godzinowymi zmiennych dla hours godzin od start; nieznane zmienne
+     * dostają serię zer, a zmienne z missing serię null. Gdy issued != null (prognoza), wartości zależą
+     * też od godziny przebiegu modelu.
+     */
+    static String hourlyJson(double latitude, double longitude, LocalDateTime start, int hours,
+                             List<String> variables, LocalDateTime issued, Set<String> missing) {
+        double base = 15 - Math.abs(latitude) / 4;
+        double phase = longitude / 360.0;
+
+        StringBuilder times = new StringBuilder(hours * 19);
+        StringBuilder[] series = new StringBuilder[variables.size()];
+        for (int v = 0; v < series.length; v++) {
+            series[v] = new StringBuilder(hours * 6);
+        }
+        long issuedHour = issued != null ? issued.toEpochSecond(ZoneOffset.UTC) / 3600 : 0;
+        LocalDateTime time = start;
+        for (int i = 0; i < hours; i++, time = time.plusHours(1)) {
+            double dayOfYear = time.getDayOfYear() / 365.25;
+            double hourOfDay = time.getHour() / 24.0;
+            double t = base - 10 * Math.cos(2 * Math.PI * dayOfYear) - 4 * Math.cos(2 * Math.PI * (hourOfDay + phase));
+            // Keyed by the absolute hour, so overlapping requests agree on shared hours
+            long hour = time.toEpochSecond(ZoneOffset.UTC) / 3600;
+            double noise = Math.sin(hour * 0.37 + latitude) * Math.cos(hour * 0.11 + longitude);
+            if (issued != null) {
+                // Each model run nudges the forecast; far lead times move more than the next few hours
+                double lead = Math.max(0, hour - issuedHour) / 24.0;
+                noise += 0.05 * lead * Math.sin(issuedHour * 1.7 + hour * 0.3);
+            }
+
+            if (i > 0) {
+                times.append(',');
+            }
+            times.append('"').append(time).append('"');
+            for (int v = 0; v < series.length; v++) {
+                double value = switch (variables.get(v)) {
+                    case "temperature_2m" -> t + 2 * noise;
+                    case "wind_speed_10m" -> 12 + 8 * noise;
+                    case "precipitation" -> noise > 0.6 ? (noise - 0.6) * 5 : 0.0;
+                    case "surface_pressure" -> 1013 + 12 * noise;
+                    case "soil_temperature_0cm" -> t * 0.8 + 2;
+                    default -> 0.0;
+                };
+                if (i > 0) {
+                    series[v].append(',');
+                }
+                if (missing.contains(variables.get(v))) {
+                    series[v].append("null");
+                } else {
+                    appendTenths(series[v], value);
+                }
+            }
+        }
+
+        StringBuilder json = new StringBuilder(times.length() + series.length * (hours * 6 + 64) + 256);
+        json.append(String.format(Locale.US, "{\"latitude\":%.4f,\"longitude\":%.4f,\"generationtime_ms\":0.5,"
+                + "\"utc_offset_seconds\":3600,\"timezone\":\"Europe/Warsaw\",\"timezone_abbreviation\":\"CET\","
+                + "\"elevation\":100.0,\"hourly_units\":{\"time\":\"iso8601\"", latitude, longitude));
+        for (String variable : variables) {
+            json.append(",\"").append(variable).append("\":\"").append(UNITS.getOrDefault(variable, "")).append('"');
+        }
+        json.append("},\"hourly\":{\"time\":[").append(times).append(']');
+        for (int v = 0; v < series.length; v++) {
+            json.append(",\"").append(variables.get(v)).append("\":[").append(series[v]).append(']');
+        }
+        return json.append("}}").toString();
+    }
+
+    // One decimal place without String.format, which dominated the time of multi-year payloads
+    private static void appendTenths(StringBuilder out, double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths < 0) {
+            out.append('-');
+            tenths = -tenths;
+        }
+        out.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
@@ -0,0 +1,60 @@
+package com.weather;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Zbiera elementy przekazywane z wątków roboczych i oddaje je na wątku JavaFX najwyżej raz na puls,
+ * zamiast kolejkować osobne Platform.runLater dla każdego elementu.
+ */
+public class PulseBatcher<T> {
+
+    private final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> consumer;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    /**
+     * Musi być utworzony na wątku JavaFX; consumer dostaje elementy w kolejności dodania.
+     */
+    public PulseBatcher(Consumer<List<T>> consumer) {
+        this.consumer = consumer;
+        timer.start();
+    }
+
+    /**
+     * Można wywoływać z dowolnego wątku.
+     */
+    public void offer(T item) {
+        pending.add(item);
+    }
+
+    /**
+     * Przekazuje pozostałe elementy i zatrzymuje timer. Wywoływać na wątku JavaFX.
+     */
+    public void finish() {
+        timer.stop();
+        drain();
+    }
+
+    private void drain() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<T> batch = new ArrayList<>();
+        T item;
+        while ((item = pending.poll()) != null) {
+            batch.add(item);
+        }
+        consumer.accept(batch);
+    }
+}
@@ -0,0 +1,182 @@
+package com.weather;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Kubełek żetonów ograniczający liczbę zapytań do jednego endpointu Open-Meteo.
+ * Wątki czekające na żeton ustawiają się w kolejce priorytetowej (RequestContext.Priority,
+ * a w ramach priorytetu wg kolejności przyjścia), więc zapytania z interfejsu wyprzedzają
+ * zadania wsadowe i doczytywanie w tle. Po odpowiedzi 429/503 pause() wstrzymuje wydawanie
+ * żetonów na czas z nagłówka Retry-After.
+ */
+final class RateLimiter {
+
+    private static final class Waiter implements Comparable<Waiter> {
+        final RequestContext.Priority priority;
+        final long sequence;
+        final Condition turn;
+
+        Waiter(RequestContext.Priority priority, long sequence, Condition turn) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.turn = turn;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private final Metrics.Histogram[] waitTime;
+    private long nanosPerPermit;
+    private double burst;
+    private double permits;
+    private long lastRefill;
+    private long pausedUntil;
+    private long sequence;
+
+    /**
+     * @param label            etykiety metryk, np. endpoint="forecast"
+     * @param permitsPerSecond średnia liczba zapytań na sekundę; 0 wyłącza limit
+     * @param burst            liczba zapytań, które mogą pójść od razu po okresie bezczynności
+     */
+    RateLimiter(String label, double permitsPerSecond, int burst) {
+        setRate(permitsPerSecond, burst);
+        this.permits = this.burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+
+        RequestContext.Priority[] priorities = RequestContext.Priority.values();
+        this.waitTime = new Metrics.Histogram[priorities.length];
+        for (RequestContext.Priority priority : priorities) {
+            waitTime[priority.ordinal()] = Metrics.histogram("weather_upstream_queue_wait_seconds",
+                    "Czas oczekiwania na limit zapytań Open-Meteo",
+                    label + ",priority=\"" + priority.name().toLowerCase() + "\"");
+        }
+        Metrics.gauge("weather_upstream_queue_depth", "Zapytania czekające na limit Open-Meteo", label,
+                this::queueDepth);
+    }
+
+    void setRate(double permitsPerSecond, int burst) {
+        lock.lock();
+        try {
+            this.nanosPerPermit = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+            this.burst = Math.max(1, burst);
+            this.permits = Math.min(permits, this.burst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Czeka na żeton w kolejce wg priorytetu bieżącego żądania. Anulowane żądanie opuszcza kolejkę
+     * bez żetonu i dostaje CancellationException.
+     */
+    void acquire() throws InterruptedException {
+        RequestContext.Priority priority = RequestContext.priority();
+        RequestContext.Cancellation cancellation = RequestContext.cancellation();
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            RequestContext.checkCancelled();
+            if (waiters.isEmpty() && tryTake(start)) {
+                waitTime[priority.ordinal()].record(0);
+                return;
+            }
+
+            Waiter self = new Waiter(priority, sequence++, lock.newCondition());
+            waiters.add(self);
+            try (RequestContext.Registration wakeUp = cancellation.onCancel(() -> signal(self))) {
+                while (true) {
+                    RequestContext.checkCancelled();
+                    if (waiters.peek() != self) {
+                        // Only the head watches the clock; others wake when they reach the head
+                        self.turn.await();
+                        continue;
+                    }
+                    long now = System.nanoTime();
+                    if (tryTake(now)) {
+                        break;
+                    }
+                    self.turn.awaitNanos(nanosUntilPermit(now));
+                }
+            } finally {
+                waiters.remove(self);
+                Waiter next = waiters.peek();
+                if (next != null) {
+                    next.turn.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        waitTime[priority.ordinal()].recordSince(start);
+    }
+
+    private void signal(Waiter waiter) {
+        lock.lock();
+        try {
+            waiter.turn.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wstrzymuje wydawanie żetonów na podany czas (Retry-After) i opróżnia kubełek,
+     * żeby po przerwie nie wypuścić od razu całej serii zapytań.
+     */
+    void pause(long nanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            pausedUntil = Math.max(pausedUntil, now + nanos);
+            permits = 0;
+            lastRefill = now;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean tryTake(long now) {
+        if (now - pausedUntil < 0) {
+            return false;
+        }
+        if (nanosPerPermit == 0) {
+            return true;
+        }
+        long from = Math.max(lastRefill, pausedUntil);
+        if (now > from) {
+            permits = Math.min(burst, permits + (double) (now - from) / nanosPerPermit);
+            lastRefill = now;
+        }
+        if (permits >= 1) {
+            permits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private long nanosUntilPermit(long now) {
+        if (now - pausedUntil < 0) {
+            return pausedUntil - now;
+        }
+        return Math.max(1, (long) ((1 - permits) * nanosPerPermit));
+    }
+}
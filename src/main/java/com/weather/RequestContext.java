@@ -0,0 +1,207 @@
+package com.weather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Identyfikator i priorytet bieżącego żądania (wykres, zapytanie do serwera, lokalizacja w trybie
+ * wsadowym), przypisane do wątku. Zadania przekazywane do innych wątków należy opakować przez wrap(),
+ * aby zdarzenia JFR i logi z tych wątków miały ten sam identyfikator, a zapytania do Open-Meteo
+ * ten sam priorytet w kolejce limitu, a anulowanie żądania przerywało też ich pracę.
+ */
+public final class RequestContext {
+
+    /**
+     * Kolejność obsługi zapytań czekających na limit Open-Meteo: najpierw interaktywne.
+     */
+    public enum Priority { INTERACTIVE, BATCH, BACKGROUND }
+
+    /**
+     * Anulowanie żądania, wspólne dla wszystkich wątków, które je obsługują. Po cancel() zapytania HTTP
+     * zarejestrowane przez onCancel() są przerywane, a checkCancelled() rzuca CancellationException.
+     */
+    public static final class Cancellation {
+        private final List<Runnable> actions = new ArrayList<>();
+        private volatile boolean cancelled;
+
+        public void cancel() {
+            if (this == NEVER) {
+                return;
+            }
+            List<Runnable> pending;
+            synchronized (actions) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                pending = new ArrayList<>(actions);
+                actions.clear();
+            }
+            pending.forEach(Runnable::run);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Wykonuje action przy anulowaniu (od razu, gdy żądanie już jest anulowane), chyba że wcześniej
+         * zostanie zamknięty zwrócony Registration.
+         */
+        public Registration onCancel(Runnable action) {
+            if (this == NEVER) {
+                return () -> { };
+            }
+            synchronized (actions) {
+                if (!cancelled) {
+                    actions.add(action);
+                    return () -> {
+                        synchronized (actions) {
+                            actions.remove(action);
+                        }
+                    };
+                }
+            }
+            action.run();
+            return () -> { };
+        }
+    }
+
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record Frame(long requestId, Priority priority, Cancellation cancellation) { }
+
+    // Requests begun without a Cancellation are never cancelled
+    private static final Cancellation NEVER = new Cancellation();
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+    private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+    private RequestContext() {
+    }
+
+    /**
+     * Przywraca poprzedni identyfikator wątku po zakończeniu bloku try-with-resources.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Frame previous;
+
+        private Scope(Frame previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Rozpoczyna nowe interaktywne żądanie na bieżącym wątku.
+     */
+    public static Scope begin() {
+        return begin(Priority.INTERACTIVE);
+    }
+
+    public static Scope begin(Priority priority) {
+        return begin(priority, NEVER);
+    }
+
+    /**
+     * Rozpoczyna nowe żądanie, które można przerwać przez cancellation.cancel().
+     */
+    public static Scope begin(Priority priority, Cancellation cancellation) {
+        return open(new Frame(NEXT_ID.getAndIncrement(), priority, cancellation));
+    }
+
+    private static Scope open(Frame frame) {
+        Frame previous = CURRENT.get();
+        CURRENT.set(frame);
+        return new Scope(previous);
+    }
+
+    /**
+     * Identyfikator bieżącego żądania albo 0, gdy wątek nie obsługuje żadnego.
+     */
+    public static long current() {
+        Frame frame = CURRENT.get();
+        return frame != null ? frame.requestId() : 0L;
+    }
+
+    /**
+     * Priorytet bieżącego żądania; wywołania spoza żądania traktowane są jak interaktywne.
+     */
+    public static Priority priority() {
+        Frame frame = CURRENT.get();
+        return frame != null ? frame.priority() : Priority.INTERACTIVE;
+    }
+
+    /**
+     * Anulowanie bieżącego żądania; poza żądaniem takie, które nigdy nie następuje.
+     */
+    public static Cancellation cancellation() {
+        Frame frame = CURRENT.get();
+        return frame != null ? frame.cancellation() : NEVER;
+    }
+
+    public static boolean isCancelled() {
+        return cancellation().isCancelled();
+    }
+
+    /**
+     * Rzuca CancellationException, gdy bieżące żądanie zostało anulowane; do wywoływania między
+     * kosztownymi etapami pracy.
+     */
+    public static void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Żądanie " + current() + " anulowane");
+        }
+    }
+
+    public static Runnable wrap(Runnable task) {
+        Frame frame = CURRENT.get();
+        if (frame == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope scope = open(frame)) {
+                task.run();
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Frame frame = CURRENT.get();
+        if (frame == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope scope = open(frame)) {
+                return task.get();
+            }
+        };
+    }
+
+    /**
+     * Jak wrap(), ale zadanie wykonuje się z podanym priorytetem (np. doczytywanie w tle
+     * w ramach żądania interaktywnego) i nie jest przerywane anulowaniem tego żądania.
+     */
+    public static <T> Supplier<T> wrap(Priority priority, Supplier<T> task) {
+        Frame frame = new Frame(current(), priority, NEVER);
+        return () -> {
+            try (Scope scope = open(frame)) {
+                return task.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package com.weather;
+
+import java.util.Arrays;
+
+/**
+ * Zgrubne poziomy jednej serii godzinowej (6 godzin, doba, tydzień) z minimum, średnią i maksimum
+ * w każdym przedziale. Każdy poziom liczony jest z poprzedniego, a przy dopisaniu danych
+ * przeliczany jest tylko ostatni (niepełny) przedział i nowe przedziały, więc koszt dopisania
+ * zależy od liczby nowych punktów, a nie od długości serii.
+ */
+final class ResolutionPyramid {
+
+    private static final long HOUR = 3_600L;
+    private static final long DAY = 86_400L;
+    private static final long[] BUCKET_SECONDS = {6 * HOUR, DAY, 7 * DAY};
+
+    /**
+     * Jeden poziom: size przedziałów uporządkowanych w czasie. times to środek zakresu próbek
+     * w przedziale; przedziały bez wartości mają NaN w min, max i mean.
+     */
+    static final class Level {
+        final long bucketSeconds;
+        int size;
+        long[] times = new long[16];
+        double[] min = new double[16];
+        double[] max = new double[16];
+        double[] mean = new double[16];
+
+        // Bookkeeping for incremental updates and for the next level
+        private long[] keys = new long[16];
+        private long[] firstTimes = new long[16];
+        private long[] lastTimes = new long[16];
+        private double[] sum = new double[16];
+        private int[] counts = new int[16];
+        private int[] sourceStarts = new int[16];
+
+        Level(long bucketSeconds) {
+            this.bucketSeconds = bucketSeconds;
+        }
+
+        private long key(long time) {
+            long day = Math.floorDiv(time, DAY);
+            // Weeks start on Monday; epoch day 0 was a Thursday
+            return bucketSeconds == 7 * DAY ? Math.floorDiv(day + 3, 7) : Math.floorDiv(time, bucketSeconds);
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+            mean = Arrays.copyOf(mean, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            firstTimes = Arrays.copyOf(firstTimes, capacity);
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            sum = Arrays.copyOf(sum, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sourceStarts = Arrays.copyOf(sourceStarts, capacity);
+        }
+
+        private void open(long key, long time, int sourceIndex) {
+            if (size == keys.length) {
+                grow();
+            }
+            keys[size] = key;
+            firstTimes[size] = time;
+            lastTimes[size] = time;
+            min[size] = Double.POSITIVE_INFINITY;
+            max[size] = Double.NEGATIVE_INFINITY;
+            sum[size] = 0;
+            counts[size] = 0;
+            sourceStarts[size] = sourceIndex;
+            size++;
+        }
+
+        private void add(long lastTime, double low, double high, double total, int count) {
+            int b = size - 1;
+            lastTimes[b] = lastTime;
+            if (count > 0) {
+                if (low < min[b]) min[b] = low;
+                if (high > max[b]) max[b] = high;
+                sum[b] += total;
+                counts[b] += count;
+            }
+        }
+
+        private void close(int from) {
+            for (int b = from; b < size; b++) {
+                times[b] = firstTimes[b] + (lastTimes[b] - firstTimes[b]) / 2;
+                if (counts[b] == 0) {
+                    min[b] = max[b] = mean[b] = Double.NaN;
+                } else {
+                    mean[b] = sum[b] / counts[b];
+                }
+            }
+        }
+    }
+
+    private final Level[] levels = new Level[BUCKET_SECONDS.length];
+    private long[] sourceTimes;
+    private double[] sourceValues;
+    private int consumed;
+
+    ResolutionPyramid() {
+        for (int l = 0; l < levels.length; l++) {
+            levels[l] = new Level(BUCKET_SECONDS[l]);
+        }
+    }
+
+    /**
+     * Uzgadnia poziomy z serią. Dłuższa wersja tej samej serii (ten sam początek, niezmienione
+     * wcześniejsze wartości, jak w ChartWindow.update()) jest dopisywana przyrostowo; inna seria
+     * tej samej lub mniejszej długości przebudowuje wszystkie poziomy.
+     */
+    void update(long[] times, double[] values) {
+        update(times, values, Math.min(times.length, values.length));
+    }
+
+    /**
+     * Jak update(long[], double[]) dla pierwszych n próbek; tablice mogą być dłuższymi buforami,
+     * dopisywanymi w miejscu.
+     */
+    void update(long[] times, double[] values, int n) {
+        boolean unchanged = times == sourceTimes && values == sourceValues && n == consumed;
+        if (unchanged) {
+            return;
+        }
+        boolean appended = consumed > 0 && n > consumed && times[0] == sourceTimes[0];
+        if (!appended) {
+            for (Level level : levels) {
+                level.size = 0;
+            }
+        }
+        sourceTimes = times;
+        sourceValues = values;
+        consumed = n;
+
+        // The last bucket of each level may have been partial; rebuild it from its first source item
+        int rawFrom = levels[0].size > 0 ? levels[0].sourceStarts[levels[0].size - 1] : 0;
+        aggregateRaw(levels[0], times, values, rawFrom, n);
+        for (int l = 1; l < levels.length; l++) {
+            Level level = levels[l];
+            Level source = levels[l - 1];
+            int from = level.size > 0 ? level.sourceStarts[level.size - 1] : 0;
+            aggregateLevel(level, source, from);
+        }
+    }
+
+    /**
+     * Najgrubszy poziom, którego przedział nie przekracza secondsPerColumn (co najmniej jeden
+     * przedział na kolumnę pikseli); null, gdy trzeba rysować dane godzinowe.
+     */
+    Level levelFor(double secondsPerColumn) {
+        for (int l = levels.length - 1; l >= 0; l--) {
+            if (levels[l].bucketSeconds <= secondsPerColumn && levels[l].size > 0) {
+                return levels[l];
+            }
+        }
+        return null;
+    }
+
+    private static void aggregateRaw(Level level, long[] times, double[] values, int from, int to) {
+        int firstChanged = dropLastBucket(level);
+        for (int i = from; i < to; i++) {
+            long key = level.key(times[i]);
+            if (level.size == 0 || level.keys[level.size - 1] != key) {
+                level.open(key, times[i], i);
+            }
+            double v = values[i];
+            level.add(times[i], v, v, v, Double.isNaN(v) ? 0 : 1);
+        }
+        level.close(firstChanged);
+    }
+
+    private static void aggregateLevel(Level level, Level source, int from) {
+        int firstChanged = dropLastBucket(level);
+        for (int i = from; i < source.size; i++) {
+            long key = level.key(source.firstTimes[i]);
+            if (level.size == 0 || level.keys[level.size - 1] != key) {
+                level.open(key, source.firstTimes[i], i);
+            }
+            level.add(source.lastTimes[i], source.min[i], source.max[i],
+                    source.sum[i], source.counts[i]);
+        }
+        level.close(firstChanged);
+    }
+
+    // Removes the possibly partial last bucket, which is then rebuilt from its source items
+    private static int dropLastBucket(Level level) {
+        if (level.size > 0) {
+            level.size--;
+        }
+        return level.size;
+    }
+}
@@ -0,0 +1,47 @@
+package com.weather;
+
+/**
+ * Budżet ponowień i zapytań zabezpieczających (hedge) wspólny dla wszystkich zapytań do Open-Meteo.
+ * Każde nowe zapytanie dopisuje ratio żetonu, każde ponowienie zużywa cały żeton, więc ponowień
+ * jest najwyżej ok. ratio * liczba zapytań (plus zapas na start). Przy awarii serwera budżet szybko
+ * się wyczerpuje i błędy wracają do wywołującego zamiast mnożyć ruch.
+ */
+final class RetryBudget {
+
+    private final double ratio;
+    private final double maxBalance;
+    private double balance;
+
+    /**
+     * @param ratio      dopuszczalny stosunek ponowień do zapytań, np. 0.1
+     * @param maxBalance zapas żetonów, do którego budżet się odnawia
+     */
+    RetryBudget(double ratio, double maxBalance) {
+        this.ratio = ratio;
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        return tryWithdraw(0);
+    }
+
+    /**
+     * Pobiera żeton tylko wtedy, gdy po nim w budżecie zostanie co najmniej reserve żetonów.
+     */
+    synchronized boolean tryWithdraw(double reserve) {
+        if (balance < 1 + reserve) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    synchronized double balance() {
+        return balance;
+    }
+}
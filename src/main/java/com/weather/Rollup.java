@@ -0,0 +1,79 @@
+package com.weather;
+
+/**
+ * Wynik agregacji jednej kolumny: po jednej pozycji na okres (dzień, tydzień, miesiąc).
+ * Wszystkie tablice mają długość getSize(); okresy bez wartości mają count 0 i NaN w statystykach.
+ */
+public class Rollup {
+
+    private final Aggregator.Period period;
+    private final long[] periodStarts;
+    private final int[] counts;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final double[] mean;
+    private final double[] p10;
+    private final double[] p50;
+    private final double[] p90;
+
+    Rollup(Aggregator.Period period, int size) {
+        this.period = period;
+        this.periodStarts = new long[size];
+        this.counts = new int[size];
+        this.min = new double[size];
+        this.max = new double[size];
+        this.sum = new double[size];
+        this.mean = new double[size];
+        this.p10 = new double[size];
+        this.p50 = new double[size];
+        this.p90 = new double[size];
+    }
+
+    public Aggregator.Period getPeriod() {
+        return period;
+    }
+
+    public int getSize() {
+        return periodStarts.length;
+    }
+
+    /**
+     * Początki okresów w sekundach epoki (jak WeatherData.getTimeEpochs()).
+     */
+    public long[] getPeriodStarts() {
+        return periodStarts;
+    }
+
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public double[] getMin() {
+        return min;
+    }
+
+    public double[] getMax() {
+        return max;
+    }
+
+    public double[] getSum() {
+        return sum;
+    }
+
+    public double[] getMean() {
+        return mean;
+    }
+
+    public double[] getP10() {
+        return p10;
+    }
+
+    public double[] getP50() {
+        return p50;
+    }
+
+    public double[] getP90() {
+        return p90;
+    }
+}
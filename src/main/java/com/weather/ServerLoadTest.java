@@ -0,0 +1,181 @@
+package com.weather;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Test obciążeniowy trybu serwera. Domyślnie uruchamia w tym samym procesie atrapę Open-Meteo
+ * i WeatherServer, a następnie wysyła mieszankę żądań z wielu równoczesnych klientów
+ * (wątki wirtualne). Z opcją --url obciąża już działający serwer.
+ *
+ * <pre>
+ *   java com.weather.ServerLoadTest --clients 2000 --requests 100000 --stub-latency 50
+ *   java com.weather.ServerLoadTest --stub-error-rate 0.05 --stub-slow-rate 0.02 --stub-slow-latency 3000
+ * </pre>
+ */
+public class ServerLoadTest {
+
+    private int clients = 1000;
+    private int requests = 50_000;
+    private long stubLatencyMs = 50;
+    private double stubErrorRate;
+    private double stubSlowRate;
+    private long stubSlowLatencyMs = 2000;
+    private String baseUrl;
+
+    private final LongAdder ok = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    // Last ETag seen per URL, replayed as If-None-Match on part of the requests
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        ServerLoadTest test = new ServerLoadTest();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients" -> test.clients = Integer.parseInt(args[i + 1]);
+                case "--requests" -> test.requests = Integer.parseInt(args[i + 1]);
+                case "--stub-latency" -> test.stubLatencyMs = Long.parseLong(args[i + 1]);
+                case "--stub-error-rate" -> test.stubErrorRate = Double.parseDouble(args[i + 1]);
+                case "--stub-slow-rate" -> test.stubSlowRate = Double.parseDouble(args[i + 1]);
+                case "--stub-slow-latency" -> test.stubSlowLatencyMs = Long.parseLong(args[i + 1]);
+                case "--url" -> test.baseUrl = args[i + 1];
+                default -> throw new IllegalArgumentException("Nieznana opcja: " + args[i]);
+            }
+        }
+        test.run();
+    }
+
+    private void run() throws Exception {
+        OpenMeteoStub stub = null;
+        WeatherService weatherService = null;
+        WeatherServer server = null;
+        CityService cityService = new CityService();
+        if (baseUrl == null) {
+            stub = new OpenMeteoStub(0, stubLatencyMs);
+            stub.setFaults(stubErrorRate, stubSlowRate, stubSlowLatencyMs);
+            stub.start();
+            // The stub has no quota; measure the server, not the client-side rate limit
+            for (WeatherService.Endpoint endpoint : WeatherService.Endpoint.values()) {
+                endpoint.limiter.setRate(0, 1);
+            }
+            weatherService = new WeatherService(64, stub.getForecastUrl(), stub.getHistoricalUrl());
+            server = new WeatherServer(0, weatherService, cityService);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        List<City> cities = cityService.getPopularCities(500);
+        long[] latencies = new long[requests];
+        AtomicInteger issued = new AtomicInteger();
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        System.out.println("Obciążanie " + baseUrl + ": " + clients + " klientów, " + requests + " żądań");
+        long started = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                workers.execute(() -> {
+                    int index;
+                    while ((index = issued.getAndIncrement()) < requests) {
+                        latencies[index] = send(client, randomPath(cities));
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        if (server != null) {
+            server.stop();
+            weatherService.close();
+            stub.stop();
+        }
+        printSummary(elapsed, latencies);
+    }
+
+    private long send(HttpClient client, String path) {
+        String url = baseUrl + path;
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Accept-Encoding", "gzip");
+        String etag = etags.get(url);
+        if (etag != null && ThreadLocalRandom.current().nextBoolean()) {
+            request.header("If-None-Match", etag);
+        }
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            bytes.add(response.body().length);
+            if (response.statusCode() == 200) {
+                ok.increment();
+                response.headers().firstValue("ETag").ifPresent(tag -> etags.put(url, tag));
+            } else if (response.statusCode() == 304) {
+                notModified.increment();
+            } else {
+                failed.increment();
+            }
+        } catch (Exception e) {
+            failed.increment();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // 60% forecast, 15% historical month, 15% city search, 10% nearest city
+    private static String randomPath(List<City> cities) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        City city = cities.get(random.nextInt(cities.size()));
+        int kind = random.nextInt(100);
+        if (kind < 60) {
+            return String.format(Locale.US, "/forecast?lat=%.4f&lon=%.4f&days=%d",
+                    city.getLatitude(), city.getLongitude(), 1 + random.nextInt(3) * 7);
+        } else if (kind < 75) {
+            LocalDate month = LocalDate.now().withDayOfMonth(1).minusMonths(2 + random.nextInt(24));
+            return String.format(Locale.US, "/historical?lat=%.4f&lon=%.4f&start=%s&end=%s",
+                    city.getLatitude(), city.getLongitude(), month, month.plusMonths(1).minusDays(1));
+        } else if (kind < 90) {
+            String name = city.getName();
+            return "/cities/search?q=" + URLEncoder.encode(name.substring(0, Math.min(3, name.length())),
+                    StandardCharsets.UTF_8);
+        }
+        return String.format(Locale.US, "/cities/nearest?lat=%.3f&lon=%.3f&limit=5",
+                city.getLatitude() + random.nextGaussian(), city.getLongitude() + random.nextGaussian());
+    }
+
+    private void printSummary(long elapsedNanos, long[] latencies) {
+        Arrays.sort(latencies);
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("=== Wynik testu obciążeniowego ===");
+        System.out.printf(Locale.US, "Żądania: %d w %.1f s, %.0f żądań/s%n", latencies.length, seconds,
+                latencies.length / seconds);
+        System.out.printf(Locale.US, "200: %d, 304: %d, błędy: %d, odebrano %.1f MB%n",
+                ok.sum(), notModified.sum(), failed.sum(), bytes.sum() / 1e6);
+        System.out.printf(Locale.US, "Opóźnienie: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,154 @@
+package com.weather;
+
+import javafx.scene.chart.ValueAxis;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Numeryczna oś czasu dla wykresów (wartości w sekundach epoki, jak w WeatherData.getTimeEpochs()).
+ * Odstęp między etykietami dobierany jest do rozpiętości danych: od 1 godziny do kilku lat.
+ */
+public class TimeAxis extends ValueAxis<Number> {
+
+    private static final long HOUR = 3_600L;
+    private static final long DAY = 24 * HOUR;
+
+    // Minimal horizontal room for one tick label, in pixels
+    private static final double MIN_TICK_SPACING = 80;
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("dd.MM HH:mm");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd.MM");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MM.yyyy");
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+
+    enum TickUnit {
+        HOURS_1(HOUR, 0), HOURS_3(3 * HOUR, 0), HOURS_6(6 * HOUR, 0), HOURS_12(12 * HOUR, 0),
+        DAYS_1(DAY, 0), DAYS_2(2 * DAY, 0), WEEK_1(7 * DAY, 0),
+        MONTHS_1(30 * DAY, 1), MONTHS_3(91 * DAY, 3), MONTHS_6(182 * DAY, 6),
+        YEARS_1(365 * DAY, 12), YEARS_2(730 * DAY, 24), YEARS_5(1826 * DAY, 60), YEARS_10(3652 * DAY, 120);
+
+        // Approximate length, used only to pick the unit
+        final long seconds;
+        // Calendar step in months; 0 for fixed-length units
+        final int months;
+
+        TickUnit(long seconds, int months) {
+            this.seconds = seconds;
+            this.months = months;
+        }
+    }
+
+    private TickUnit tickUnit = TickUnit.HOURS_3;
+
+    public TimeAxis() {
+        setMinorTickVisible(false);
+        setTickLabelRotation(45);
+    }
+
+    @Override
+    protected Object autoRange(double minValue, double maxValue, double length, double labelSize) {
+        // A time axis spans exactly the data, without rounding to "nice" numbers
+        if (minValue == maxValue) {
+            minValue -= HOUR;
+            maxValue += HOUR;
+        }
+        return new double[]{minValue, maxValue, calculateNewScale(length, minValue, maxValue)};
+    }
+
+    @Override
+    protected void setRange(Object range, boolean animate) {
+        double[] bounds = (double[]) range;
+        setLowerBound(bounds[0]);
+        setUpperBound(bounds[1]);
+        currentLowerBound.set(bounds[0]);
+        setScale(bounds[2]);
+    }
+
+    @Override
+    protected Object getRange() {
+        return new double[]{getLowerBound(), getUpperBound(), getScale()};
+    }
+
+    @Override
+    protected List<Number> calculateTickValues(double length, Object range) {
+        double[] bounds = (double[]) range;
+        long lower = (long) Math.ceil(bounds[0]);
+        long upper = (long) Math.floor(bounds[1]);
+        if (upper <= lower || length <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Number> ticks = new ArrayList<>();
+        tickUnit = computeTicks(lower, upper, length, ticks);
+        return ticks;
+    }
+
+    /**
+     * Wyznacza położenia etykiet osi czasu dla zakresu [lower, upper] i długości osi w pikselach.
+     * Współdzielone z TimeSeriesCanvas.
+     */
+    static TickUnit computeTicks(long lower, long upper, double length, List<? super Long> ticks) {
+        TickUnit unit = chooseUnit(upper - lower, length);
+        if (unit.months == 0) {
+            // Fixed-length units are aligned to multiples of the step (hours to 00/03/06..., days to midnight)
+            long step = unit.seconds;
+            long first = Math.floorDiv(lower + step - 1, step) * step;
+            for (long t = first; t <= upper; t += step) {
+                ticks.add(t);
+            }
+        } else {
+            LocalDateTime start = LocalDateTime.ofEpochSecond(lower, 0, ZoneOffset.UTC);
+            LocalDateTime current = start.toLocalDate().withDayOfMonth(1).atStartOfDay();
+            int monthIndex = current.getYear() * 12 + current.getMonthValue() - 1;
+            int aligned = Math.floorDiv(monthIndex + unit.months - 1, unit.months) * unit.months;
+            current = current.plusMonths(aligned - monthIndex);
+            if (current.isBefore(start)) {
+                current = current.plusMonths(unit.months);
+            }
+            long t = current.toEpochSecond(ZoneOffset.UTC);
+            while (t <= upper) {
+                ticks.add(t);
+                current = current.plusMonths(unit.months);
+                t = current.toEpochSecond(ZoneOffset.UTC);
+            }
+        }
+        return unit;
+    }
+
+    private static TickUnit chooseUnit(long span, double length) {
+        double maxTicks = Math.max(2, length / MIN_TICK_SPACING);
+        for (TickUnit unit : TickUnit.values()) {
+            if (span / (double) unit.seconds <= maxTicks) {
+                return unit;
+            }
+        }
+        return TickUnit.YEARS_10;
+    }
+
+    @Override
+    protected List<Number> calculateMinorTickMarks() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected String getTickMarkLabel(Number value) {
+        return formatTick(value.longValue(), tickUnit);
+    }
+
+    static String formatTick(long epochSeconds, TickUnit tickUnit) {
+        LocalDateTime time = LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+        if (tickUnit.months >= 12) {
+            return time.format(YEAR_FORMAT);
+        } else if (tickUnit.months > 0) {
+            return time.format(MONTH_FORMAT);
+        } else if (tickUnit.seconds >= DAY) {
+            return time.format(DAY_FORMAT);
+        }
+        return time.format(HOUR_FORMAT);
+    }
+}
@@ -0,0 +1,559 @@
+package com.weather;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Wykres szeregów czasowych rysowany bezpośrednio na Canvas, przeznaczony dla dużych zbiorów danych.
+ * Dane czytane są z tablic prymitywnych; każda kolumna pikseli rysowana jest jako odcinek min-max,
+ * więc koszt rysowania zależy od szerokości wykresu, a nie od liczby punktów. Przy dłuższych zakresach
+ * seria czytana jest z poziomu ResolutionPyramid dobranego do czasu na piksel, więc także
+ * przeglądanie danych przy zoomie i przesuwaniu nie zależy od długości zakresu.
+ */
+public class TimeSeriesCanvas extends Region {
+
+    private static final double LEFT_MARGIN = 60;
+    private static final double RIGHT_MARGIN = 15;
+    private static final double TOP_MARGIN = 30;
+    private static final double BOTTOM_MARGIN = 45;
+    private static final double MIN_SPAN_SECONDS = 2 * 3_600;
+    // Fraction of the remaining distance covered per pulse while zooming/panning
+    private static final double SMOOTHING = 0.35;
+
+    private static final DateTimeFormatter READOUT_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+    private final Canvas plotCanvas = new Canvas();
+    private final Canvas overlayCanvas = new Canvas();
+    private final String title;
+
+    private long[] times = new long[0];
+    // Number of valid samples; times and series values may be longer buffers filled by appending
+    private int size;
+    private final List<Series> series = new ArrayList<>();
+
+    // Current (animated) and target visible time range, in epoch seconds
+    private double viewStart, viewEnd;
+    private double targetStart, targetEnd;
+    private boolean dirty = true;
+
+    // Visible value range computed during the last render
+    private double yMin, yMax;
+
+    // Per pixel column scratch buffers, reused between renders
+    private double[] columnMin = new double[0];
+    private double[] columnMax = new double[0];
+    private double[] columnFirst = new double[0];
+    private double[] columnLast = new double[0];
+
+    private double dragStartX;
+    private double dragStartView;
+    private double mouseX = -1;
+
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            boolean settled = stepView();
+            if (dirty) {
+                render();
+                drawOverlay();
+            }
+            if (settled && !dirty) {
+                stop();
+            }
+        }
+    };
+
+    private static final class Series {
+        final String name;
+        final Color color;
+        final ResolutionPyramid pyramid = new ResolutionPyramid();
+        double[] values;
+
+        Series(String name, Color color, double[] values) {
+            this.name = name;
+            this.color = color;
+            this.values = values;
+        }
+    }
+
+    public TimeSeriesCanvas(String title) {
+        this.title = title;
+        getChildren().addAll(plotCanvas, overlayCanvas);
+        setPrefSize(860, 400);
+        setMinSize(200, 150);
+        installHandlers();
+    }
+
+    /**
+     * Ustawia oś czasu (sekundy epoki, rosnąco) wspólną dla wszystkich serii.
+     */
+    public void setTimes(long[] times) {
+        setTimes(times, times.length);
+    }
+
+    /**
+     * Jak setTimes(long[]), ale ważne są tylko pierwsze size elementów (oraz wartości serii);
+     * bufor może być dłuższy i dopisywany w miejscu.
+     */
+    public void setTimes(long[] times, int size) {
+        boolean fullView = viewEnd <= viewStart || isShowingAll();
+        this.times = times;
+        this.size = size;
+        if (fullView) {
+            resetView();
+        }
+        requestRender();
+    }
+
+    public void addSeries(String name, Color color, double[] values) {
+        series.add(new Series(name, color, values));
+        requestRender();
+    }
+
+    /**
+     * Podmienia wartości istniejącej serii (np. po dociągnięciu kolejnych danych).
+     */
+    public void setSeriesValues(String name, double[] values) {
+        for (Series s : series) {
+            if (s.name.equals(name)) {
+                s.values = values;
+            }
+        }
+        requestRender();
+    }
+
+    /**
+     * Przywraca widok całego zakresu danych.
+     */
+    public void resetView() {
+        if (size == 0) {
+            viewStart = targetStart = 0;
+            viewEnd = targetEnd = 1;
+        } else {
+            viewStart = targetStart = times[0];
+            viewEnd = targetEnd = Math.max(times[size - 1], times[0] + MIN_SPAN_SECONDS);
+        }
+        requestRender();
+    }
+
+    private boolean isShowingAll() {
+        return size == 0
+                || (targetStart <= times[0] && targetEnd >= times[size - 1]);
+    }
+
+    /**
+     * Arrays drawn for one series at the current zoom: raw samples (low = high = mid) or a pyramid level.
+     */
+    private record Samples(long[] times, double[] low, double[] high, double[] mid, int size) {
+    }
+
+    private Samples samples(Series s, double secondsPerColumn) {
+        ResolutionPyramid.Level level = s.pyramid.levelFor(secondsPerColumn);
+        if (level == null) {
+            return new Samples(times, s.values, s.values, s.values, Math.min(size, s.values.length));
+        }
+        return new Samples(level.times, level.min, level.max, level.mean, level.size);
+    }
+
+    private void requestRender() {
+        dirty = true;
+        pulse.start();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (plotCanvas.getWidth() != width || plotCanvas.getHeight() != height) {
+            plotCanvas.setWidth(width);
+            plotCanvas.setHeight(height);
+            overlayCanvas.setWidth(width);
+            overlayCanvas.setHeight(height);
+            requestRender();
+        }
+    }
+
+    private double plotWidth() {
+        return Math.max(1, plotCanvas.getWidth() - LEFT_MARGIN - RIGHT_MARGIN);
+    }
+
+    private double plotHeight() {
+        return Math.max(1, plotCanvas.getHeight() - TOP_MARGIN - BOTTOM_MARGIN);
+    }
+
+    // ---- Interaction -------------------------------------------------------------------------
+
+    private void installHandlers() {
+        setOnScroll(e -> {
+            if (size == 0 || e.getDeltaY() == 0) {
+                return;
+            }
+            double anchor = xToTime(e.getX(), targetStart, targetEnd);
+            double factor = Math.pow(1.0015, -e.getDeltaY());
+            double span = clampSpan((targetEnd - targetStart) * factor);
+            double ratio = (anchor - targetStart) / (targetEnd - targetStart);
+            setTarget(anchor - span * ratio, span);
+            e.consume();
+        });
+
+        setOnMousePressed(e -> {
+            if (e.getButton() == MouseButton.PRIMARY) {
+                dragStartX = e.getX();
+                dragStartView = targetStart;
+            }
+        });
+
+        setOnMouseDragged(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && size > 0) {
+                double span = targetEnd - targetStart;
+                double shift = (e.getX() - dragStartX) / plotWidth() * span;
+                // Panning follows the cursor directly, without smoothing
+                setTarget(dragStartView - shift, span);
+                viewStart = targetStart;
+                viewEnd = targetEnd;
+                mouseX = e.getX();
+            }
+        });
+
+        setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+                resetView();
+            }
+        });
+
+        setOnMouseMoved(e -> {
+            mouseX = e.getX();
+            drawOverlay();
+        });
+
+        setOnMouseExited(e -> {
+            mouseX = -1;
+            drawOverlay();
+        });
+    }
+
+    private double clampSpan(double span) {
+        double fullSpan = times[size - 1] - times[0];
+        return Math.max(MIN_SPAN_SECONDS, Math.min(span, Math.max(fullSpan, MIN_SPAN_SECONDS)));
+    }
+
+    private void setTarget(double start, double span) {
+        double first = times[0];
+        double last = Math.max(times[size - 1], first + span);
+        start = Math.max(first, Math.min(start, last - span));
+        targetStart = start;
+        targetEnd = start + span;
+        requestRender();
+    }
+
+    /**
+     * Moves the current view towards the target; returns true once they match.
+     */
+    private boolean stepView() {
+        double span = targetEnd - targetStart;
+        if (Math.abs(viewStart - targetStart) < span * 1e-4 && Math.abs(viewEnd - targetEnd) < span * 1e-4) {
+            viewStart = targetStart;
+            viewEnd = targetEnd;
+            return true;
+        }
+        viewStart += (targetStart - viewStart) * SMOOTHING;
+        viewEnd += (targetEnd - viewEnd) * SMOOTHING;
+        dirty = true;
+        return false;
+    }
+
+    private double xToTime(double x, double start, double end) {
+        return start + (x - LEFT_MARGIN) / plotWidth() * (end - start);
+    }
+
+    private double timeToX(double t) {
+        return LEFT_MARGIN + (t - viewStart) / (viewEnd - viewStart) * plotWidth();
+    }
+
+    private double valueToY(double v) {
+        return TOP_MARGIN + (yMax - v) / (yMax - yMin) * plotHeight();
+    }
+
+    // ---- Rendering ---------------------------------------------------------------------------
+
+    private void render() {
+        dirty = false;
+        GraphicsContext gc = plotCanvas.getGraphicsContext2D();
+        double width = plotCanvas.getWidth();
+        double height = plotCanvas.getHeight();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+
+        gc.setFill(Color.web("#2C3E50"));
+        gc.setFont(Font.font(16));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.fillText(title, width / 2, TOP_MARGIN / 2);
+
+        int columns = (int) plotWidth();
+        ensureColumnBuffers(columns);
+        double secondsPerColumn = (viewEnd - viewStart) / columns;
+        List<Samples> visible = new ArrayList<>(series.size());
+        for (Series s : series) {
+            // Levels are only extended by the data appended since the last render
+            s.pyramid.update(times, s.values, Math.min(size, s.values.length));
+            visible.add(samples(s, secondsPerColumn));
+        }
+
+        // First pass: visible value range over all series
+        yMin = Double.POSITIVE_INFINITY;
+        yMax = Double.NEGATIVE_INFINITY;
+        for (Samples samples : visible) {
+            int from = Math.max(0, lowerBound(samples.times, samples.size, viewStart) - 1);
+            int to = Math.min(samples.size, lowerBound(samples.times, samples.size, viewEnd) + 1);
+            for (int i = from; i < to; i++) {
+                double low = samples.low[i];
+                double high = samples.high[i];
+                if (low < yMin) yMin = low;
+                if (high > yMax) yMax = high;
+            }
+        }
+        if (yMin > yMax) {
+            yMin = 0;
+            yMax = 1;
+        } else {
+            double margin = Math.max((yMax - yMin) * 0.05, 0.5);
+            yMin -= margin;
+            yMax += margin;
+        }
+
+        drawGrid(gc, columns);
+
+        gc.save();
+        gc.beginPath();
+        gc.rect(LEFT_MARGIN, TOP_MARGIN, plotWidth(), plotHeight());
+        gc.clip();
+        for (int k = 0; k < series.size(); k++) {
+            drawSeries(gc, series.get(k).color, visible.get(k), columns);
+        }
+        gc.restore();
+    }
+
+    private void ensureColumnBuffers(int columns) {
+        if (columnMin.length < columns) {
+            columnMin = new double[columns];
+            columnMax = new double[columns];
+            columnFirst = new double[columns];
+            columnLast = new double[columns];
+        }
+    }
+
+    private void drawSeries(GraphicsContext gc, Color color, Samples samples, int columns) {
+        int n = samples.size;
+        if (n == 0) {
+            return;
+        }
+        long[] times = samples.times;
+        double[] mid = samples.mid;
+        double secondsPerColumn = (viewEnd - viewStart) / columns;
+
+        // Reduce the visible points to first/min/max/last per pixel column in one sequential scan
+        int i = Math.max(0, lowerBound(times, n, viewStart) - 1);
+        double columnStart = viewStart;
+        // Point just before the view keeps the line continuous at the left edge
+        double before = Double.NaN;
+        double beforeTime = 0;
+        while (i < n && times[i] < columnStart) {
+            if (!Double.isNaN(mid[i])) {
+                before = mid[i];
+                beforeTime = times[i];
+            }
+            i++;
+        }
+        for (int c = 0; c < columns; c++) {
+            double columnEnd = viewStart + (c + 1) * secondsPerColumn;
+            double first = Double.NaN, last = Double.NaN;
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            while (i < n && times[i] < columnEnd) {
+                double v = mid[i];
+                double low = samples.low[i];
+                double high = samples.high[i++];
+                if (Double.isNaN(v)) {
+                    continue;
+                }
+                if (Double.isNaN(first)) first = v;
+                last = v;
+                if (low < min) min = low;
+                if (high > max) max = high;
+            }
+            columnFirst[c] = first;
+            columnLast[c] = last;
+            columnMin[c] = min;
+            columnMax[c] = max;
+        }
+        double after = Double.NaN;
+        double afterTime = 0;
+        while (i < n && Double.isNaN(after)) {
+            after = mid[i];
+            afterTime = times[i];
+            i++;
+        }
+
+        gc.setStroke(color);
+        gc.setLineWidth(1.5);
+        gc.beginPath();
+        boolean started = false;
+        if (!Double.isNaN(before)) {
+            gc.moveTo(timeToX(beforeTime), valueToY(before));
+            started = true;
+        }
+        for (int c = 0; c < columns; c++) {
+            if (Double.isNaN(columnFirst[c])) {
+                continue;
+            }
+            double x = LEFT_MARGIN + c + 0.5;
+            double firstY = valueToY(columnFirst[c]);
+            if (started) {
+                gc.lineTo(x, firstY);
+            } else {
+                gc.moveTo(x, firstY);
+                started = true;
+            }
+            if (columnMin[c] != columnMax[c]) {
+                gc.lineTo(x, valueToY(columnMin[c]));
+                gc.lineTo(x, valueToY(columnMax[c]));
+            }
+            gc.lineTo(x, valueToY(columnLast[c]));
+        }
+        if (started && !Double.isNaN(after)) {
+            gc.lineTo(timeToX(afterTime), valueToY(after));
+        }
+        gc.stroke();
+    }
+
+    private void drawGrid(GraphicsContext gc, int columns) {
+        double plotBottom = TOP_MARGIN + plotHeight();
+        gc.setLineWidth(1);
+        gc.setFont(Font.font(11));
+
+        // Time ticks, shared with the LineChart TimeAxis
+        List<Long> ticks = new ArrayList<>();
+        TimeAxis.TickUnit unit = TimeAxis.computeTicks((long) Math.ceil(viewStart), (long) Math.floor(viewEnd),
+                columns, ticks);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.TOP);
+        for (long tick : ticks) {
+            double x = Math.round(timeToX(tick)) + 0.5;
+            gc.setStroke(Color.web("#ECF0F1"));
+            gc.strokeLine(x, TOP_MARGIN, x, plotBottom);
+            gc.setFill(Color.web("#7F8C8D"));
+            gc.fillText(TimeAxis.formatTick(tick, unit), x, plotBottom + 6);
+        }
+
+        // Value ticks at a "nice" step
+        double step = niceStep((yMax - yMin) / Math.max(2, plotHeight() / 50));
+        gc.setTextAlign(TextAlignment.RIGHT);
+        gc.setTextBaseline(VPos.CENTER);
+        for (double v = Math.ceil(yMin / step) * step; v <= yMax; v += step) {
+            double y = Math.round(valueToY(v)) + 0.5;
+            gc.setStroke(Color.web("#ECF0F1"));
+            gc.strokeLine(LEFT_MARGIN, y, LEFT_MARGIN + plotWidth(), y);
+            gc.setFill(Color.web("#7F8C8D"));
+            gc.fillText(formatValue(v, step), LEFT_MARGIN - 6, y);
+        }
+
+        gc.setStroke(Color.web("#BDC3C7"));
+        gc.strokeRect(LEFT_MARGIN + 0.5, TOP_MARGIN + 0.5, plotWidth(), plotHeight());
+    }
+
+    private static double niceStep(double rough) {
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rough)));
+        double fraction = rough / magnitude;
+        double nice = fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10;
+        return nice * magnitude;
+    }
+
+    private static String formatValue(double v, double step) {
+        return step >= 1 ? String.format(Locale.US, "%.0f", v) : String.format(Locale.US, "%.1f", v);
+    }
+
+    /**
+     * Crosshair and hover readout live on a separate canvas, so mouse movement never repaints the series.
+     */
+    private void drawOverlay() {
+        GraphicsContext gc = overlayCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, overlayCanvas.getWidth(), overlayCanvas.getHeight());
+        if (mouseX < LEFT_MARGIN || mouseX > LEFT_MARGIN + plotWidth() || size == 0) {
+            return;
+        }
+
+        int index = nearestIndex(xToTime(mouseX, viewStart, viewEnd));
+        double x = timeToX(times[index]);
+        gc.setStroke(Color.web("#7F8C8D"));
+        gc.setLineWidth(1);
+        gc.strokeLine(x, TOP_MARGIN, x, TOP_MARGIN + plotHeight());
+
+        List<String> lines = new ArrayList<>(series.size() + 1);
+        lines.add(LocalDateTime.ofEpochSecond(times[index], 0, ZoneOffset.UTC).format(READOUT_FORMAT));
+        for (Series s : series) {
+            if (index < s.values.length && !Double.isNaN(s.values[index])) {
+                double y = valueToY(s.values[index]);
+                gc.setFill(s.color);
+                gc.fillOval(x - 3, y - 3, 6, 6);
+                lines.add(String.format(Locale.US, "%s: %.2f", s.name, s.values[index]));
+            }
+        }
+
+        gc.setFont(Font.font(11));
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        double boxWidth = 0;
+        for (String line : lines) {
+            boxWidth = Math.max(boxWidth, line.length() * 6.5);
+        }
+        double boxHeight = lines.size() * 15 + 6;
+        double boxX = x + 10 + boxWidth > LEFT_MARGIN + plotWidth() ? x - 10 - boxWidth : x + 10;
+        double boxY = TOP_MARGIN + 5;
+        gc.setFill(Color.rgb(255, 255, 255, 0.9));
+        gc.fillRect(boxX, boxY, boxWidth, boxHeight);
+        gc.setStroke(Color.web("#BDC3C7"));
+        gc.strokeRect(boxX, boxY, boxWidth, boxHeight);
+        gc.setFill(Color.web("#2C3E50"));
+        for (int i = 0; i < lines.size(); i++) {
+            gc.fillText(lines.get(i), boxX + 5, boxY + 3 + i * 15);
+        }
+    }
+
+    /**
+     * Index of the first sample with time >= t.
+     */
+    private int lowerBound(double t) {
+        return lowerBound(times, size, t);
+    }
+
+    private static int lowerBound(long[] times, int size, double t) {
+        int index = Arrays.binarySearch(times, 0, size, (long) Math.ceil(t));
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private int nearestIndex(double t) {
+        int index = lowerBound(t);
+        if (index >= size) {
+            return size - 1;
+        }
+        if (index > 0 && t - times[index - 1] < times[index] - t) {
+            return index - 1;
+        }
+        return index;
+    }
+}
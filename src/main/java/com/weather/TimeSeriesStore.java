@@ -0,0 +1,837 @@
+package com.weather;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * Lokalny magazyn godzinowych danych archiwalnych, które w Open-Meteo już się nie zmieniają.
+ * Każda lokalizacja i zmienna ma katalog z segmentami tylko do dopisywania
+ * (root/lat_lon/zmienna/*.seg). Segment koduje czasy jako różnice różnic, a wartości jako XOR
+ * z poprzednią wartością (jak w Gorilli), więc seria godzinowa zajmuje zwykle kilka bajtów na godzinę.
+ *
+ * <p>Zakresy segmentów są trzymane w pamięci (rzadki indeks: jeden wpis na segment), odczyt
+ * mapuje pliki do pamięci i dekoduje tylko segmenty nachodzące na zapytanie. Dopisywanie tworzy
+ * nowe segmenty; w tle kompaktowanie łączy je w jeden segment na rok kalendarzowy. Zastąpione
+ * segmenty są zapisywane w pliku obsolete.txt katalogu zmiennej, zanim zostaną usunięte, więc plik,
+ * którego nie dało się usunąć (np. wciąż zmapowany w Windows), nie wraca do indeksu po restarcie.
+ *
+ * <p>Dni, w których archiwum nie ma dla zmiennej żadnej wartości (np. temperatura gleby nad wodą),
+ * nie trafiają do segmentów, tylko do pliku empty.txt katalogu zmiennej wraz z czasem sprawdzenia.
+ * missingDays() zgłasza je ponownie dopiero po emptyRecheckSeconds.
+ */
+final class TimeSeriesStore {
+
+    private static final Log LOG = Log.get(TimeSeriesStore.class);
+    private static final int MAGIC = 0x57545331; // "WTS1"
+    private static final int HEADER_BYTES = 24;
+    private static final long HOUR = 3600;
+    private static final long DAY = 24 * HOUR;
+    // Local times around DST changes may skip an hour; anything longer is a real gap
+    private static final long MAX_STEP_SECONDS = 2 * HOUR;
+    // Compaction starts once a series has this many more segments than calendar years
+    private static final int COMPACTION_SLACK = 4;
+    // Segments replaced by compaction and not deleted yet, one file name per line
+    private static final String OBSOLETE_SEGMENTS = "obsolete.txt";
+    // Days checked in the archive and found without values: "epochDay checkedAtEpochSecond" per line
+    private static final String EMPTY_DAYS = "empty.txt";
+    private static final long DEFAULT_EMPTY_RECHECK_SECONDS = 30 * DAY;
+    private static final Comparator<Segment> SEGMENT_ORDER = (a, b) -> a.first != b.first
+            ? Long.compare(a.first, b.first) : a.path.compareTo(b.path);
+
+    private static final Metrics.Counter HOURS_READ = Metrics.counter("weather_store_hours_read_total",
+            "Godziny odczytane z lokalnego magazynu archiwum", "");
+    private static final Metrics.Counter HOURS_WRITTEN = Metrics.counter("weather_store_hours_written_total",
+            "Godziny dopisane do lokalnego magazynu archiwum", "");
+    private static final Metrics.Counter COMPACTIONS = Metrics.counter("weather_store_compactions_total",
+            "Kompaktowania segmentów magazynu archiwum", "");
+    private static final Metrics.Histogram READ_TIME = Metrics.histogram("weather_store_read_seconds",
+            "Czas odczytu zakresu z magazynu archiwum", "");
+
+    /**
+     * Jeden plik segmentu: count punktów od first do last (sekundy epoki, czas lokalny jak UTC).
+     */
+    private record Segment(Path path, long first, long last, int count) {
+    }
+
+    /**
+     * Segmenty jednej lokalizacji, po jednym zbiorze na zmienną.
+     */
+    private static final class Location {
+        final Path directory;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final List<NavigableSet<Segment>> series = new ArrayList<>();
+        // Per variable: epoch day -> when the archive last returned no values for it
+        final List<Map<Long, Long>> emptyDays = new ArrayList<>();
+        boolean compactionQueued;
+
+        Location(Path directory) {
+            this.directory = directory;
+            for (int v = 0; v < WeatherVariable.values().length; v++) {
+                series.add(new TreeSet<>(SEGMENT_ORDER));
+                emptyDays.add(new HashMap<>());
+            }
+        }
+    }
+
+    private final Path root;
+    private final long emptyRecheckSeconds;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    TimeSeriesStore(Path root) throws IOException {
+        this(root, DEFAULT_EMPTY_RECHECK_SECONDS);
+    }
+
+    /**
+     * @param emptyRecheckSeconds po jakim czasie dzień bez wartości jest znów zgłaszany jako brakujący
+     */
+    TimeSeriesStore(Path root, long emptyRecheckSeconds) throws IOException {
+        this.root = Files.createDirectories(root);
+        this.emptyRecheckSeconds = emptyRecheckSeconds;
+        Metrics.gauge("weather_store_locations", "Lokalizacje wczytane z magazynu archiwum", "",
+                () -> locations.size());
+    }
+
+    /**
+     * Zwraca ciągłe zakresy dni z [start, end], których magazyn nie ma dla zmiennej variable.
+     * Dzień bez żadnej zmierzonej wartości jest brakujący, chyba że archiwum zwróciło go pusty
+     * w ciągu ostatnich emptyRecheckSeconds.
+     */
+    List<LocalDate[]> missingDays(double latitude, double longitude, WeatherVariable variable,
+                                  LocalDate start, LocalDate end) throws IOException {
+        Location location = location(latitude, longitude);
+        Column column;
+        Set<Long> checkedEmpty = new HashSet<>();
+        long recheckAfter = Instant.now().getEpochSecond() - emptyRecheckSeconds;
+        location.lock.readLock().lock();
+        try {
+            column = readColumn(location.series.get(variable.ordinal()),
+                    start.atStartOfDay().toEpochSecond(ZoneOffset.UTC),
+                    end.atTime(23, 0).toEpochSecond(ZoneOffset.UTC));
+            for (Map.Entry<Long, Long> empty : location.emptyDays.get(variable.ordinal()).entrySet()) {
+                if (empty.getValue() > recheckAfter) {
+                    checkedEmpty.add(empty.getKey());
+                }
+            }
+        } finally {
+            location.lock.readLock().unlock();
+        }
+
+        List<LocalDate[]> gaps = new ArrayList<>();
+        LocalDate gapStart = null;
+        int index = 0;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            long dayStart = day.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long lastHour = dayStart + 23 * HOUR;
+            boolean complete = index < column.times.length && column.times[index] == dayStart;
+            boolean measured = false;
+            long last = Long.MIN_VALUE;
+            while (index < column.times.length && column.times[index] <= lastHour) {
+                measured |= !Double.isNaN(column.values[index]);
+                last = column.times[index++];
+            }
+            boolean present = complete && measured && last == lastHour
+                    || !measured && checkedEmpty.contains(day.toEpochDay());
+            if (!present && gapStart == null) {
+                gapStart = day;
+            } else if (present && gapStart != null) {
+                gaps.add(new LocalDate[]{gapStart, day.minusDays(1)});
+                gapStart = null;
+            }
+        }
+        if (gapStart != null) {
+            gaps.add(new LocalDate[]{gapStart, end});
+        }
+        return gaps;
+    }
+
+    /**
+     * Dopisuje pełne dni z data jako nowe segmenty każdej zmiennej z variables. Brakujące wartości
+     * są zapisywane jako NaN, a dni, w których zmienna nie ma żadnej wartości, są zapamiętywane
+     * jako sprawdzone i puste.
+     */
+    void append(double latitude, double longitude, WeatherData data, Set<WeatherVariable> variables)
+            throws IOException {
+        long[] times = data.getTimeEpochs();
+        if (times.length == 0) {
+            return;
+        }
+        Location location = location(latitude, longitude);
+        Map<WeatherVariable, List<Segment>> written = new EnumMap<>(WeatherVariable.class);
+        Map<WeatherVariable, List<Long>> empty = new EnumMap<>(WeatherVariable.class);
+        for (WeatherVariable variable : variables) {
+            double[] values = data.getValues(variable);
+            if (values.length < times.length) {
+                // Hours past the end of a short (or absent) column have no value
+                int present = values.length;
+                values = Arrays.copyOf(values, times.length);
+                Arrays.fill(values, present, times.length, Double.NaN);
+            }
+            written.put(variable, writeMeasuredDays(seriesDirectory(location, variable), times, values,
+                    0, times.length));
+            empty.put(variable, emptyDays(times, values));
+        }
+
+        long checkedAt = Instant.now().getEpochSecond();
+        location.lock.writeLock().lock();
+        try {
+            for (Map.Entry<WeatherVariable, List<Segment>> entry : written.entrySet()) {
+                location.series.get(entry.getKey().ordinal()).addAll(entry.getValue());
+            }
+            for (Map.Entry<WeatherVariable, List<Long>> entry : empty.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeEmptyDays(seriesDirectory(location, entry.getKey()), entry.getValue(), checkedAt);
+                    for (long day : entry.getValue()) {
+                        location.emptyDays.get(entry.getKey().ordinal()).put(day, checkedAt);
+                    }
+                }
+            }
+            scheduleCompactionIfNeeded(location);
+        } finally {
+            location.lock.writeLock().unlock();
+        }
+        HOURS_WRITTEN.add(times.length);
+    }
+
+    /**
+     * Odczytuje zmienne variables od początku start do końca end. Godziny zapisane tylko dla części
+     * zmiennych (np. gdy inna zmienna nie miała danych w danym dniu) mają w pozostałych wartość null.
+     */
+    WeatherData read(double latitude, double longitude, LocalDate start, LocalDate end,
+                     Set<WeatherVariable> variables) throws IOException {
+        long began = System.nanoTime();
+        long from = start.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        long to = end.atTime(23, 0).toEpochSecond(ZoneOffset.UTC);
+        Location location = location(latitude, longitude);
+        Map<WeatherVariable, Column> columns = new EnumMap<>(WeatherVariable.class);
+
+        location.lock.readLock().lock();
+        try {
+            for (WeatherVariable variable : variables) {
+                columns.put(variable, readColumn(location.series.get(variable.ordinal()), from, to));
+            }
+        } finally {
+            location.lock.readLock().unlock();
+        }
+
+        long[] times = new long[0];
+        for (Column column : columns.values()) {
+            if (times.length == 0) {
+                times = column.times;
+            } else if (!Arrays.equals(times, column.times)) {
+                times = LongStream.concat(Arrays.stream(times), Arrays.stream(column.times))
+                        .sorted().distinct().toArray();
+            }
+        }
+        WeatherData result = new WeatherData();
+        for (Map.Entry<WeatherVariable, Column> entry : columns.entrySet()) {
+            Column column = entry.getValue();
+            List<Double> values = new ArrayList<>(times.length);
+            int index = 0;
+            for (long time : times) {
+                if (index < column.times.length && column.times[index] == time) {
+                    double value = column.values[index++];
+                    values.add(Double.isNaN(value) ? null : value);
+                } else {
+                    values.add(null);
+                }
+            }
+            entry.getKey().setValues(result, values);
+        }
+
+        List<String> timeStrings = new ArrayList<>(times.length);
+        for (long time : times) {
+            timeStrings.add(LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC).toString());
+        }
+        result.setTimes(timeStrings);
+        HOURS_READ.add(times.length);
+        READ_TIME.recordSince(began);
+        return result;
+    }
+
+    void close() {
+        compactor.shutdownNow();
+    }
+
+    private Location location(double latitude, double longitude) {
+        String key = String.format(Locale.US, "%.4f_%.4f", latitude, longitude);
+        return locations.computeIfAbsent(key, k -> load(root.resolve(k)));
+    }
+
+    private Location load(Path directory) {
+        Location location = new Location(directory);
+        for (WeatherVariable variable : WeatherVariable.values()) {
+            Path seriesDirectory = directory.resolve(variable.getApiName());
+            if (!Files.isDirectory(seriesDirectory)) {
+                continue;
+            }
+            try {
+                // Compacted away before the last shutdown; retried here, skipped if still undeletable
+                Set<String> obsolete = deleteObsolete(seriesDirectory);
+                loadSegments(location.series.get(variable.ordinal()), seriesDirectory, obsolete);
+                readEmptyDays(location.emptyDays.get(variable.ordinal()), seriesDirectory);
+            } catch (IOException e) {
+                LOG.warn("Nie można wczytać segmentów {}: {}", seriesDirectory, e.getMessage());
+            }
+        }
+        scheduleCompactionIfNeeded(location);
+        return location;
+    }
+
+    private static void loadSegments(NavigableSet<Segment> segments, Path seriesDirectory, Set<String> obsolete)
+            throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(seriesDirectory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left over from an interrupted write
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".seg") && !obsolete.contains(name)) {
+                    Segment segment = readHeader(file);
+                    if (segment != null) {
+                        segments.add(segment);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Segment readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                LOG.warn("Pomijam uszkodzony segment {}", file);
+                return null;
+            }
+            int count = header.getInt();
+            return new Segment(file, header.getLong(), header.getLong(), count);
+        }
+    }
+
+    private Path seriesDirectory(Location location, WeatherVariable variable) throws IOException {
+        return Files.createDirectories(location.directory.resolve(variable.getApiName()));
+    }
+
+    private record Column(long[] times, double[] values) {
+    }
+
+    // Decodes the segments overlapping [from, to] in time order
+    private static Column readColumn(NavigableSet<Segment> segments, long from, long to) throws IOException {
+        long[] times = new long[64];
+        double[] values = new double[64];
+        int size = 0;
+        boolean ordered = true;
+        for (Segment segment : segments) {
+            if (segment.first > to) {
+                break;
+            }
+            if (segment.last < from) {
+                continue;
+            }
+            SegmentReader reader = new SegmentReader(map(segment.path), segment.count);
+            while (reader.next()) {
+                long time = reader.time;
+                if (time > to) {
+                    break;
+                }
+                if (time < from) {
+                    continue;
+                }
+                ordered &= size == 0 || time > times[size - 1];
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                times[size] = time;
+                values[size++] = reader.value;
+            }
+        }
+        return ordered ? new Column(Arrays.copyOf(times, size), Arrays.copyOf(values, size))
+                : mergeOverlaps(times, values, size);
+    }
+
+    /**
+     * Porządkuje punkty nachodzących na siebie segmentów (równoległe dopisania, dzień pobrany ponownie):
+     * każda godzina raz, z zapisaną wartością zamiast NaN, jeśli któryś segment ją ma.
+     */
+    private static Column mergeOverlaps(long[] times, double[] values, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Stable, so equal hours keep the segment order
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+        long[] mergedTimes = new long[size];
+        double[] mergedValues = new double[size];
+        int merged = 0;
+        for (int i : order) {
+            if (merged > 0 && times[i] == mergedTimes[merged - 1]) {
+                if (Double.isNaN(mergedValues[merged - 1])) {
+                    mergedValues[merged - 1] = values[i];
+                }
+                continue;
+            }
+            mergedTimes[merged] = times[i];
+            mergedValues[merged++] = values[i];
+        }
+        return new Column(Arrays.copyOf(mergedTimes, merged), Arrays.copyOf(mergedValues, merged));
+    }
+
+    /**
+     * Zapisuje [from, to) jako segmenty z kolejnych dni, które mają choć jedną wartość; dni z samymi
+     * NaN są pomijane (append() zapamiętuje je w empty.txt).
+     */
+    private List<Segment> writeMeasuredDays(Path directory, long[] times, double[] values, int from, int to)
+            throws IOException {
+        List<Segment> written = new ArrayList<>();
+        int runStart = -1;
+        int dayStart = from;
+        while (dayStart < to) {
+            long day = Math.floorDiv(times[dayStart], DAY);
+            int dayEnd = dayStart;
+            boolean measured = false;
+            while (dayEnd < to && Math.floorDiv(times[dayEnd], DAY) == day) {
+                measured |= !Double.isNaN(values[dayEnd]);
+                dayEnd++;
+            }
+            if (measured && runStart < 0) {
+                runStart = dayStart;
+            } else if (!measured && runStart >= 0) {
+                written.add(writeSegment(directory, times, values, runStart, dayStart));
+                runStart = -1;
+            }
+            dayStart = dayEnd;
+        }
+        if (runStart >= 0) {
+            written.add(writeSegment(directory, times, values, runStart, to));
+        }
+        return written;
+    }
+
+    // Epoch days in times whose values are all NaN
+    private static List<Long> emptyDays(long[] times, double[] values) {
+        List<Long> empty = new ArrayList<>();
+        int dayStart = 0;
+        while (dayStart < times.length) {
+            long day = Math.floorDiv(times[dayStart], DAY);
+            int dayEnd = dayStart;
+            boolean measured = false;
+            while (dayEnd < times.length && Math.floorDiv(times[dayEnd], DAY) == day) {
+                measured |= !Double.isNaN(values[dayEnd]);
+                dayEnd++;
+            }
+            if (!measured) {
+                empty.add(day);
+            }
+            dayStart = dayEnd;
+        }
+        return empty;
+    }
+
+    private static void writeEmptyDays(Path directory, List<Long> days, long checkedAt) throws IOException {
+        StringBuilder lines = new StringBuilder(days.size() * 18);
+        for (long day : days) {
+            lines.append(day).append(' ').append(checkedAt).append('\n');
+        }
+        Files.writeString(directory.resolve(EMPTY_DAYS), lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // Later lines are newer checks of the same day
+    private static void readEmptyDays(Map<Long, Long> emptyDays, Path directory) throws IOException {
+        Path list = directory.resolve(EMPTY_DAYS);
+        if (!Files.exists(list)) {
+            return;
+        }
+        for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length == 2) {
+                try {
+                    emptyDays.put(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+                } catch (NumberFormatException e) {
+                    // a torn last line after a crash
+                }
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private Segment writeSegment(Path directory, long[] times, double[] values, int from, int to)
+            throws IOException {
+        ByteBuffer[] segment = encode(times, values, from, to);
+        String name = times[from] / HOUR + "-" + generation.incrementAndGet();
+        Path temporary = directory.resolve(name + ".tmp");
+        Path target = directory.resolve(name + ".seg");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(segment);
+        }
+        // Readers only ever see complete segments
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(target, times[from], times[to - 1], to - from);
+    }
+
+    /**
+     * Koduje punkty [from, to) jako segment: nagłówek i strumień bitów, czytany przez SegmentReader.
+     */
+    static ByteBuffer[] encode(long[] times, double[] values, int from, int to) {
+        BitWriter bits = new BitWriter((to - from) * 2 + 16);
+        long previousTime = times[from];
+        long previousDelta = 0;
+        long previousValue = Double.doubleToLongBits(values[from]);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        bits.write(previousValue, 64);
+        for (int i = from + 1; i < to; i++) {
+            long delta = times[i] - previousTime;
+            if (i == from + 1) {
+                bits.write(fitsInt(delta), 32);
+            } else {
+                long deltaOfDelta = delta - previousDelta;
+                if (deltaOfDelta == 0) {
+                    bits.write(0, 1);
+                } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                    bits.write(0b10, 2);
+                    bits.write(deltaOfDelta, 7);
+                } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                    bits.write(0b110, 3);
+                    bits.write(deltaOfDelta, 9);
+                } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                    bits.write(0b1110, 4);
+                    bits.write(deltaOfDelta, 12);
+                } else {
+                    bits.write(0b1111, 4);
+                    bits.write(fitsInt(deltaOfDelta), 32);
+                }
+            }
+            previousDelta = delta;
+            previousTime = times[i];
+
+            long value = Double.doubleToLongBits(values[i]);
+            long xor = value ^ previousValue;
+            previousValue = value;
+            if (xor == 0) {
+                bits.write(0, 1);
+                continue;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // Meaningful bits fit in the previous window
+                bits.write(0b10, 2);
+                bits.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                bits.write(0b11, 2);
+                bits.write(leading, 5);
+                bits.write(significant - 1, 6);
+                bits.write(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(to - from).putLong(times[from]).putLong(times[to - 1]).flip();
+        return new ByteBuffer[]{header, bits.toBuffer()};
+    }
+
+    // Steps are stored in 32 bits; a longer one would decode as a different time
+    private static long fitsInt(long step) {
+        if (step != (int) step) {
+            throw new IllegalArgumentException("Krok czasu poza zakresem segmentu: " + step + " s");
+        }
+        return step;
+    }
+
+    private void scheduleCompactionIfNeeded(Location location) {
+        if (location.compactionQueued) {
+            return;
+        }
+        for (NavigableSet<Segment> segments : location.series) {
+            Set<Integer> years = new HashSet<>();
+            for (Segment segment : segments) {
+                years.add(LocalDateTime.ofEpochSecond(segment.first, 0, ZoneOffset.UTC).getYear());
+                years.add(LocalDateTime.ofEpochSecond(segment.last, 0, ZoneOffset.UTC).getYear());
+            }
+            if (segments.size() > years.size() + COMPACTION_SLACK) {
+                location.compactionQueued = true;
+                compactor.execute(() -> compact(location));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Przepisuje segmenty lat, które mają więcej niż jeden segment, na jeden segment na rok kalendarzowy
+     * (i osobny po każdej dziurze w danych). Nowe segmenty są zapisywane najpierw, zamianę zatwierdza
+     * zapis listy zastąpionych plików (OBSOLETE_SEGMENTS), dopiero potem są one usuwane.
+     * Blokada zapisu wstrzymuje odczyty tylko tej lokalizacji.
+     */
+    private void compact(Location location) {
+        location.lock.writeLock().lock();
+        try {
+            location.compactionQueued = false;
+            WeatherVariable[] variables = WeatherVariable.values();
+            for (WeatherVariable variable : variables) {
+                NavigableSet<Segment> segments = location.series.get(variable.ordinal());
+                NavigableSet<Segment> replaced = segmentsOfCrowdedYears(segments);
+                if (replaced.isEmpty()) {
+                    continue;
+                }
+                Column column = readColumn(replaced, Long.MIN_VALUE, Long.MAX_VALUE);
+                Path directory = seriesDirectory(location, variable);
+                List<Segment> compacted = new ArrayList<>();
+                int runStart = 0;
+                for (int i = 1; i <= column.times.length; i++) {
+                    if (i == column.times.length
+                            || column.times[i] - column.times[i - 1] > MAX_STEP_SECONDS
+                            || year(column.times[i]) != year(column.times[runStart])) {
+                        compacted.addAll(writeMeasuredDays(directory, column.times, column.values, runStart, i));
+                        runStart = i;
+                    }
+                }
+
+                // Commit point: from here on the old segments are never loaded again
+                Set<String> obsolete = new TreeSet<>(readObsolete(directory));
+                for (Segment segment : replaced) {
+                    obsolete.add(segment.path.getFileName().toString());
+                }
+                writeObsolete(directory, obsolete);
+                segments.removeAll(replaced);
+                segments.addAll(compacted);
+                deleteObsolete(directory);
+            }
+            COMPACTIONS.increment();
+            LOG.debug("Skompaktowano segmenty {}", location.directory);
+        } catch (IOException e) {
+            LOG.warn("Kompaktowanie {} nie powiodło się: {}", location.directory, e.getMessage());
+        } finally {
+            location.lock.writeLock().unlock();
+        }
+    }
+
+    // Segments touching a year that has more than one segment; years already compacted are left alone
+    private static NavigableSet<Segment> segmentsOfCrowdedYears(NavigableSet<Segment> segments) {
+        Map<Integer, Integer> perYear = new HashMap<>();
+        for (Segment segment : segments) {
+            for (int year = year(segment.first); year <= year(segment.last); year++) {
+                perYear.merge(year, 1, Integer::sum);
+            }
+        }
+        NavigableSet<Segment> crowded = new TreeSet<>(SEGMENT_ORDER);
+        for (Segment segment : segments) {
+            for (int year = year(segment.first); year <= year(segment.last); year++) {
+                if (perYear.get(year) > 1) {
+                    crowded.add(segment);
+                    break;
+                }
+            }
+        }
+        return crowded;
+    }
+
+    private static Set<String> readObsolete(Path directory) throws IOException {
+        Path list = directory.resolve(OBSOLETE_SEGMENTS);
+        if (!Files.exists(list)) {
+            return Set.of();
+        }
+        Set<String> names = new HashSet<>();
+        for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                names.add(line.trim());
+            }
+        }
+        return names;
+    }
+
+    private static void writeObsolete(Path directory, Set<String> names) throws IOException {
+        Path list = directory.resolve(OBSOLETE_SEGMENTS);
+        if (names.isEmpty()) {
+            Files.deleteIfExists(list);
+            return;
+        }
+        Path temporary = directory.resolve(OBSOLETE_SEGMENTS + ".tmp");
+        Files.write(temporary, names, StandardCharsets.UTF_8);
+        Files.move(temporary, list, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Usuwa segmenty z listy zastąpionych; zwraca nazwy tych, których nie udało się usunąć
+     * (zostają na liście do następnej próby).
+     */
+    private static Set<String> deleteObsolete(Path directory) throws IOException {
+        Set<String> remaining = new TreeSet<>();
+        Set<String> obsolete = readObsolete(directory);
+        for (String name : obsolete) {
+            try {
+                Files.deleteIfExists(directory.resolve(name));
+            } catch (IOException e) {
+                // Typically still memory-mapped by a reader on Windows
+                LOG.debug("Segment {} jeszcze nie usunięty: {}", name, e.getMessage());
+                remaining.add(name);
+            }
+        }
+        if (remaining.size() != obsolete.size()) {
+            writeObsolete(directory, remaining);
+        }
+        return remaining;
+    }
+
+    private static int year(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC).getYear();
+    }
+
+    private static final class BitWriter {
+        private byte[] bytes;
+        private int length;
+        private int used; // bits taken in bytes[length]
+
+        BitWriter(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        // Writes the lowest bits of value, most significant first
+        void write(long value, int bits) {
+            while (bits > 0) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                int free = 8 - used;
+                int take = Math.min(free, bits);
+                int chunk = (int) ((value >>> (bits - take)) & ((1 << take) - 1));
+                bytes[length] |= (byte) (chunk << (free - take));
+                used += take;
+                bits -= take;
+                if (used == 8) {
+                    length++;
+                    used = 0;
+                }
+            }
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, used > 0 ? length + 1 : length);
+        }
+    }
+
+    /**
+     * Dekoduje kolejne punkty segmentu bezpośrednio z mapowanego pliku.
+     */
+    static final class SegmentReader {
+        private final ByteBuffer buffer;
+        private final int count;
+        private long position = HEADER_BYTES * 8L;
+        private int index;
+        private long delta;
+        private long valueBits;
+        private int leading;
+        private int trailing;
+        long time;
+        double value;
+
+        SegmentReader(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+            this.time = buffer.getLong(8);
+        }
+
+        boolean next() {
+            if (index >= count) {
+                return false;
+            }
+            if (index == 0) {
+                valueBits = read(64);
+            } else {
+                if (index == 1) {
+                    delta = signed(read(32), 32);
+                } else if (read(1) != 0) {
+                    if (read(1) == 0) {
+                        delta += signed(read(7), 7);
+                    } else if (read(1) == 0) {
+                        delta += signed(read(9), 9);
+                    } else if (read(1) == 0) {
+                        delta += signed(read(12), 12);
+                    } else {
+                        delta += signed(read(32), 32);
+                    }
+                }
+                time += delta;
+
+                if (read(1) != 0) {
+                    if (read(1) != 0) {
+                        leading = (int) read(5);
+                        int significant = (int) read(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    valueBits ^= read(64 - leading - trailing) << trailing;
+                }
+            }
+            value = Double.longBitsToDouble(valueBits);
+            index++;
+            return true;
+        }
+
+        private long read(int bits) {
+            long result = 0;
+            while (bits > 0) {
+                int current = buffer.get((int) (position >>> 3)) & 0xFF;
+                int offset = (int) (position & 7);
+                int take = Math.min(8 - offset, bits);
+                result = (result << take) | ((current >>> (8 - offset - take)) & ((1 << take) - 1));
+                position += take;
+                bits -= take;
+            }
+            return result;
+        }
+
+        private static long signed(long value, int bits) {
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+    }
+}
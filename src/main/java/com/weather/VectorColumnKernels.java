@@ -0,0 +1,52 @@
+package com.weather;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Wersja ColumnKernels na Vector API. Ładowana tylko przez ColumnKernels.best(),
+ * gdy JVM uruchomiono z --add-modules jdk.incubator.vector.
+ */
+final class VectorColumnKernels implements ColumnKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void reduce(double[] values, int from, int to, double[] out) {
+        DoubleVector minVector = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector maxVector = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector sumVector = DoubleVector.zero(SPECIES);
+        long count = 0;
+
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            // Lanes holding NaN keep the previous accumulator value
+            VectorMask<Double> valid = v.test(VectorOperators.IS_NAN).not();
+            minVector = minVector.lanewise(VectorOperators.MIN, v, valid);
+            maxVector = maxVector.lanewise(VectorOperators.MAX, v, valid);
+            sumVector = sumVector.lanewise(VectorOperators.ADD, v, valid);
+            count += valid.trueCount();
+        }
+
+        double min = minVector.reduceLanes(VectorOperators.MIN);
+        double max = maxVector.reduceLanes(VectorOperators.MAX);
+        double sum = sumVector.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            double v = values[i];
+            if (v == v) {
+                if (v < min) min = v;
+                if (v > max) max = v;
+                sum += v;
+                count++;
+            }
+        }
+        out[MIN] = min;
+        out[MAX] = max;
+        out[SUM] = sum;
+        out[COUNT] = count;
+    }
+}
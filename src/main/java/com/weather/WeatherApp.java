@@ -1,16 +1,15 @@
 package com.weather;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.CategoryAxis;
-import javafx.scene.chart.XYChart;
+import javafx.util.Duration;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.geometry.Side;
@@ -20,23 +19,49 @@ import javafx.scene.control.ListView;
 import java.util.List;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 
 public class WeatherApp extends Application {
 
+    private static final Log LOG = Log.get(WeatherApp.class);
+    // How often open forecast charts are refreshed
+    private static final long FORECAST_REFRESH_MINUTES = Long.getLong("weather.forecast.refreshMinutes", 10);
+
+    private final ScheduledExecutorService forecastRefresher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "forecast-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // City search runs off the FX thread; results older than the text in cityField are dropped
+    private static final long AUTOCOMPLETE_DELAY_MS = 200;
+    private final ExecutorService citySearch = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "city-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long citySearchGeneration;
+    // The chart request in flight; starting another one cancels it (HTTP calls, parsing, queued slices)
+    private RequestContext.Cancellation chartRequest;
+
+    // Created in the background by AppServices; each field is set on the FX thread once ready
+    private AppServices services;
     private WeatherService weatherService;
-    private CacheService cacheService;
     private CityService cityService;
+    private ClimatologyService climatologyService;
 
     // UI Components
     private RadioButton cityRadio, coordinatesRadio;
@@ -45,16 +70,19 @@ public class WeatherApp extends Application {
     private RadioButton historicalRadio, forecastRadio;
     private DatePicker startDatePicker, endDatePicker;
     private Spinner<Integer> forecastDaysSpinner;
+    private CheckBox climatologyCheck;
+    private Spinner<Integer> climatologyYearsSpinner;
     private CheckBox windSpeedCheck, soilTempCheck, airTempCheck, rainCheck, pressureCheck;
+    private CheckBox rainSum24hCheck, tempMean24hCheck, pressureTendencyCheck;
     private Button generateChartButton;
+    private Button cityManagementButton;
     private ProgressIndicator loadingIndicator;
     private Label statusLabel;
 
     @Override
     public void start(Stage primaryStage) {
-        weatherService = new WeatherService();
-        cacheService = new CacheService();
-        cityService = new CityService(); // Add this line
+        Metrics.startExporters();
+        services = AppServices.start();
 
         primaryStage.setTitle("Aplikacja Pogodowa - Open-Meteo API");
 
@@ -64,6 +92,71 @@ public class WeatherApp extends Application {
 
         primaryStage.setScene(scene);
         primaryStage.show();
+        logFirstFrame();
+        enableWhenReady();
+    }
+
+    @Override
+    public void stop() {
+        if (chartRequest != null) {
+            chartRequest.cancel();
+        }
+        forecastRefresher.shutdownNow();
+        citySearch.shutdownNow();
+        if (services != null) {
+            services.close();
+        }
+        Log.flush();
+    }
+
+    /**
+     * Loguje czas od startu JVM do pierwszej narysowanej klatki okna głównego.
+     */
+    private static void logFirstFrame() {
+        long jvmStart = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+        new javafx.animation.AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                LOG.info("Pierwsza klatka po {} ms od startu JVM", System.currentTimeMillis() - jvmStart);
+            }
+        }.start();
+    }
+
+    /**
+     * Włącza kontrolki, gdy gotowe są usługi, których potrzebują: wykresy po WeatherService
+     * (nazwy miast bez listy rozwiązuje wbudowana lista miast polskich), podpowiedzi i zarządzanie
+     * miastami po CityService, normę klimatyczną po ClimatologyService.
+     */
+    private void enableWhenReady() {
+        statusLabel.setText("Uruchamianie usług...");
+        services.weather().whenComplete((service, error) -> javafx.application.Platform.runLater(() -> {
+            if (error != null) {
+                showError("Nie udało się uruchomić usługi pogodowej: " + error.getMessage());
+                statusLabel.setText("Błąd");
+                return;
+            }
+            weatherService = service;
+            generateChartButton.setDisable(false);
+            statusLabel.setText("Gotowy");
+        }));
+        services.cities().whenComplete((service, error) -> javafx.application.Platform.runLater(() -> {
+            if (error != null) {
+                LOG.warn("Lista miast niedostępna: {}", error.getMessage());
+                return;
+            }
+            cityService = service;
+            for (City city : service.getPopularCities(10)) {
+                cityComboBox.getItems().add(city.toString());
+            }
+            cityField.setDisable(false);
+            cityComboBox.setDisable(false);
+            cityManagementButton.setDisable(false);
+        }));
+        services.climatology().thenAccept(service -> javafx.application.Platform.runLater(() -> {
+            climatologyService = service;
+            climatologyCheck.setDisable(false);
+        }));
     }
 
     private VBox createMainLayout() {
@@ -115,16 +208,14 @@ public class WeatherApp extends Application {
         cityField = new TextField();
         cityField.setPromptText("Wprowadź nazwę miasta (min. 2 znaki)");
         cityField.setPrefWidth(200);
+        cityField.setDisable(true);
 
         // Setup autocomplete functionality
         setupCityAutocomplete();
 
+        // Popular cities are filled in by enableWhenReady once the city database is loaded
         cityComboBox = new ComboBox<>();
-        // Load popular cities from database instead of hardcoded list
-        List<City> popularCities = cityService.getPopularCities(10);
-        for (City city : popularCities) {
-            cityComboBox.getItems().add(city.toString());
-        }
+        cityComboBox.setDisable(true);
         cityComboBox.setPromptText("Lub wybierz z listy");
         cityComboBox.setPrefWidth(200);
 
@@ -158,32 +249,55 @@ public class WeatherApp extends Application {
         return locationBox;
     }
 
+    /**
+     * Podpowiedzi miast: wyszukiwanie startuje AUTOCOMPLETE_DELAY_MS po ostatnim naciśnięciu klawisza,
+     * na wątku city-search, a wynik jest pokazywany tylko wtedy, gdy tekst od tego czasu się nie zmienił.
+     */
     private void setupCityAutocomplete() {
         // Create context menu for autocomplete suggestions
         ContextMenu contextMenu = new ContextMenu();
+        PauseTransition debounce = new PauseTransition(Duration.millis(AUTOCOMPLETE_DELAY_MS));
+
+        debounce.setOnFinished(event -> {
+            String query = cityField.getText();
+            long generation = citySearchGeneration;
+            CityService service = cityService;
+            CompletableFuture.supplyAsync(() -> service.searchCities(query, 8), citySearch)
+                    .thenAccept(suggestions -> javafx.application.Platform.runLater(() -> {
+                        // Superseded by a newer keystroke while searching
+                        if (generation != citySearchGeneration || suggestions.isEmpty()) {
+                            return;
+                        }
+                        contextMenu.getItems().clear();
+
+                        for (City city : suggestions) {
+                            MenuItem item = new MenuItem(city.toString());
+                            item.setOnAction(e -> {
+                                cityField.setText(city.getName());
+                                contextMenu.hide();
+                            });
+                            contextMenu.getItems().add(item);
+                        }
+
+                        if (!contextMenu.isShowing()) {
+                            contextMenu.show(cityField, Side.BOTTOM, 0, 0);
+                        }
+                    }))
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            LOG.warn("Wyszukiwanie miast nie powiodło się dla \"{}\": {}", query, cause.toString());
+                        }
+                    });
+        });
 
         cityField.textProperty().addListener((observable, oldValue, newValue) -> {
             contextMenu.hide();
+            citySearchGeneration++;
+            debounce.stop();
 
-            if (newValue != null && newValue.length() >= 2) {
-                List<City> suggestions = cityService.searchCities(newValue, 8);
-
-                if (!suggestions.isEmpty()) {
-                    contextMenu.getItems().clear();
-
-                    for (City city : suggestions) {
-                        MenuItem item = new MenuItem(city.toString());
-                        item.setOnAction(e -> {
-                            cityField.setText(city.getName());
-                            contextMenu.hide();
-                        });
-                        contextMenu.getItems().add(item);
-                    }
-
-                    if (!contextMenu.isShowing()) {
-                        contextMenu.show(cityField, Side.BOTTOM, 0, 0);
-                    }
-                }
+            if (newValue != null && newValue.length() >= 2 && cityService != null) {
+                debounce.playFromStart();
             }
         });
 
@@ -218,7 +332,12 @@ public class WeatherApp extends Application {
         // Forecast controls
         HBox forecastBox = new HBox(10);
         forecastDaysSpinner = new Spinner<>(1, 16, 7);
-        forecastBox.getChildren().addAll(new Label("Dni prognozy:"), forecastDaysSpinner);
+        climatologyCheck = new CheckBox("Porównaj z normą z lat:");
+        climatologyCheck.setDisable(true);
+        climatologyYearsSpinner = new Spinner<>(5, 30, ClimatologyService.DEFAULT_YEARS);
+        climatologyYearsSpinner.setPrefWidth(70);
+        forecastBox.getChildren().addAll(new Label("Dni prognozy:"), forecastDaysSpinner,
+                climatologyCheck, climatologyYearsSpinner);
         forecastBox.setVisible(false);
 
         // Event handlers
@@ -250,11 +369,17 @@ public class WeatherApp extends Application {
         rainCheck = new CheckBox("Opady (mm)");
         pressureCheck = new CheckBox("Ciśnienie powierzchniowe (hPa)");
 
+        // Derived series computed with sliding-window operators
+        rainSum24hCheck = new CheckBox(DerivedSeries.RAIN_SUM_24H.getLabel());
+        tempMean24hCheck = new CheckBox(DerivedSeries.TEMPERATURE_MEAN_24H.getLabel());
+        pressureTendencyCheck = new CheckBox(DerivedSeries.PRESSURE_TENDENCY_3H.getLabel());
+
         // Select air temperature by default
         airTempCheck.setSelected(true);
 
         dataTypeBox.getChildren().addAll(dataLabel, windSpeedCheck, soilTempCheck,
-                airTempCheck, rainCheck, pressureCheck);
+                airTempCheck, rainCheck, pressureCheck,
+                new Label("Serie pochodne:"), rainSum24hCheck, tempMean24hCheck, pressureTendencyCheck);
 
         return dataTypeBox;
     }
@@ -267,11 +392,13 @@ public class WeatherApp extends Application {
         generateChartButton.setStyle("-fx-background-color: #3498DB; -fx-text-fill: white; " +
                 "-fx-font-size: 14px; -fx-padding: 10 20;");
         generateChartButton.setOnAction(e -> generateChart());
+        generateChartButton.setDisable(true);
 
-        Button cityManagementButton = new Button("Zarządzanie miastami");
+        cityManagementButton = new Button("Zarządzanie miastami");
         cityManagementButton.setStyle("-fx-background-color: #9B59B6; -fx-text-fill: white; " +
                 "-fx-font-size: 14px; -fx-padding: 10 20;");
         cityManagementButton.setOnAction(e -> showCityManagementDialog());
+        cityManagementButton.setDisable(true);
 
         buttonBox.getChildren().addAll(generateChartButton, cityManagementButton);
 
@@ -294,35 +421,182 @@ public class WeatherApp extends Application {
         return statusBox;
     }
 
+    /**
+     * Pobiera dane i otwiera okna wykresów. Przycisk pozostaje aktywny: nowe żądanie anuluje
+     * poprzednie, które przerywa zapytania HTTP i parsowanie, a jego wynik nie jest już pokazywany.
+     */
     private void generateChart() {
         if (!validateInput()) {
             return;
         }
 
+        if (chartRequest != null) {
+            chartRequest.cancel();
+        }
+        RequestContext.Cancellation cancellation = new RequestContext.Cancellation();
+        chartRequest = cancellation;
         loadingIndicator.setVisible(true);
         statusLabel.setText("Pobieranie danych...");
-        generateChartButton.setDisable(true);
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                WeatherData weatherData = fetchWeatherData();
+        // Every phase of this chart (cache, HTTP, parsing, chart build) is tagged with one request id
+        try (RequestContext.Scope scope = RequestContext.begin(RequestContext.Priority.INTERACTIVE, cancellation)) {
+            WeatherEvents.Request request = new WeatherEvents.Request();
+            request.begin();
+            request.requestId = RequestContext.current();
+
+            Set<WeatherVariable> variables = selectedVariables();
+            if (historicalRadio.isSelected()) {
+                WeatherService.ChunkSize chunkSize = WeatherService.ChunkSize.forRange(
+                        startDatePicker.getValue(), endDatePicker.getValue());
+                if (chunkSize != null) {
+                    generateChartProgressive(chunkSize, variables, request, cancellation);
+                    return;
+                }
+            }
 
-                javafx.application.Platform.runLater(() -> {
-                    createChartWindows(weatherData);
-                    loadingIndicator.setVisible(false);
-                    statusLabel.setText("Wykresy wygenerowane");
-                    generateChartButton.setDisable(false);
-                });
+            String kind = historicalRadio.isSelected() ? "historical" : "forecast";
+            boolean forecast = forecastRadio.isSelected();
+            boolean withClimatology = forecast && climatologyCheck.isSelected();
+            int climatologyYears = climatologyYearsSpinner.getValue();
+            int forecastDays = forecastDaysSpinner.getValue();
+
+            CompletableFuture.runAsync(RequestContext.wrap(() -> {
+                try {
+                    double[] location = resolveLocation();
+                    WeatherData weatherData = fetchWeatherData(location, variables);
+
+                    javafx.application.Platform.runLater(RequestContext.wrap(() -> {
+                        if (cancellation.isCancelled()) {
+                            finishRequest(request, kind, false);
+                            return;
+                        }
+                        List<ChartWindow> windows = createChartWindows(weatherData, weatherData.getTimeEpochs().length);
+                        loadingIndicator.setVisible(false);
+                        statusLabel.setText("Wykresy wygenerowane");
+                        finishRequest(request, kind, true);
+                        if (withClimatology) {
+                            loadClimatology(location, climatologyYears, windows);
+                        }
+                        if (forecast) {
+                            scheduleForecastRefresh(location, forecastDays, variables, weatherData, windows);
+                        }
+                    }));
+
+                } catch (Exception e) {
+                    finishRequest(request, kind, false);
+                    if (cancellation.isCancelled()) {
+                        return;
+                    }
+                    javafx.application.Platform.runLater(() -> {
+                        if (cancellation.isCancelled()) {
+                            return;
+                        }
+                        showError("Błąd podczas pobierania danych: " + e.getMessage());
+                        loadingIndicator.setVisible(false);
+                        statusLabel.setText("Błąd");
+                    });
+                }
+            }));
+        }
+    }
 
+    /**
+     * Co FORECAST_REFRESH_MINUTES odświeża prognozę w tle i przerysowuje w otwartych oknach tylko
+     * zmienione godziny. Kończy się, gdy wszystkie okna tej prognozy zostaną zamknięte.
+     */
+    private void scheduleForecastRefresh(double[] location, int forecastDays, Set<WeatherVariable> variables,
+                                         WeatherData shown, List<ChartWindow> windows) {
+        if (FORECAST_REFRESH_MINUTES <= 0) {
+            return;
+        }
+        forecastRefresher.schedule(() -> {
+            ForecastUpdate update;
+            try (RequestContext.Scope scope = RequestContext.begin(RequestContext.Priority.BACKGROUND)) {
+                update = weatherService.refreshForecast(location[0], location[1], forecastDays, variables, shown);
             } catch (Exception e) {
-                javafx.application.Platform.runLater(() -> {
-                    showError("Błąd podczas pobierania danych: " + e.getMessage());
-                    loadingIndicator.setVisible(false);
-                    statusLabel.setText("Błąd");
-                    generateChartButton.setDisable(false);
-                });
+                LOG.warn("Nie udało się odświeżyć prognozy: {}", e.getMessage());
+                update = null;
             }
+            ForecastUpdate result = update;
+            javafx.application.Platform.runLater(() -> {
+                if (windows.stream().noneMatch(ChartWindow::isShowing)) {
+                    return;
+                }
+                if (result == null) {
+                    scheduleForecastRefresh(location, forecastDays, variables, shown, windows);
+                    return;
+                }
+                windows.forEach(window -> window.refresh(result));
+                LOG.debug("Prognoza odświeżona, zmienione godziny: {}", result.changedHours());
+                scheduleForecastRefresh(location, forecastDays, variables, result.data(), windows);
+            });
+        }, FORECAST_REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private static void finishRequest(WeatherEvents.Request request, String kind, boolean success) {
+        request.kind = kind;
+        request.success = success;
+        request.commit();
+    }
+
+    /**
+     * Otwiera okna wykresów od razu i dopisuje do nich kolejne fragmenty danych historycznych
+     * w miarę ich pobierania (najwyżej jedna aktualizacja na puls JavaFX).
+     */
+    private void generateChartProgressive(WeatherService.ChunkSize chunkSize, Set<WeatherVariable> variables,
+                                          WeatherEvents.Request request,
+                                          RequestContext.Cancellation cancellation) {
+        double[] location;
+        try {
+            location = resolveLocation();
+        } catch (Exception e) {
+            finishRequest(request, "historical", false);
+            showError("Błąd podczas pobierania danych: " + e.getMessage());
+            loadingIndicator.setVisible(false);
+            statusLabel.setText("Błąd");
+            return;
+        }
+
+        LocalDate startDate = startDatePicker.getValue();
+        LocalDate endDate = endDatePicker.getValue();
+        int expectedPoints = (int) (endDate.toEpochDay() - startDate.toEpochDay() + 1) * 24;
+        List<ChartWindow> windows = createChartWindows(new WeatherData(), expectedPoints);
+
+        // Windows append only the new chunks; the whole series is concatenated once, at the end
+        List<WeatherData> received = new ArrayList<>();
+        int[] receivedPoints = {0};
+        PulseBatcher<WeatherData> batcher = new PulseBatcher<>(chunks -> {
+            for (WeatherData chunk : chunks) {
+                received.add(chunk);
+                receivedPoints[0] += chunk.getTimeEpochs().length;
+                windows.forEach(window -> window.append(chunk));
+            }
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            statusLabel.setText("Pobrano " + receivedPoints[0] + " z ok. " + expectedPoints + " pomiarów...");
         });
+
+        weatherService.streamHistoricalData(location[0], location[1], startDate, endDate, chunkSize, variables,
+                        batcher::offer)
+                .whenComplete((weatherData, error) -> javafx.application.Platform.runLater(() -> {
+                    batcher.finish();
+                    WeatherData exported = weatherData != null ? weatherData : WeatherData.concat(received);
+                    windows.forEach(window -> window.complete(exported));
+                    finishRequest(request, "historical", error == null);
+                    // Windows of a superseded request keep the slices they got; status belongs to the new one
+                    if (cancellation.isCancelled()) {
+                        return;
+                    }
+                    loadingIndicator.setVisible(false);
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        showError("Błąd podczas pobierania danych: " + cause.getMessage());
+                        statusLabel.setText("Błąd");
+                    } else {
+                        statusLabel.setText("Wykresy wygenerowane");
+                    }
+                }));
     }
 
     private boolean validateInput() {
@@ -342,7 +616,9 @@ public class WeatherApp extends Application {
         }
 
         if (!windSpeedCheck.isSelected() && !soilTempCheck.isSelected() &&
-                !airTempCheck.isSelected() && !rainCheck.isSelected() && !pressureCheck.isSelected()) {
+                !airTempCheck.isSelected() && !rainCheck.isSelected() && !pressureCheck.isSelected() &&
+                !rainSum24hCheck.isSelected() && !tempMean24hCheck.isSelected() &&
+                !pressureTendencyCheck.isSelected()) {
             showError("Proszę wybrać przynajmniej jeden typ danych do wizualizacji");
             return false;
         }
@@ -350,7 +626,40 @@ public class WeatherApp extends Application {
         return true;
     }
 
-    private WeatherData fetchWeatherData() throws Exception {
+    private WeatherData fetchWeatherData(double[] location, Set<WeatherVariable> variables) throws Exception {
+        double lat = location[0];
+        double lon = location[1];
+
+        // Long historical ranges go through generateChartProgressive instead
+        if (historicalRadio.isSelected()) {
+            return weatherService.getHistoricalData(lat, lon,
+                    startDatePicker.getValue(), endDatePicker.getValue(), variables);
+        } else {
+            return weatherService.getForecastData(lat, lon, forecastDaysSpinner.getValue(), variables);
+        }
+    }
+
+    /**
+     * Zmienne potrzebne do zaznaczonych wykresów (serie pochodne wymagają swojej zmiennej źródłowej);
+     * tylko one są pobierane z Open-Meteo.
+     */
+    private Set<WeatherVariable> selectedVariables() {
+        Set<WeatherVariable> variables = EnumSet.noneOf(WeatherVariable.class);
+        if (airTempCheck.isSelected()) variables.add(WeatherVariable.TEMPERATURE);
+        if (windSpeedCheck.isSelected()) variables.add(WeatherVariable.WIND_SPEED);
+        if (rainCheck.isSelected()) variables.add(WeatherVariable.PRECIPITATION);
+        if (pressureCheck.isSelected()) variables.add(WeatherVariable.PRESSURE);
+        if (soilTempCheck.isSelected()) variables.add(WeatherVariable.SOIL_TEMPERATURE);
+        if (rainSum24hCheck.isSelected()) variables.add(DerivedSeries.RAIN_SUM_24H.getSource());
+        if (tempMean24hCheck.isSelected()) variables.add(DerivedSeries.TEMPERATURE_MEAN_24H.getSource());
+        if (pressureTendencyCheck.isSelected()) variables.add(DerivedSeries.PRESSURE_TENDENCY_3H.getSource());
+        return variables;
+    }
+
+    /**
+     * Zwraca [szerokość, długość] wybranej lokalizacji (miasto lub współrzędne).
+     */
+    private double[] resolveLocation() throws Exception {
         double lat, lon;
 
         if (cityRadio.isSelected()) {
@@ -366,12 +675,11 @@ public class WeatherApp extends Application {
             }
 
             // Use CityService to find coordinates
-            City city = cityService.findCityByName(cityName);
+            City city = cityService != null ? cityService.findCityByName(cityName) : null;
             if (city != null) {
                 lat = city.getLatitude();
                 lon = city.getLongitude();
-                System.out.println("Znaleziono miasto: " + city.toString() +
-                        " na współrzędnych: " + lat + ", " + lon);
+                LOG.debug("Znaleziono miasto: {} na współrzędnych: {}, {}", city, lat, lon);
             } else {
                 // Fallback to hardcoded coordinates for popular Polish cities
                 switch (cityName.toLowerCase()) {
@@ -390,12 +698,7 @@ public class WeatherApp extends Application {
             lon = Double.parseDouble(lonField.getText());
         }
 
-        if (historicalRadio.isSelected()) {
-            return weatherService.getHistoricalData(lat, lon,
-                    startDatePicker.getValue(), endDatePicker.getValue());
-        } else {
-            return weatherService.getForecastData(lat, lon, forecastDaysSpinner.getValue());
-        }
+        return new double[]{lat, lon};
     }
 
     // ADD THIS NEW METHOD FOR CITY MANAGEMENT (after fetchWeatherData):
@@ -452,227 +755,143 @@ public class WeatherApp extends Application {
         dialog.show();
     }
 
-    private void createChartWindows(WeatherData weatherData) {
+    /**
+     * Dociąga normę klimatyczną w tle (pierwszy raz z archiwum, potem z pliku) i nakłada ją na okna.
+     */
+    private void loadClimatology(double[] location, int years, List<ChartWindow> windows) {
+        statusLabel.setText("Wyznaczanie normy klimatycznej...");
+        // Years of archive data for an overlay: queued behind charts the user asks for meanwhile
+        CompletableFuture.supplyAsync(RequestContext.wrap(RequestContext.Priority.BACKGROUND, () -> {
+            try {
+                return climatologyService.getClimatology(location[0], location[1], years);
+            } catch (Exception e) {
+                throw new java.util.concurrent.CompletionException(e);
+            }
+        })).whenComplete((climatology, error) -> javafx.application.Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                statusLabel.setText("Nie udało się wyznaczyć normy: " + cause.getMessage());
+                return;
+            }
+            windows.forEach(window -> window.setClimatology(climatology));
+            statusLabel.setText("Norma klimatyczna " + climatology.getFromYear() + "-" +
+                    climatology.getToYear() + " dodana do wykresów");
+        }));
+    }
+
+    private List<ChartWindow> createChartWindows(WeatherData weatherData, int expectedPoints) {
         // Create separate windows for each selected data type
+        List<ChartWindow> windows = new ArrayList<>();
         if (airTempCheck.isSelected()) {
-            createIndividualChartWindow("Temperatura (°C)",
-                    weatherData.getTemperatures(), weatherData.getTimes(), weatherData);
+            windows.add(showChartWindow(WeatherVariable.TEMPERATURE, weatherData, expectedPoints));
         }
 
         if (windSpeedCheck.isSelected()) {
-            createIndividualChartWindow("Prędkość wiatru (km/h)",
-                    weatherData.getWindSpeeds(), weatherData.getTimes(), weatherData);
+            windows.add(showChartWindow(WeatherVariable.WIND_SPEED, weatherData, expectedPoints));
         }
 
         if (rainCheck.isSelected()) {
-            createIndividualChartWindow("Opady (mm)",
-                    weatherData.getRainfall(), weatherData.getTimes(), weatherData);
+            windows.add(showChartWindow(WeatherVariable.PRECIPITATION, weatherData, expectedPoints));
         }
 
         if (pressureCheck.isSelected()) {
-            createIndividualChartWindow("Ciśnienie (hPa)",
-                    weatherData.getPressure(), weatherData.getTimes(), weatherData);
+            windows.add(showChartWindow(WeatherVariable.PRESSURE, weatherData, expectedPoints));
         }
 
         if (soilTempCheck.isSelected()) {
-            createIndividualChartWindow("Temperatura gleby (°C)",
-                    weatherData.getSoilTemperature(), weatherData.getTimes(), weatherData);
+            windows.add(showChartWindow(WeatherVariable.SOIL_TEMPERATURE, weatherData, expectedPoints));
         }
-    }
-
-    private void createIndividualChartWindow(String title, List<Double> data, List<String> times, WeatherData weatherData) {
-        Stage chartStage = new Stage();
-        chartStage.initModality(Modality.NONE);
-        chartStage.setTitle("Wykres: " + title);
-
-        VBox chartBox = new VBox(10);
-        chartBox.setPadding(new Insets(15));
-
-        LineChart<String, Number> chart = createChart(title, data, times);
-        chartBox.getChildren().add(chart);
-
-        // Export button
-        Button exportButton = new Button("Eksportuj dane");
-        exportButton.setStyle("-fx-background-color: #27AE60; -fx-text-fill: white;");
-        exportButton.setOnAction(e -> exportData(weatherData));
 
-        chartBox.getChildren().add(exportButton);
-
-        ScrollPane scrollPane = new ScrollPane(chartBox);
-        scrollPane.setFitToWidth(true);
-
-        Scene chartScene = new Scene(scrollPane, 900, 500);
-        chartStage.setScene(chartScene);
-        chartStage.show();
-    }
-
-    private LineChart<String, Number> createChart(String title, List<Double> data, List<String> times) {
-        CategoryAxis xAxis = new CategoryAxis();
-        NumberAxis yAxis = new NumberAxis();
-        xAxis.setLabel("Data i godzina");
-        yAxis.setLabel(title);
-
-        // Automatyczne skalowanie osi Y na podstawie danych
-        if (data == null || data.isEmpty()) {
-            System.out.println("No data available for chart: " + title);
-            // Create empty chart with default range
-            yAxis.setAutoRanging(false);
-            yAxis.setLowerBound(0);
-            yAxis.setUpperBound(100);
-        } else {
-            double min = data.stream().filter(d -> d != null).mapToDouble(Double::doubleValue).min().orElse(0);
-            double max = data.stream().filter(d -> d != null).mapToDouble(Double::doubleValue).max().orElse(100);
-
-            // Dodaj margines 10% z każdej strony dla lepszej wizualizacji
-            double margin = (max - min) * 0.1;
-            yAxis.setAutoRanging(false);
-            yAxis.setLowerBound(Math.max(0, min - margin));
-            yAxis.setUpperBound(max + margin);
-
-            // Dla ciśnienia, ustaw jeszcze bardziej precyzyjne granice
-            if (title.contains("Ciśnienie")) {
-                yAxis.setLowerBound(Math.max(900, min - 20));
-                yAxis.setUpperBound(Math.min(1100, max + 20));
-            }
+        if (rainSum24hCheck.isSelected()) {
+            windows.add(showChartWindow(DerivedSeries.RAIN_SUM_24H, weatherData, expectedPoints));
         }
 
-        LineChart<String, Number> chart = new LineChart<>(xAxis, yAxis);
-        chart.setTitle(title);
-        chart.setPrefHeight(400);
-        chart.setCreateSymbols(true); // Pokaż punkty na wykresie
-
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName(title);
-
-        if (times == null || times.isEmpty()) {
-            System.out.println("No time data available for chart: " + title);
-            chart.getData().add(series);
-            return chart;
+        if (tempMean24hCheck.isSelected()) {
+            windows.add(showChartWindow(DerivedSeries.TEMPERATURE_MEAN_24H, weatherData, expectedPoints));
         }
 
-        // Generate 3-hour interval axis labels
-        List<String> axisLabels = generate3HourAxisLabels(times);
-
-        // Add all axis labels first
-        for (String label : axisLabels) {
-            xAxis.getCategories().add(label);
-        }
-
-        // Add data points with proper positioning
-        for (int i = 0; i < data.size() && i < times.size(); i++) {
-            if (data.get(i) != null) {
-                String timeLabel = formatTimeForChart(times.get(i));
-                series.getData().add(new XYChart.Data<>(timeLabel, data.get(i)));
-            }
+        if (pressureTendencyCheck.isSelected()) {
+            windows.add(showChartWindow(DerivedSeries.PRESSURE_TENDENCY_3H, weatherData, expectedPoints));
         }
-
-        chart.getData().add(series);
-
-        // Obróć etykiety dla lepszej czytelności
-        xAxis.setTickLabelRotation(45);
-
-        return chart;
+        return windows;
     }
 
-    private List<String> generate3HourAxisLabels(List<String> times) {
-        List<String> axisLabels = new ArrayList<>();
-
-        if (times.isEmpty()) {
-            return axisLabels;
-        }
-
-        DateTimeFormatter inputFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        DateTimeFormatter outputFormatter = DateTimeFormatter.ofPattern("dd.MM HH:mm");
-
-        try {
-            // Parse first time to get starting point
-            LocalDateTime startTime = LocalDateTime.parse(times.get(0), inputFormatter);
-            LocalDateTime endTime = LocalDateTime.parse(times.get(times.size() - 1), inputFormatter);
-
-            // Find the first 3-hour mark (00:00, 03:00, 06:00, 09:00, 12:00, 15:00, 18:00, 21:00)
-            LocalDateTime current = startTime;
-            int hour = current.getHour();
-            int nextThreeHourMark = ((hour / 3) + 1) * 3;
-            if (nextThreeHourMark >= 24) {
-                current = current.plusDays(1).withHour(0).withMinute(0);
-            } else {
-                current = current.withHour(nextThreeHourMark).withMinute(0);
-            }
-
-            // Generate 3-hour interval labels
-            while (!current.isAfter(endTime)) {
-                axisLabels.add(current.format(outputFormatter));
-                current = current.plusHours(3);
-            }
-
-        } catch (DateTimeParseException e) {
-            // Fallback: generate simple labels every 3 hours from available data
-            for (int i = 0; i < times.size(); i += 3) {
-                axisLabels.add(formatTimeForChart(times.get(i)));
-            }
-        }
-
-        return axisLabels;
+    private ChartWindow showChartWindow(WeatherVariable variable, WeatherData weatherData, int expectedPoints) {
+        ChartWindow window = new ChartWindow(variable, weatherData, expectedPoints, this::exportData);
+        window.show();
+        return window;
     }
 
-    private String formatTimeForChart(String timeStr) {
-        DateTimeFormatter inputFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
-        DateTimeFormatter outputFormatter = DateTimeFormatter.ofPattern("dd.MM HH:mm");
-
-        try {
-            LocalDateTime dateTime = LocalDateTime.parse(timeStr, inputFormatter);
-            return dateTime.format(outputFormatter);
-        } catch (DateTimeParseException e) {
-            // Fallback parsing
-            if (timeStr.length() >= 16) {
-                try {
-                    String dateTimePart = timeStr.substring(0, 16);
-                    LocalDateTime dateTime = LocalDateTime.parse(dateTimePart, inputFormatter);
-                    return dateTime.format(outputFormatter);
-                } catch (Exception ex) {
-                    return timeStr.length() > 16 ? timeStr.substring(0, 16) : timeStr;
-                }
-            } else {
-                return timeStr;
-            }
-        }
+    private ChartWindow showChartWindow(DerivedSeries derived, WeatherData weatherData, int expectedPoints) {
+        ChartWindow window = new ChartWindow(derived, weatherData, expectedPoints, this::exportData);
+        window.show();
+        return window;
     }
 
     private void exportData(WeatherData weatherData) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Zapisz dane pogodowe");
-        fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("Pliki tekstowe", "*.txt"));
+        for (DataExporter.Format format : DataExporter.Format.values()) {
+            fileChooser.getExtensionFilters().add(
+                    new FileChooser.ExtensionFilter(format.getDescription(), format.getExtension()));
+        }
 
         File file = fileChooser.showSaveDialog(null);
-        if (file != null) {
-            try (FileWriter writer = new FileWriter(file)) {
-                writer.write("Eksport danych pogodowych\n");
-                writer.write("Data eksportu: " + LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE) + "\n\n");
-
-                List<String> times = weatherData.getTimes();
-                List<Double> temps = weatherData.getTemperatures();
-                List<Double> winds = weatherData.getWindSpeeds();
-                List<Double> rain = weatherData.getRainfall();
-                List<Double> pressure = weatherData.getPressure();
-
-                writer.write("Czas\tTemperatura(°C)\tWiatr(km/h)\tOpady(mm)\tCiśnienie(hPa)\n");
-
-                for (int i = 0; i < times.size(); i++) {
-                    writer.write(String.format("%s\t%.2f\t%.2f\t%.2f\t%.2f\n",
-                            times.get(i),
-                            temps.size() > i ? temps.get(i) : 0.0,
-                            winds.size() > i ? winds.get(i) : 0.0,
-                            rain.size() > i ? rain.get(i) : 0.0,
-                            pressure.size() > i ? pressure.get(i) : 0.0
-                    ));
-                }
+        if (file == null) {
+            return;
+        }
+        int filterIndex = fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter());
+        DataExporter.Format format = DataExporter.Format.values()[Math.max(0, filterIndex)];
+
+        // Export runs in the background; the dialog shows progress and allows cancelling
+        Task<Void> exportTask = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                DataExporter.export(weatherData, file.toPath(), format,
+                        (done, total) -> updateProgress(done, total), this::isCancelled);
+                return null;
+            }
+        };
+
+        Stage progressDialog = new Stage();
+        progressDialog.initModality(Modality.NONE);
+        progressDialog.setTitle("Eksport danych");
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(300);
+        progressBar.progressProperty().bind(exportTask.progressProperty());
+        Button cancelButton = new Button("Anuluj");
+        cancelButton.setOnAction(e -> exportTask.cancel());
+        VBox progressBox = new VBox(10, new Label("Zapisywanie: " + file.getName()), progressBar, cancelButton);
+        progressBox.setAlignment(Pos.CENTER);
+        progressBox.setPadding(new Insets(15));
+        progressDialog.setScene(new Scene(progressBox));
+
+        exportTask.setOnSucceeded(e -> {
+            progressDialog.close();
+            statusLabel.setText("Dane wyeksportowane do: " + file.getName());
+        });
+        exportTask.setOnCancelled(e -> {
+            progressDialog.close();
+            deletePartialExport(file);
+            statusLabel.setText("Eksport anulowany");
+        });
+        exportTask.setOnFailed(e -> {
+            progressDialog.close();
+            deletePartialExport(file);
+            showError("Błąd podczas zapisywania pliku: " + exportTask.getException().getMessage());
+        });
 
-                statusLabel.setText("Dane wyeksportowane do: " + file.getName());
+        progressDialog.show();
+        Thread exportThread = new Thread(exportTask, "data-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
 
-            } catch (IOException e) {
-                showError("Błąd podczas zapisywania pliku: " + e.getMessage());
-            }
+    private void deletePartialExport(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            LOG.warn("Nie można usunąć niekompletnego pliku: {}", e.getMessage());
         }
     }
 
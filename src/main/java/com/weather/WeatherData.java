@@ -1,7 +1,13 @@
 package com.weather;
 
 import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 public class WeatherData implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -13,6 +19,10 @@ public class WeatherData implements Serializable {
     private List<Double> pressure;
     private List<Double> soilTemperature;
 
+    // Derived from times on first use; not serialized to the cache
+    private transient long[] timeEpochs;
+    private transient double[][] columns;
+
     public WeatherData() {
     }
 
@@ -23,6 +33,178 @@ public class WeatherData implements Serializable {
 
     public void setTimes(List<String> times) {
         this.times = times;
+        this.timeEpochs = null;
+    }
+
+    /**
+     * Zwraca czasy jako sekundy epoki (czas lokalny API traktowany jak UTC),
+     * liczone jednorazowo i współdzielone przez wszystkie wykresy.
+     */
+    public long[] getTimeEpochs() {
+        long[] epochs = timeEpochs;
+        if (epochs == null) {
+            if (times == null) {
+                return new long[0];
+            }
+            epochs = new long[times.size()];
+            for (int i = 0; i < epochs.length; i++) {
+                epochs[i] = parseEpochSeconds(times.get(i));
+            }
+            timeEpochs = epochs;
+        }
+        return epochs;
+    }
+
+    /**
+     * Zwraca kolumnę zmiennej jako tablicę prymitywną (brakujące wartości jako NaN).
+     * Tablica jest współdzielona i nie może być modyfikowana przez wywołującego.
+     */
+    public double[] getValues(WeatherVariable variable) {
+        double[][] cached = columns;
+        if (cached == null) {
+            cached = new double[WeatherVariable.values().length][];
+            columns = cached;
+        }
+        double[] values = cached[variable.ordinal()];
+        if (values == null) {
+            List<Double> list = variable.values(this);
+            values = new double[list != null ? list.size() : 0];
+            for (int i = 0; i < values.length; i++) {
+                Double value = list.get(i);
+                values[i] = value != null ? value : Double.NaN;
+            }
+            cached[variable.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Skleja kolejne (uporządkowane w czasie, rozłączne) fragmenty w jedną serię.
+     */
+    public static WeatherData concat(List<WeatherData> parts) {
+        WeatherData result = new WeatherData();
+        result.setTimes(concatColumn(parts, WeatherData::getTimes));
+        result.setTemperatures(concatColumn(parts, WeatherData::getTemperatures));
+        result.setWindSpeeds(concatColumn(parts, WeatherData::getWindSpeeds));
+        result.setRainfall(concatColumn(parts, WeatherData::getRainfall));
+        result.setPressure(concatColumn(parts, WeatherData::getPressure));
+        result.setSoilTemperature(concatColumn(parts, WeatherData::getSoilTemperature));
+        return result;
+    }
+
+    /**
+     * Nakłada świeżo pobrane godziny (od pierwszej godziny update do końca) na poprzednią prognozę,
+     * zachowując z niej godziny od keepFromEpoch do początku update. Zwraca nowy obiekt; previous
+     * pozostaje bez zmian, więc wykresy i wątki, które go czytają, nie widzą danych w połowie scalania.
+     */
+    public static WeatherData mergeForecast(WeatherData previous, WeatherData update, long keepFromEpoch) {
+        long[] previousTimes = previous.getTimeEpochs();
+        long[] updateTimes = update.getTimeEpochs();
+        long keepUntil = updateTimes.length > 0 ? updateTimes[0] : Long.MAX_VALUE;
+        int from = 0;
+        while (from < previousTimes.length && previousTimes[from] < keepFromEpoch) {
+            from++;
+        }
+        int to = from;
+        while (to < previousTimes.length && previousTimes[to] < keepUntil) {
+            to++;
+        }
+
+        WeatherData kept = previous.slice(from, to);
+        return concat(List.of(kept, update));
+    }
+
+    /**
+     * Kopia z osią czasu i tylko jedną kolumną (wpis cache pojedynczej zmiennej).
+     */
+    public WeatherData column(WeatherVariable variable) {
+        WeatherData result = new WeatherData();
+        result.setTimes(times);
+        variable.setValues(result, variable.values(this));
+        return result;
+    }
+
+    /**
+     * Zestawia kolumny z kilku obiektów o tej samej osi czasu w jeden; null, gdy osie czasu się różnią
+     * (np. kolumny pobrane przed i po północy). Kolumny późniejszych części nadpisują wcześniejsze.
+     */
+    public static WeatherData mergeColumns(List<WeatherData> parts) {
+        WeatherData result = new WeatherData();
+        if (parts.isEmpty()) {
+            return result;
+        }
+        long[] epochs = parts.get(0).getTimeEpochs();
+        result.setTimes(parts.get(0).getTimes());
+        for (WeatherData part : parts) {
+            if (!Arrays.equals(epochs, part.getTimeEpochs())) {
+                return null;
+            }
+            for (WeatherVariable variable : WeatherVariable.values()) {
+                List<Double> values = variable.values(part);
+                if (values != null) {
+                    variable.setValues(result, values);
+                }
+            }
+        }
+        return result;
+    }
+
+    private WeatherData slice(int from, int to) {
+        WeatherData result = new WeatherData();
+        result.setTimes(sliceColumn(times, from, to));
+        result.setTemperatures(sliceColumn(temperatures, from, to));
+        result.setWindSpeeds(sliceColumn(windSpeeds, from, to));
+        result.setRainfall(sliceColumn(rainfall, from, to));
+        result.setPressure(sliceColumn(pressure, from, to));
+        result.setSoilTemperature(sliceColumn(soilTemperature, from, to));
+        return result;
+    }
+
+    private static <T> List<T> sliceColumn(List<T> values, int from, int to) {
+        if (values == null) {
+            return null;
+        }
+        return values.subList(Math.min(from, values.size()), Math.min(to, values.size()));
+    }
+
+    private static <T> List<T> concatColumn(List<WeatherData> parts, Function<WeatherData, List<T>> column) {
+        int size = 0;
+        for (WeatherData part : parts) {
+            List<T> values = column.apply(part);
+            size += values != null ? values.size() : 0;
+        }
+        List<T> result = new ArrayList<>(size);
+        for (WeatherData part : parts) {
+            List<T> values = column.apply(part);
+            if (values != null) {
+                result.addAll(values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses Open-Meteo "yyyy-MM-dd'T'HH:mm" without going through DateTimeFormatter.
+     */
+    static long parseEpochSeconds(String time) {
+        if (time.length() < 16 || time.charAt(4) != '-' || time.charAt(10) != 'T') {
+            return LocalDateTime.parse(time).toEpochSecond(ZoneOffset.UTC);
+        }
+        int year = digits(time, 0, 4);
+        int month = digits(time, 5, 7);
+        int day = digits(time, 8, 10);
+        int hour = digits(time, 11, 13);
+        int minute = digits(time, 14, 16);
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return epochDay * 86_400L + hour * 3_600L + minute * 60L;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
     }
 
     public List<Double> getTemperatures() {
@@ -31,6 +213,7 @@ public class WeatherData implements Serializable {
 
     public void setTemperatures(List<Double> temperatures) {
         this.temperatures = temperatures;
+        this.columns = null;
     }
 
     public List<Double> getWindSpeeds() {
@@ -39,6 +222,7 @@ public class WeatherData implements Serializable {
 
     public void setWindSpeeds(List<Double> windSpeeds) {
         this.windSpeeds = windSpeeds;
+        this.columns = null;
     }
 
     public List<Double> getRainfall() {
@@ -47,6 +231,7 @@ public class WeatherData implements Serializable {
 
     public void setRainfall(List<Double> rainfall) {
         this.rainfall = rainfall;
+        this.columns = null;
     }
 
     public List<Double> getPressure() {
@@ -55,6 +240,7 @@ public class WeatherData implements Serializable {
 
     public void setPressure(List<Double> pressure) {
         this.pressure = pressure;
+        this.columns = null;
     }
 
     public List<Double> getSoilTemperature() {
@@ -63,6 +249,7 @@ public class WeatherData implements Serializable {
 
     public void setSoilTemperature(List<Double> soilTemperature) {
         this.soilTemperature = soilTemperature;
+        this.columns = null;
     }
 
     @Override
@@ -0,0 +1,112 @@
+package com.weather;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenia Java Flight Recorder dla kolejnych etapów żądania: cache, HTTP, parsowanie, budowa wykresu.
+ * Wszystkie mają pole requestId (RequestContext), więc w JMC można je zgrupować po żądaniu.
+ * Nagrywanie: {@code -XX:StartFlightRecording=filename=weather.jfr,settings=profile}.
+ */
+final class WeatherEvents {
+
+    private WeatherEvents() {
+    }
+
+    @Name("com.weather.Request")
+    @Label("Weather Request")
+    @Description("Całe żądanie: od kliknięcia / zapytania do gotowej odpowiedzi")
+    @Category("Weather")
+    @StackTrace(false)
+    static final class Request extends Event {
+        @Label("Request Id")
+        long requestId;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("com.weather.CacheLookup")
+    @Label("Cache Lookup")
+    @Category("Weather")
+    @StackTrace(false)
+    static final class CacheLookup extends Event {
+        @Label("Request Id")
+        long requestId;
+
+        @Label("Tier")
+        String tier;
+
+        @Label("Key")
+        String key;
+
+        @Label("Hit")
+        boolean hit;
+    }
+
+    @Name("com.weather.UpstreamRequest")
+    @Label("Upstream HTTP Request")
+    @Category("Weather")
+    @StackTrace(false)
+    static final class UpstreamRequest extends Event {
+        @Label("Request Id")
+        long requestId;
+
+        @Label("Endpoint")
+        @Description("Rodzaj adresu (forecast/archive), bez parametrów zapytania")
+        String endpoint;
+
+        @Label("Status")
+        @Description("Kod HTTP, 0 przy błędzie połączenia")
+        int status;
+
+        @Label("Response Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.weather.Parse")
+    @Label("Parse Weather Response")
+    @Category("Weather")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Request Id")
+        long requestId;
+
+        @Label("Points")
+        int points;
+
+        @Label("Variables")
+        int variables;
+
+        @Label("Input Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.weather.ChartBuild")
+    @Label("Chart Build")
+    @Category({"Weather", "JavaFX"})
+    @StackTrace(false)
+    static final class ChartBuild extends Event {
+        @Label("Request Id")
+        long requestId;
+
+        @Label("Chart")
+        String title;
+
+        @Label("Renderer")
+        String renderer;
+
+        @Label("Points Rendered")
+        long points;
+    }
+}
@@ -0,0 +1,370 @@
+package com.weather;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tryb serwera: udostępnia dane Open-Meteo (przez WeatherService i jego cache) oraz wyszukiwanie miast
+ * innym usługom przez HTTP. Każde żądanie obsługiwane jest na osobnym wątku wirtualnym.
+ *
+ * <pre>
+ *   GET /forecast?lat=52.23&amp;lon=21.01&amp;days=7        (lub city=Warszawa zamiast lat/lon)
+ *   GET /historical?city=Kraków&amp;start=2024-01-01&amp;end=2024-12-31
+ *   GET /cities/search?q=war&amp;limit=10
+ *   GET /cities/nearest?lat=52.23&amp;lon=21.01&amp;limit=5
+ *   GET /metrics                                   (format tekstowy Prometheusa)
+ * </pre>
+ *
+ * Odpowiedzi JSON mają ETag (obsługa If-None-Match → 304) i są kompresowane gzip, jeśli klient to akceptuje.
+ */
+public class WeatherServer {
+
+    private static final Log LOG = Log.get(WeatherServer.class);
+    private static final int DEFAULT_PORT = Integer.getInteger("weather.server.port", 8080);
+    private static final int UPSTREAM_CONNECTIONS = Integer.getInteger("weather.server.upstreamConnections", 32);
+    private static final int BACKLOG = 1024;
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    /**
+     * Błąd żądania zwracany klientowi z podanym kodem HTTP.
+     */
+    static class RequestException extends RuntimeException {
+        private final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Endpoint {
+        byte[] respond(Map<String, String> query) throws Exception;
+    }
+
+    record NearestCity(String name, String country, double latitude, double longitude, int population,
+                       double distanceKm) { }
+
+    private final WeatherService weatherService;
+    private final CityService cityService;
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Concurrent requests for the same upstream data share a single fetch and serialization
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public WeatherServer(int port, WeatherService weatherService, CityService cityService) throws IOException {
+        this.weatherService = weatherService;
+        this.cityService = cityService;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/forecast", exchange -> handle(exchange, this::forecast));
+        server.createContext("/historical", exchange -> handle(exchange, this::historical));
+        server.createContext("/cities/search", exchange -> handle(exchange, this::searchCities));
+        server.createContext("/cities/nearest", exchange -> handle(exchange, this::nearestCities));
+        server.createContext("/metrics", this::metrics);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Serwer pogodowy nasłuchuje na porcie {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("--port".equals(args[i])) {
+                port = Integer.parseInt(args[i + 1]);
+            }
+        }
+
+        Metrics.startExporters();
+        WeatherService weatherService = new WeatherService(UPSTREAM_CONNECTIONS);
+        WeatherServer server = new WeatherServer(port, weatherService, new CityService());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            weatherService.close();
+        }, "weather-server-shutdown"));
+        server.start();
+    }
+
+    private byte[] forecast(Map<String, String> query) throws Exception {
+        double[] location = location(query);
+        int days = intParameter(query, "days", 7, 1, 16);
+        String key = String.format(Locale.US, "forecast_%.4f_%.4f_%d", location[0], location[1], days);
+        return coalesce(key, () -> toJson(weatherService.getForecastData(location[0], location[1], days)));
+    }
+
+    private byte[] historical(Map<String, String> query) throws Exception {
+        double[] location = location(query);
+        LocalDate start = dateParameter(query, "start");
+        LocalDate end = dateParameter(query, "end");
+        if (start.isAfter(end)) {
+            throw new RequestException(400, "Data początkowa jest późniejsza niż końcowa");
+        }
+        String key = String.format(Locale.US, "historical_%.4f_%.4f_%s_%s", location[0], location[1], start, end);
+        return coalesce(key, () -> {
+            WeatherService.ChunkSize chunkSize = WeatherService.ChunkSize.forRange(start, end);
+            WeatherData data = chunkSize == null
+                    ? weatherService.getHistoricalData(location[0], location[1], start, end)
+                    : weatherService.getHistoricalDataChunked(location[0], location[1], start, end, chunkSize);
+            return toJson(data);
+        });
+    }
+
+    private byte[] searchCities(Map<String, String> query) {
+        String text = query.get("q");
+        if (text == null || text.isBlank()) {
+            throw new RequestException(400, "Brak parametru q");
+        }
+        return toJson(cityService.searchCities(text, intParameter(query, "limit", DEFAULT_LIMIT, 1, MAX_LIMIT)));
+    }
+
+    private byte[] nearestCities(Map<String, String> query) {
+        double latitude = doubleParameter(query, "lat", -90, 90);
+        double longitude = doubleParameter(query, "lon", -180, 180);
+        List<City> cities = cityService.findNearest(latitude, longitude,
+                intParameter(query, "limit", DEFAULT_LIMIT, 1, MAX_LIMIT));
+        return toJson(cities.stream()
+                .map(city -> new NearestCity(city.getName(), city.getCountry(), city.getLatitude(),
+                        city.getLongitude(), city.getPopulation(),
+                        CityService.distanceKm(latitude, longitude, city.getLatitude(), city.getLongitude())))
+                .toList());
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private double[] location(Map<String, String> query) {
+        String cityName = query.get("city");
+        if (cityName != null) {
+            City city = cityService.findCityByName(cityName);
+            if (city == null) {
+                throw new RequestException(404, "Nie znaleziono miasta: " + cityName);
+            }
+            return new double[]{city.getLatitude(), city.getLongitude()};
+        }
+        return new double[]{doubleParameter(query, "lat", -90, 90), doubleParameter(query, "lon", -180, 180)};
+    }
+
+    private byte[] coalesce(String key, Callable<byte[]> loader) throws Exception {
+        CompletableFuture<byte[]> own = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        try {
+            byte[] body = loader.call();
+            own.complete(body);
+            return body;
+        } catch (Exception e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private byte[] toJson(Object value) {
+        return gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) {
+        WeatherEvents.Request request = new WeatherEvents.Request();
+        request.begin();
+        int status = 200;
+        try (RequestContext.Scope scope = RequestContext.begin()) {
+            request.requestId = RequestContext.current();
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                status = 405;
+                send(exchange, status, error("Dozwolone są tylko żądania GET"));
+                return;
+            }
+
+            byte[] body;
+            try {
+                body = endpoint.respond(parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (RequestException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (Exception e) {
+                LOG.warn("Błąd obsługi {}: {}", exchange.getRequestURI(), e.getMessage());
+                status = 502;
+                body = error("Błąd pobierania danych: " + e.getMessage());
+            }
+            send(exchange, status, body);
+        } catch (IOException e) {
+            // Client disconnected before the response was written
+        } finally {
+            exchange.close();
+            request.kind = exchange.getHttpContext().getPath();
+            request.success = status < 400;
+            request.commit();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Vary", "Accept-Encoding");
+
+        if (status == 200) {
+            // Weak tag: the identity and gzip representations share it
+            String etag = etag(body);
+            headers.set("ETag", etag);
+            if (matches(requestHeaders.getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+        if (body.length >= GZIP_MIN_BYTES && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = gzip(body);
+            headers.set("Content-Encoding", "gzip");
+        }
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String etag(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return "W/\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    private byte[] error(String message) {
+        return toJson(Map.of("error", message));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static double doubleParameter(Map<String, String> query, String name, double min, double max) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Brak parametru " + name);
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            if (!(parsed >= min && parsed <= max)) {
+                throw new RequestException(400, "Parametr " + name + " poza zakresem " + min + ".." + max);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Nieprawidłowa wartość parametru " + name + ": " + value);
+        }
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue, int min, int max) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(min, Math.min(max, Integer.parseInt(value)));
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Nieprawidłowa wartość parametru " + name + ": " + value);
+        }
+    }
+
+    private static LocalDate dateParameter(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Brak parametru " + name);
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new RequestException(400, "Nieprawidłowa data w parametrze " + name + ": " + value);
+        }
+    }
+}
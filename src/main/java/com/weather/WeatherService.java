@@ -4,110 +4,930 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.Timeout;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class WeatherService {
 
-    private static final String FORECAST_URL = "https://api.open-meteo.com/v1/forecast";
-    private static final String HISTORICAL_URL = "https://archive-api.open-meteo.com/v1/archive";
+    private static final Log LOG = Log.get(WeatherService.class);
+    // Base URLs can be pointed at a local stub, e.g. -Dweather.forecast.url=http://localhost:8081/v1/forecast
+    private static final String FORECAST_URL =
+            System.getProperty("weather.forecast.url", "https://api.open-meteo.com/v1/forecast");
+    private static final String HISTORICAL_URL =
+            System.getProperty("weather.historical.url", "https://archive-api.open-meteo.com/v1/archive");
+    // Max concurrent archive requests in chunked mode, e.g. -Dweather.historical.parallelism=8
+    private static final int HISTORICAL_PARALLELISM = Integer.getInteger("weather.historical.parallelism", 4);
+    // The archive is filled in with a few days' delay; older data no longer changes
+    private static final int ARCHIVE_DELAY_DAYS = 7;
+    private static final int ARCHIVE_FINAL_TTL_SECONDS = 30 * 24 * 3600;
+    // Finalized archive days are kept here for good; an empty value disables the store
+    private static final String STORE_DIR = System.getProperty("weather.store.dir", "weather_store");
+    private static final ZoneId FORECAST_ZONE = ZoneId.of("Europe/Warsaw");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    private static final int MAX_TRACKED_FORECASTS = 256;
+    private static final Set<WeatherVariable> ALL_VARIABLES = Collections.unmodifiableSet(
+            EnumSet.allOf(WeatherVariable.class));
+
+    /**
+     * Rozmiar fragmentu zakresu dat przy pobieraniu danych historycznych w częściach.
+     */
+    public enum ChunkSize {
+        MONTH(1), QUARTER(3), YEAR(12);
+
+        private final int months;
+
+        ChunkSize(int months) {
+            this.months = months;
+        }
+
+        /**
+         * Dobiera rozmiar fragmentu do długości zakresu; null gdy zakres mieści się w jednym zapytaniu.
+         */
+        public static ChunkSize forRange(LocalDate startDate, LocalDate endDate) {
+            long days = endDate.toEpochDay() - startDate.toEpochDay();
+            if (days <= 62) {
+                return null;
+            }
+            return days <= 2 * 366 ? MONTH : QUARTER;
+        }
+    }
+
+    // Give up instead of waiting when the server asks for a longer pause (e.g. daily quota exhausted)
+    private static final long MAX_RETRY_AFTER_NANOS = TimeUnit.MINUTES.toNanos(2);
+    private static final int THROTTLED_MAX_ATTEMPTS = 4;
+    private static final long THROTTLED_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Connection errors and 5xx answers: up to MAX_ATTEMPTS tries, delays drawn from [0, 200 ms * 2^n)
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    // Read timeout for one attempt, e.g. -Dweather.upstream.timeoutSeconds=10
+    private static final int TIMEOUT_SECONDS = Integer.getInteger("weather.upstream.timeoutSeconds", 30);
+    // Hedge when the first attempt is slower than this percentile of the endpoint's fetch times,
+    // e.g. -Dweather.hedge.percentile=0.9 (0 disables hedging)
+    private static final double HEDGE_PERCENTILE =
+            Double.parseDouble(System.getProperty("weather.hedge.percentile", "0.95"));
+    private static final long HEDGE_MIN_SAMPLES = 20;
+    private static final long HEDGE_MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Retries and hedges together may add about 10% to the upstream traffic, shared by all instances
+    private static final int RETRY_BUDGET_SIZE = 10;
+    private static final RetryBudget RETRY_BUDGET = new RetryBudget(0.1, RETRY_BUDGET_SIZE);
+    // Failed queries are answered from the cache for a while: deterministic API errors (400-style) for long,
+    // outages and timeouts briefly, e.g. -Dweather.negativeCache.clientErrorSeconds=3600 (0 = not remembered)
+    private static final int CLIENT_ERROR_TTL_SECONDS =
+            Integer.getInteger("weather.negativeCache.clientErrorSeconds", 6 * 3600);
+    private static final int SERVER_ERROR_TTL_SECONDS =
+            Integer.getInteger("weather.negativeCache.serverErrorSeconds", 30);
+    private static final ExecutorService ATTEMPT_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("upstream-attempt-", 0).factory());
+
+    /**
+     * Upstream API endpoints, each with its own request metrics and request budget. Open-Meteo
+     * limits requests per client, so the budget is shared by all WeatherService instances;
+     * override with e.g. -Dweather.ratelimit.forecast=20 (requests per second, 0 = no limit).
+     */
+    enum Endpoint {
+        FORECAST("forecast", 10),
+        ARCHIVE("archive", 5);
+
+        final Metrics.StatusCounter requests;
+        final Metrics.Histogram fetchTime;
+        final Metrics.Counter throttled;
+        final RateLimiter limiter;
+
+        Endpoint(String label, int defaultRate) {
+            String labels = "endpoint=\"" + label + "\"";
+            this.requests = Metrics.statusCounter("weather_upstream_requests_total",
+                    "Zapytania do Open-Meteo wg kodu odpowiedzi", labels);
+            this.fetchTime = Metrics.histogram("weather_upstream_fetch_seconds",
+                    "Czas zapytania HTTP do Open-Meteo", labels);
+            this.throttled = Metrics.counter("weather_upstream_throttled_total",
+                    "Odpowiedzi 429/503 z Open-Meteo (ponowione po Retry-After)", labels);
+            int rate = Integer.getInteger("weather.ratelimit." + label, defaultRate);
+            this.limiter = new RateLimiter(labels, rate, 2 * rate);
+        }
+    }
+
+    /**
+     * Odpowiedź HTTP inna niż 200; retryAfterNanos to czas z nagłówka Retry-After albo -1.
+     */
+    private static final class HttpStatusException extends IOException {
+        final int status;
+        final long retryAfterNanos;
+
+        HttpStatusException(int status, String reason, long retryAfterNanos) {
+            super("HTTP Error: " + status + " - " + reason);
+            this.status = status;
+            this.retryAfterNanos = retryAfterNanos;
+        }
+
+        boolean isThrottled() {
+            return status == 429 || status == 503;
+        }
+    }
+
+    private static final Metrics.Histogram PARSE_TIME =
+            Metrics.histogram("weather_parse_seconds", "Czas parsowania odpowiedzi JSON", "");
+    private static final Metrics.Counter PARSE_ERRORS =
+            Metrics.counter("weather_parse_errors_total", "Nieudane parsowania odpowiedzi", "");
+    private static final Metrics.Counter FULL_REFRESHES = Metrics.counter("weather_forecast_refreshes_total",
+            "Pobrania prognozy", "mode=\"full\"");
+    private static final Metrics.Counter INCREMENTAL_REFRESHES = Metrics.counter("weather_forecast_refreshes_total",
+            "Pobrania prognozy", "mode=\"incremental\"");
+    private static final Metrics.Counter CHANGED_HOURS = Metrics.counter("weather_forecast_changed_hours_total",
+            "Godziny prognozy zmienione względem poprzedniej wersji", "");
+    private static final Metrics.Counter STORE_GAP_FETCHES = Metrics.counter("weather_store_gap_fetches_total",
+            "Zakresy dni pobrane z archiwum, bo brakowało ich w magazynie", "");
+    private static final Metrics.Counter CACHED_COLUMNS = Metrics.counter("weather_columns_total",
+            "Kolumny zmiennych (zmienna x zakres) według źródła", "source=\"cache\"");
+    private static final Metrics.Counter FETCHED_COLUMNS = Metrics.counter("weather_columns_total",
+            "Kolumny zmiennych (zmienna x zakres) według źródła", "source=\"upstream\"");
+    private static final Metrics.Counter CLIENT_ERRORS_CACHED = Metrics.counter("weather_negative_cache_writes_total",
+            "Zapamiętane błędy zapytań do Open-Meteo wg rodzaju", "class=\"client\"");
+    private static final Metrics.Counter SERVER_ERRORS_CACHED = Metrics.counter("weather_negative_cache_writes_total",
+            "Zapamiętane błędy zapytań do Open-Meteo wg rodzaju", "class=\"server\"");
+    private static final Metrics.Counter RETRIES = Metrics.counter("weather_upstream_retries_total",
+            "Dodatkowe zapytania do Open-Meteo", "reason=\"error\"");
+    private static final Metrics.Counter HEDGES = Metrics.counter("weather_upstream_retries_total",
+            "Dodatkowe zapytania do Open-Meteo", "reason=\"hedge\"");
+    private static final Metrics.Counter HEDGE_WINS = Metrics.counter("weather_upstream_hedge_wins_total",
+            "Zapytania, w których szybciej odpowiedziało zapytanie zabezpieczające", "");
+    private static final Metrics.Counter BUDGET_EXHAUSTED =
+            Metrics.counter("weather_upstream_retry_budget_exhausted_total",
+                    "Ponowienia pominięte z powodu wyczerpanego budżetu", "");
+
     private final Gson gson;
     private final CacheService cacheService;
+    private final CloseableHttpClient httpClient;
+    private final ExecutorService chunkExecutor;
+    // null when the local archive store is disabled or its directory is unusable
+    private final TimeSeriesStore archiveStore;
+    private final String forecastUrl;
+    private final String historicalUrl;
+    // Last forecast returned per cache key, the base for incremental refreshes
+    private final Map<String, WeatherData> latestForecasts = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, WeatherData> eldest) {
+                    return size() > MAX_TRACKED_FORECASTS;
+                }
+            });
 
     public WeatherService() {
+        this(HISTORICAL_PARALLELISM);
+    }
+
+    /**
+     * @param maxConnections liczba równoległych połączeń HTTP (np. dla trybu wsadowego)
+     */
+    public WeatherService(int maxConnections) {
+        this(maxConnections, FORECAST_URL, HISTORICAL_URL);
+    }
+
+    /**
+     * @param forecastUrl   adres API prognozy (np. lokalnej atrapy Open-Meteo)
+     * @param historicalUrl adres API archiwum
+     */
+    public WeatherService(int maxConnections, String forecastUrl, String historicalUrl) {
+        this(maxConnections, forecastUrl, historicalUrl, new CacheService(), openArchiveStore());
+    }
+
+    /**
+     * @param archiveStore magazyn archiwum albo null, gdy archiwum ma iść tylko przez cache
+     */
+    WeatherService(int maxConnections, String forecastUrl, String historicalUrl,
+                   CacheService cacheService, TimeSeriesStore archiveStore) {
+        this.forecastUrl = forecastUrl;
+        this.historicalUrl = historicalUrl;
         this.gson = new Gson();
-        this.cacheService = new CacheService();
+        this.cacheService = cacheService;
+        this.archiveStore = archiveStore;
+
+        // One pooled client for all requests, sized so every chunk worker gets its own connection
+        int connections = Math.max(maxConnections, HISTORICAL_PARALLELISM);
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(connections)
+                .setMaxConnTotal(connections * 2)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofSeconds(5))
+                        .setSocketTimeout(Timeout.ofSeconds(TIMEOUT_SECONDS))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                // 429/503 are retried in makeHttpRequest through the rate limiter; keep only I/O retries here
+                .setRetryStrategy(new DefaultHttpRequestRetryStrategy() {
+                    @Override
+                    public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+                        return false;
+                    }
+                })
+                .build();
+        this.chunkExecutor = Executors.newFixedThreadPool(HISTORICAL_PARALLELISM, runnable -> {
+            Thread thread = new Thread(runnable, "historical-chunk");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Metrics.gauge("weather_http_pool_connections", "Połączenia w puli HTTP", "state=\"leased\"",
+                () -> connectionManager.getTotalStats().getLeased());
+        Metrics.gauge("weather_http_pool_connections", "Połączenia w puli HTTP", "state=\"available\"",
+                () -> connectionManager.getTotalStats().getAvailable());
+        Metrics.gauge("weather_http_pool_pending", "Wątki czekające na połączenie HTTP", "",
+                () -> connectionManager.getTotalStats().getPending());
+        Metrics.gauge("weather_upstream_retry_budget", "Dostępne ponowienia w budżecie", "",
+                () -> (long) RETRY_BUDGET.balance());
+        if (chunkExecutor instanceof ThreadPoolExecutor pool) {
+            Metrics.gauge("weather_chunk_executor_active", "Aktywne pobierania fragmentów historycznych", "",
+                    pool::getActiveCount);
+            Metrics.gauge("weather_chunk_executor_queued", "Fragmenty historyczne w kolejce", "",
+                    () -> pool.getQueue().size());
+        }
+    }
+
+    private static TimeSeriesStore openArchiveStore() {
+        if (STORE_DIR.isEmpty()) {
+            return null;
+        }
+        try {
+            // Days the archive has no values for are asked again only as often as final slices expire
+            return new TimeSeriesStore(Paths.get(STORE_DIR), ARCHIVE_FINAL_TTL_SECONDS);
+        } catch (IOException e) {
+            LOG.warn("Magazyn archiwum niedostępny, używam tylko cache: {}", e.getMessage());
+            return null;
+        }
     }
 
     public WeatherData getHistoricalData(double latitude, double longitude,
                                          LocalDate startDate, LocalDate endDate) throws Exception {
+        return getHistoricalData(latitude, longitude, startDate, endDate, ALL_VARIABLES);
+    }
 
+    /**
+     * Zwraca tylko zmienne variables. Dni starsze niż ARCHIVE_DELAY_DAYS są czytane z lokalnego
+     * magazynu, a z archiwum Open-Meteo pobierane są tylko brakujące w nim zakresy i zmienne.
+     * Nowsze dni idą przez cache, w którym każda zmienna jest osobnym wpisem.
+     */
+    public WeatherData getHistoricalData(double latitude, double longitude, LocalDate startDate,
+                                         LocalDate endDate, Set<WeatherVariable> variables) throws Exception {
+        LocalDate lastFinalDay = LocalDate.now().minusDays(ARCHIVE_DELAY_DAYS + 1);
+        if (archiveStore == null || startDate.isAfter(lastFinalDay)) {
+            return getCachedHistoricalData(latitude, longitude, startDate, endDate, variables);
+        }
+
+        LocalDate storedEnd = endDate.isAfter(lastFinalDay) ? lastFinalDay : endDate;
+        // Variables missing the same days are fetched together, e.g. one newly ticked variable alone
+        Map<List<String>, Set<WeatherVariable>> gapsByRanges = new LinkedHashMap<>();
+        Map<List<String>, List<LocalDate[]>> ranges = new HashMap<>();
+        for (WeatherVariable variable : variables) {
+            List<LocalDate[]> gaps = archiveStore.missingDays(latitude, longitude, variable, startDate, storedEnd);
+            if (gaps.isEmpty()) {
+                continue;
+            }
+            List<String> key = gaps.stream().map(Arrays::toString).toList();
+            gapsByRanges.computeIfAbsent(key, k -> EnumSet.noneOf(WeatherVariable.class)).add(variable);
+            ranges.putIfAbsent(key, gaps);
+        }
+        for (Map.Entry<List<String>, Set<WeatherVariable>> group : gapsByRanges.entrySet()) {
+            for (LocalDate[] gap : ranges.get(group.getKey())) {
+                LOG.debug("Brak w magazynie: {} - {} {}", gap[0], gap[1], group.getValue());
+                STORE_GAP_FETCHES.increment();
+                archiveStore.append(latitude, longitude,
+                        fetchHistoricalData(latitude, longitude, gap[0], gap[1], group.getValue()), group.getValue());
+            }
+        }
+        WeatherData stored = archiveStore.read(latitude, longitude, startDate, storedEnd, variables);
+        if (storedEnd.equals(endDate)) {
+            return stored;
+        }
+        WeatherData recent = getCachedHistoricalData(latitude, longitude, storedEnd.plusDays(1), endDate, variables);
+        return WeatherData.concat(List.of(stored, recent));
+    }
+
+    private WeatherData getCachedHistoricalData(double latitude, double longitude, LocalDate startDate,
+                                                LocalDate endDate, Set<WeatherVariable> variables)
+            throws Exception {
         String cacheKey = String.format(java.util.Locale.US, "historical_%.4f_%.4f_%s_%s",
                 latitude, longitude, startDate.toString(), endDate.toString());
 
-        // Check cache first
-        WeatherData cachedData = cacheService.getWeatherData(cacheKey);
-        if (cachedData != null) {
-            System.out.println("Zwracam dane z cache");
-            return cachedData;
-        }
+        // Cache the data for 1 hour (historical data doesn't change much); slices well in the past
+        // are final in the archive, so those are kept for 30 days
+        boolean finalized = endDate.isBefore(LocalDate.now().minusDays(ARCHIVE_DELAY_DAYS));
+        return loadColumns(cacheKey, variables, finalized ? ARCHIVE_FINAL_TTL_SECONDS : 3600,
+                missing -> fetchHistoricalData(latitude, longitude, startDate, endDate, missing));
+    }
 
+    private WeatherData fetchHistoricalData(double latitude, double longitude, LocalDate startDate,
+                                            LocalDate endDate, Set<WeatherVariable> variables) throws Exception {
         // Use proper historical API endpoint with Locale.US to ensure dots instead of commas
-        // Added soil_temperature_0cm to the hourly parameters
         String url = String.format(java.util.Locale.US,
-                "%s?latitude=%.4f&longitude=%.4f&start_date=%s&end_date=%s" +
-                        "&hourly=temperature_2m,wind_speed_10m,precipitation,surface_pressure,soil_temperature_0cm" +
-                        "&timezone=Europe/Warsaw",
-                HISTORICAL_URL, latitude, longitude,
+                "%s?latitude=%.4f&longitude=%.4f&start_date=%s&end_date=%s&hourly=%s&timezone=Europe/Warsaw",
+                historicalUrl, latitude, longitude,
                 startDate.format(DateTimeFormatter.ISO_LOCAL_DATE),
-                endDate.format(DateTimeFormatter.ISO_LOCAL_DATE)
+                endDate.format(DateTimeFormatter.ISO_LOCAL_DATE),
+                hourlyParameter(variables)
         );
 
-        System.out.println("Requesting historical data from URL: " + url);
-        String jsonResponse = makeHttpRequest(url);
-        WeatherData weatherData = parseWeatherResponse(jsonResponse);
+        LOG.debug("Requesting historical data from URL: {}", url);
+        return parseWeatherResponse(makeHttpRequest(url, Endpoint.ARCHIVE));
+    }
 
-        // Cache the data for 1 hour (historical data doesn't change much)
-        cacheService.cacheWeatherData(cacheKey, weatherData, 3600);
+    /**
+     * Pobiera kolumny fetcher'em (jednym zapytaniem do Open-Meteo).
+     */
+    @FunctionalInterface
+    private interface ColumnFetcher {
+        WeatherData fetch(Set<WeatherVariable> variables) throws Exception;
+    }
 
-        return weatherData;
+    /**
+     * Składa zmienne variables z osobnych wpisów cache (cacheKey_zmienna); jednym zapytaniem
+     * pobiera tylko zmienne, których w cache brakuje. Gdy kolumny z cache mają inną oś czasu
+     * niż świeżo pobrane, pobiera wszystkie zmienne od nowa.
+     */
+    private WeatherData loadColumns(String cacheKey, Set<WeatherVariable> variables, int ttlSeconds,
+                                    ColumnFetcher fetcher) throws Exception {
+        List<WeatherData> columns = new ArrayList<>(variables.size());
+        Set<WeatherVariable> missing = EnumSet.noneOf(WeatherVariable.class);
+        for (WeatherVariable variable : variables) {
+            WeatherData column = cacheService.getWeatherData(columnKey(cacheKey, variable));
+            if (column != null) {
+                columns.add(column);
+            } else {
+                missing.add(variable);
+            }
+        }
+        CACHED_COLUMNS.add(columns.size());
+        if (missing.isEmpty()) {
+            LOG.debug("Zwracam dane z cache: {} {}", cacheKey, variables);
+            WeatherData merged = WeatherData.mergeColumns(columns);
+            if (merged != null) {
+                return merged;
+            }
+            missing.addAll(variables);
+            columns.clear();
+        }
+
+        WeatherData fetched = fetcher.fetch(missing);
+        FETCHED_COLUMNS.add(missing.size());
+        for (WeatherVariable variable : missing) {
+            WeatherData column = fetched.column(variable);
+            cacheService.cacheWeatherData(columnKey(cacheKey, variable), column, ttlSeconds);
+            columns.add(column);
+        }
+        WeatherData merged = WeatherData.mergeColumns(columns);
+        if (merged != null) {
+            return merged;
+        }
+        if (missing.size() == variables.size()) {
+            throw new IllegalStateException("Kolumny odpowiedzi mają różne osie czasu: " + cacheKey);
+        }
+        // Cached columns are from an older time axis; refetch everything that was asked for
+        LOG.debug("Kolumny z cache nieaktualne, pobieram wszystkie: {}", cacheKey);
+        columns.clear();
+        fetched = fetcher.fetch(variables);
+        FETCHED_COLUMNS.add(variables.size());
+        for (WeatherVariable variable : variables) {
+            WeatherData column = fetched.column(variable);
+            cacheService.cacheWeatherData(columnKey(cacheKey, variable), column, ttlSeconds);
+            columns.add(column);
+        }
+        return WeatherData.mergeColumns(columns);
     }
 
-    public WeatherData getForecastData(double latitude, double longitude, int forecastDays) throws Exception {
+    private static String columnKey(String cacheKey, WeatherVariable variable) {
+        return cacheKey + "_" + variable.getApiName();
+    }
 
-        String cacheKey = String.format(java.util.Locale.US, "forecast_%.4f_%.4f_%d", latitude, longitude, forecastDays);
+    private static String hourlyParameter(Set<WeatherVariable> variables) {
+        return variables.stream().map(WeatherVariable::getApiName).collect(Collectors.joining(","));
+    }
 
-        // Check cache first
-        WeatherData cachedData = cacheService.getWeatherData(cacheKey);
-        if (cachedData != null) {
-            System.out.println("Zwracam dane prognozy z cache");
-            return cachedData;
+    /**
+     * Pobiera dane historyczne w częściach (miesiące lub kwartały) równolegle i skleja je w jedną
+     * serię uporządkowaną w czasie. Każdy fragment jest cache'owany i ponawiany niezależnie.
+     */
+    public WeatherData getHistoricalDataChunked(double latitude, double longitude,
+                                                LocalDate startDate, LocalDate endDate,
+                                                ChunkSize chunkSize) throws Exception {
+        return getHistoricalDataChunked(latitude, longitude, startDate, endDate, chunkSize, ALL_VARIABLES);
+    }
+
+    public WeatherData getHistoricalDataChunked(double latitude, double longitude,
+                                                LocalDate startDate, LocalDate endDate,
+                                                ChunkSize chunkSize, Set<WeatherVariable> variables)
+            throws Exception {
+        List<LocalDate[]> slices = splitRange(startDate, endDate, chunkSize);
+        if (slices.size() == 1) {
+            return getHistoricalData(latitude, longitude, startDate, endDate, variables);
         }
 
+        try {
+            return streamHistoricalData(latitude, longitude, startDate, endDate, chunkSize, variables,
+                    part -> { }).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Pobiera dane historyczne w częściach i przekazuje każdą z nich do onChunk w kolejności czasowej,
+     * gdy tylko ona i wszystkie wcześniejsze części są dostępne. Wywołania onChunk odbywają się
+     * na wątkach roboczych. Zwrócony future kończy się pełną, sklejoną serią.
+     */
+    public CompletableFuture<WeatherData> streamHistoricalData(double latitude, double longitude,
+                                                               LocalDate startDate, LocalDate endDate,
+                                                               ChunkSize chunkSize,
+                                                               Consumer<WeatherData> onChunk) {
+        return streamHistoricalData(latitude, longitude, startDate, endDate, chunkSize, ALL_VARIABLES, onChunk);
+    }
+
+    public CompletableFuture<WeatherData> streamHistoricalData(double latitude, double longitude,
+                                                               LocalDate startDate, LocalDate endDate,
+                                                               ChunkSize chunkSize, Set<WeatherVariable> variables,
+                                                               Consumer<WeatherData> onChunk) {
+        List<LocalDate[]> slices = chunkSize != null
+                ? splitRange(startDate, endDate, chunkSize)
+                : List.<LocalDate[]>of(new LocalDate[]{startDate, endDate});
+        LOG.info("Pobieranie danych historycznych w {} częściach", slices.size());
+
+        WeatherData[] parts = new WeatherData[slices.size()];
+        int[] nextToDeliver = {0};
+        CompletableFuture<WeatherData> result = new CompletableFuture<>();
+        List<CompletableFuture<WeatherData>> fetches = new ArrayList<>(slices.size());
+        for (LocalDate[] slice : slices) {
+            fetches.add(CompletableFuture.supplyAsync(RequestContext.wrap(
+                    () -> fetchSlice(latitude, longitude, slice[0], slice[1], variables)), chunkExecutor));
+        }
+
+        for (int i = 0; i < fetches.size(); i++) {
+            int index = i;
+            fetches.get(i).whenComplete((part, error) -> {
+                if (error != null) {
+                    // Fail fast: slices that have not started yet are skipped
+                    if (result.completeExceptionally(error)) {
+                        fetches.forEach(f -> f.cancel(false));
+                    }
+                    return;
+                }
+                // Hand out the completed prefix, so consumers always see time-ordered chunks
+                synchronized (parts) {
+                    parts[index] = part;
+                    while (nextToDeliver[0] < parts.length && parts[nextToDeliver[0]] != null) {
+                        onChunk.accept(parts[nextToDeliver[0]++]);
+                    }
+                    if (nextToDeliver[0] == parts.length) {
+                        result.complete(WeatherData.concat(Arrays.asList(parts)));
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    static List<LocalDate[]> splitRange(LocalDate startDate, LocalDate endDate, ChunkSize chunkSize) {
+        List<LocalDate[]> slices = new ArrayList<>();
+        LocalDate sliceStart = startDate;
+        while (!sliceStart.isAfter(endDate)) {
+            // Slices end on calendar month/quarter boundaries so their cache keys repeat between queries
+            LocalDate firstOfMonth = sliceStart.withDayOfMonth(1);
+            int monthOffset = (firstOfMonth.getMonthValue() - 1) % chunkSize.months;
+            LocalDate sliceEnd = firstOfMonth.minusMonths(monthOffset).plusMonths(chunkSize.months).minusDays(1);
+            if (sliceEnd.isAfter(endDate)) {
+                sliceEnd = endDate;
+            }
+            slices.add(new LocalDate[]{sliceStart, sliceEnd});
+            sliceStart = sliceEnd.plusDays(1);
+        }
+        return slices;
+    }
+
+    private WeatherData fetchSlice(double latitude, double longitude, LocalDate start, LocalDate end,
+                                   Set<WeatherVariable> variables) {
+        // Slices still queued behind the pool when the request is cancelled are skipped
+        RequestContext.checkCancelled();
+        try {
+            return getHistoricalData(latitude, longitude, start, end, variables);
+        } catch (Exception e) {
+            throw new CompletionException(new IOException("Nie udało się pobrać danych za okres " +
+                    start + " - " + end + ": " + e.getMessage(), e));
+        }
+    }
+
+    public WeatherData getForecastData(double latitude, double longitude, int forecastDays) throws Exception {
+        return getForecastData(latitude, longitude, forecastDays, ALL_VARIABLES);
+    }
+
+    /**
+     * Zwraca tylko zmienne variables. Po wygaśnięciu wpisu w cache pobierane są tylko godziny od bieżącej
+     * do końca horyzontu (start_hour/end_hour), a miniona część dnia jest przejmowana z poprzednio pobranej wersji.
+     */
+    public WeatherData getForecastData(double latitude, double longitude, int forecastDays,
+                                       Set<WeatherVariable> variables) throws Exception {
         // Ensure forecast days is within valid range (1-16)
         if (forecastDays < 1) forecastDays = 1;
         if (forecastDays > 16) forecastDays = 16;
 
-        // Added soil_temperature_0cm to the hourly parameters
+        String cacheKey = String.format(java.util.Locale.US, "forecast_%.4f_%.4f_%d", latitude, longitude, forecastDays);
+        return loadForecast(cacheKey, latitude, longitude, forecastDays, variables);
+    }
+
+    public ForecastUpdate refreshForecast(double latitude, double longitude, int forecastDays, WeatherData shown)
+            throws Exception {
+        return refreshForecast(latitude, longitude, forecastDays, ALL_VARIABLES, shown);
+    }
+
+    /**
+     * Zwraca prognozę zmiennych variables razem z godzinami zmienionymi względem shown, czyli wersji,
+     * którą wywołujący już wyświetla (null = wszystkie godziny nowe); do odświeżania otwartych wykresów.
+     */
+    public ForecastUpdate refreshForecast(double latitude, double longitude, int forecastDays,
+                                          Set<WeatherVariable> variables, WeatherData shown) throws Exception {
+        if (forecastDays < 1) forecastDays = 1;
+        if (forecastDays > 16) forecastDays = 16;
+
+        String cacheKey = String.format(java.util.Locale.US, "forecast_%.4f_%.4f_%d", latitude, longitude, forecastDays);
+        ForecastUpdate update = ForecastUpdate.between(shown,
+                loadForecast(cacheKey, latitude, longitude, forecastDays, variables));
+        CHANGED_HOURS.add(update.changedHours());
+        return update;
+    }
+
+    private WeatherData loadForecast(String cacheKey, double latitude, double longitude, int forecastDays,
+                                     Set<WeatherVariable> variables) throws Exception {
+        WeatherData previous = latestForecasts.get(cacheKey);
+
+        // Cache forecast columns for 30 minutes (changes more frequently)
+        WeatherData weatherData = loadColumns(cacheKey, variables, 1800, missing -> {
+            WeatherData fetched = hasColumns(previous, missing)
+                    ? fetchForecastIncrement(previous, latitude, longitude, forecastDays, missing) : null;
+            if (fetched == null) {
+                fetched = fetchForecast(latitude, longitude, forecastDays, missing);
+                FULL_REFRESHES.increment();
+            }
+            return fetched;
+        });
+
+        // Keep the other variables of the previous version, so a later increment can still use them
+        WeatherData latest = previous != null ? WeatherData.mergeColumns(List.of(previous, weatherData)) : null;
+        latestForecasts.put(cacheKey, latest != null ? latest : weatherData);
+        return weatherData;
+    }
+
+    private static boolean hasColumns(WeatherData data, Set<WeatherVariable> variables) {
+        if (data == null) {
+            return false;
+        }
+        int hours = data.getTimeEpochs().length;
+        for (WeatherVariable variable : variables) {
+            if (data.getValues(variable).length != hours) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private WeatherData fetchForecast(double latitude, double longitude, int forecastDays,
+                                      Set<WeatherVariable> variables) throws Exception {
         String url = String.format(java.util.Locale.US,
-                "%s?latitude=%.4f&longitude=%.4f&forecast_days=%d" +
-                        "&hourly=temperature_2m,wind_speed_10m,precipitation,surface_pressure,soil_temperature_0cm" +
-                        "&timezone=Europe/Warsaw",
-                FORECAST_URL, latitude, longitude, forecastDays
+                "%s?latitude=%.4f&longitude=%.4f&forecast_days=%d&hourly=%s&timezone=Europe/Warsaw",
+                forecastUrl, latitude, longitude, forecastDays, hourlyParameter(variables)
         );
 
-        System.out.println("Requesting forecast data from URL: " + url);
-        String jsonResponse = makeHttpRequest(url);
-        WeatherData weatherData = parseWeatherResponse(jsonResponse);
+        LOG.debug("Requesting forecast data from URL: {}", url);
+        String jsonResponse = makeHttpRequest(url, Endpoint.FORECAST);
+        return parseWeatherResponse(jsonResponse);
+    }
 
-        // Cache forecast data for 30 minutes (changes more frequently)
-        cacheService.cacheWeatherData(cacheKey, weatherData, 1800);
+    /**
+     * Pobiera godziny od bieżącej do końca horyzontu i scala je z poprzednią prognozą;
+     * null, gdy poprzednia wersja nie obejmuje minionych godzin dzisiejszego dnia.
+     * Pełne są w wyniku tylko kolumny variables.
+     */
+    private WeatherData fetchForecastIncrement(WeatherData previous, double latitude, double longitude,
+                                               int forecastDays, Set<WeatherVariable> variables) throws Exception {
+        // Forecast times are Warsaw local time, stored as if they were UTC (see WeatherData.getTimeEpochs)
+        LocalDateTime currentHour = LocalDateTime.now(FORECAST_ZONE).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime dayStart = currentHour.toLocalDate().atStartOfDay();
+        LocalDateTime lastHour = dayStart.plusDays(forecastDays).minusHours(1);
+        long[] previousTimes = previous.getTimeEpochs();
+        if (previousTimes.length == 0
+                || previousTimes[0] > dayStart.toEpochSecond(ZoneOffset.UTC)
+                || previousTimes[previousTimes.length - 1] < currentHour.minusHours(1).toEpochSecond(ZoneOffset.UTC)) {
+            return null;
+        }
 
-        return weatherData;
+        String url = String.format(java.util.Locale.US,
+                "%s?latitude=%.4f&longitude=%.4f&start_hour=%s&end_hour=%s&hourly=%s&timezone=Europe/Warsaw",
+                forecastUrl, latitude, longitude, HOUR_FORMAT.format(currentHour), HOUR_FORMAT.format(lastHour),
+                hourlyParameter(variables)
+        );
+
+        LOG.debug("Requesting forecast update from URL: {}", url);
+        WeatherData update = parseWeatherResponse(makeHttpRequest(url, Endpoint.FORECAST));
+        INCREMENTAL_REFRESHES.increment();
+        return WeatherData.mergeForecast(previous, update, dayStart.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Wykonuje zapytanie w ramach limitu endpointu. Odpowiedź 429/503 wstrzymuje cały endpoint
+     * na czas z Retry-After (albo rosnący czas, gdy nagłówka brak) i zapytanie jest ponawiane.
+     * Błędy połączenia i odpowiedzi 5xx są ponawiane z losowym opóźnieniem, o ile pozwala RETRY_BUDGET.
+     * Błąd, który przetrwał ponowienia, jest zapamiętywany w cache i to samo zapytanie kończy się nim
+     * od razu, bez odpytywania Open-Meteo: odrzucone przez API (4xx) na CLIENT_ERROR_TTL_SECONDS,
+     * a awarie i przekroczenia czasu na SERVER_ERROR_TTL_SECONDS.
+     */
+    private String makeHttpRequest(String url, Endpoint endpoint) throws IOException, ParseException {
+        String failureKey = "failure_" + endpoint.name().toLowerCase() + "_"
+                + UUID.nameUUIDFromBytes(url.getBytes(StandardCharsets.UTF_8));
+        String failure = cacheService.getFailure(failureKey);
+        if (failure != null) {
+            LOG.debug("Zapamiętany błąd, pomijam zapytanie: {}", url);
+            throw new IOException(failure);
+        }
+        try {
+            return requestWithRetries(url, endpoint);
+        } catch (IOException e) {
+            rememberFailure(failureKey, e);
+            throw e;
+        }
+    }
+
+    private void rememberFailure(String failureKey, IOException error) {
+        // A cancelled or interrupted request says nothing about the query (timeouts are subclasses)
+        if (error.getClass() == InterruptedIOException.class || Thread.currentThread().isInterrupted()
+                || RequestContext.isCancelled()) {
+            return;
+        }
+        int ttlSeconds;
+        if (error instanceof HttpStatusException e && e.status >= 400 && e.status < 500
+                && e.status != 408 && !e.isThrottled()) {
+            ttlSeconds = CLIENT_ERROR_TTL_SECONDS;
+            CLIENT_ERRORS_CACHED.increment();
+        } else {
+            ttlSeconds = SERVER_ERROR_TTL_SECONDS;
+            if (error instanceof HttpStatusException e && e.retryAfterNanos > 0) {
+                // Throttled past MAX_RETRY_AFTER_NANOS, e.g. a daily quota: wait as long as the server asked
+                ttlSeconds = (int) Math.max(ttlSeconds, Math.min(CLIENT_ERROR_TTL_SECONDS,
+                        TimeUnit.NANOSECONDS.toSeconds(e.retryAfterNanos)));
+            }
+            SERVER_ERRORS_CACHED.increment();
+        }
+        if (ttlSeconds > 0) {
+            cacheService.cacheFailure(failureKey, error.getMessage(), ttlSeconds);
+        }
+    }
+
+    private String requestWithRetries(String url, Endpoint endpoint) throws IOException, ParseException {
+        RETRY_BUDGET.deposit();
+        int failures = 0;
+        int throttles = 0;
+        while (true) {
+            try {
+                return hedgedRequest(url, endpoint);
+            } catch (HttpStatusException e) {
+                if (!e.isThrottled()) {
+                    if (e.status < 500) {
+                        throw e;
+                    }
+                    backOffOrThrow(e, ++failures);
+                    continue;
+                }
+                endpoint.throttled.increment();
+                throttles++;
+                long delay = e.retryAfterNanos >= 0
+                        ? e.retryAfterNanos
+                        : THROTTLED_BACKOFF_NANOS << (throttles - 1);
+                if (throttles >= THROTTLED_MAX_ATTEMPTS || delay > MAX_RETRY_AFTER_NANOS) {
+                    throw e;
+                }
+                endpoint.limiter.pause(delay);
+                LOG.warn("Limit zapytań Open-Meteo przekroczony, ponawiam za {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(delay));
+            } catch (IOException e) {
+                backOffOrThrow(e, ++failures);
+            }
+        }
+    }
+
+    private static void backOffOrThrow(IOException error, int failures) throws IOException {
+        if (failures >= MAX_ATTEMPTS || Thread.currentThread().isInterrupted() || RequestContext.isCancelled()) {
+            throw error;
+        }
+        if (!RETRY_BUDGET.tryWithdraw()) {
+            BUDGET_EXHAUSTED.increment();
+            throw error;
+        }
+        RETRIES.increment();
+        long delay = retryDelayNanos(failures);
+        LOG.warn("Błąd zapytania do Open-Meteo ({}), ponawiam za {} ms", error.getMessage(),
+                TimeUnit.NANOSECONDS.toMillis(delay));
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error;
+        }
+    }
+
+    // Full jitter: clients that failed together should not come back together
+    static long retryDelayNanos(int failures) {
+        return ThreadLocalRandom.current().nextLong(RETRY_BACKOFF_NANOS << failures);
+    }
+
+    /**
+     * Wysyła zapytanie, a gdy odpowiedź nie przyszła po czasie z percentyla HEDGE_PERCENTILE
+     * dotychczasowych zapytań do endpointu, wysyła drugie takie samo i zwraca pierwszą poprawną
+     * odpowiedź. Spóźnione zapytanie jest anulowane.
+     */
+    private String hedgedRequest(String url, Endpoint endpoint) throws IOException, ParseException {
+        acquirePermit(endpoint);
+        HttpGet primary = newRequest(url);
+        long hedgeDelay = hedgeDelayNanos(endpoint);
+        if (hedgeDelay < 0) {
+            return executeHttpRequest(primary, endpoint);
+        }
+
+        HttpGet hedge = null;
+        CompletableFuture<String> first = startAttempt(primary, endpoint, false);
+        try {
+            try {
+                return first.get(hedgeDelay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // A failed request costs more than a slow one: hedges leave half the budget for retries
+                if (!RETRY_BUDGET.tryWithdraw(RETRY_BUDGET_SIZE / 2)) {
+                    BUDGET_EXHAUSTED.increment();
+                    return first.get();
+                }
+            }
+            HEDGES.increment();
+            hedge = newRequest(url);
+            return firstSuccessful(first, startAttempt(hedge, endpoint, true)).get();
+        } catch (ExecutionException e) {
+            throw failure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na odpowiedź Open-Meteo");
+        } finally {
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    private static long hedgeDelayNanos(Endpoint endpoint) {
+        if (HEDGE_PERCENTILE <= 0 || endpoint.fetchTime.getCount() < HEDGE_MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(HEDGE_MIN_DELAY_NANOS, endpoint.fetchTime.quantile(HEDGE_PERCENTILE));
+    }
+
+    private CompletableFuture<String> startAttempt(HttpGet request, Endpoint endpoint, boolean acquirePermit) {
+        return CompletableFuture.supplyAsync(RequestContext.wrap(() -> {
+            try {
+                if (acquirePermit) {
+                    acquirePermit(endpoint);
+                }
+                if (request.isCancelled()) {
+                    throw new InterruptedIOException("Zapytanie anulowane");
+                }
+                return executeHttpRequest(request, endpoint);
+            } catch (IOException | ParseException e) {
+                throw new CompletionException(e);
+            }
+        }), ATTEMPT_EXECUTOR);
     }
 
-    private String makeHttpRequest(String url) throws IOException, ParseException {
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url);
-            request.setHeader("Accept", "application/json");
-            request.setHeader("User-Agent", "WeatherApp/1.0");
+    // Completes with the first successful body, or with an error once both attempts have failed
+    private static CompletableFuture<String> firstSuccessful(CompletableFuture<String> primary,
+                                                             CompletableFuture<String> hedge) {
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((body, error) -> settle(winner, body, error, failures));
+        hedge.whenComplete((body, error) -> {
+            if (settle(winner, body, error, failures)) {
+                HEDGE_WINS.increment();
+            }
+        });
+        return winner;
+    }
 
-            String responseBody = client.execute(request, response -> {
+    private static boolean settle(CompletableFuture<String> winner, String body, Throwable error,
+                                  AtomicInteger failures) {
+        if (error == null) {
+            return winner.complete(body);
+        }
+        if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(error);
+        }
+        return false;
+    }
+
+    private static IOException failure(ExecutionException e) throws ParseException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof ParseException parse) {
+            throw parse;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        return new IOException(cause);
+    }
+
+    // A request cancelled while queued leaves with CancellationException and without a permit
+    private static void acquirePermit(Endpoint endpoint) throws InterruptedIOException {
+        try {
+            endpoint.limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Przerwano oczekiwanie na limit zapytań");
+        }
+    }
+
+    private static HttpGet newRequest(String url) {
+        HttpGet request = new HttpGet(url);
+        request.setHeader("Accept", "application/json");
+        request.setHeader("User-Agent", "WeatherApp/1.0");
+        return request;
+    }
+
+    private String executeHttpRequest(HttpGet request, Endpoint endpoint) throws IOException, ParseException {
+        WeatherEvents.UpstreamRequest event = new WeatherEvents.UpstreamRequest();
+        event.begin();
+        long start = System.nanoTime();
+        boolean[] answered = {false};
+        String responseBody = null;
+        // Cancelling the request aborts the connection, also while blocked reading the response
+        try (RequestContext.Registration abort = RequestContext.cancellation().onCancel(request::cancel)) {
+            if (request.isCancelled()) {
+                throw new InterruptedIOException("Zapytanie anulowane");
+            }
+            responseBody = httpClient.execute(request, response -> {
                 int statusCode = response.getCode();
+                answered[0] = true;
+                event.status = statusCode;
+                endpoint.requests.increment(statusCode);
 
                 if (statusCode != 200) {
-                    System.err.println("HTTP Error Response: " + statusCode + " - " + response.getReasonPhrase());
-                    throw new IOException("HTTP Error: " + statusCode + " - " +
-                            response.getReasonPhrase());
+                    Header retryAfter = response.getFirstHeader("Retry-After");
+                    String reason = response.getReasonPhrase();
+                    if (statusCode >= 400 && statusCode < 500 && response.getEntity() != null) {
+                        // Open-Meteo explains rejected queries in {"error": true, "reason": "..."}
+                        reason = apiErrorReason(EntityUtils.toString(response.getEntity()), reason);
+                    }
+                    LOG.warn("HTTP Error Response: {} - {}", statusCode, reason);
+                    throw new HttpStatusException(statusCode, reason,
+                            retryAfterNanos(retryAfter != null ? retryAfter.getValue() : null));
                 }
 
                 String body = EntityUtils.toString(response.getEntity());
@@ -117,15 +937,81 @@ public class WeatherService {
 
                 return body;
             });
+        } catch (IOException e) {
+            if (!answered[0] && !request.isCancelled()) {
+                endpoint.requests.increment(0); // connect/read failure, no status to record
+            }
+            throw e;
+        } finally {
+            // A cancelled hedge loser still counts: it took at least this long
+            endpoint.fetchTime.recordSince(start);
+            if (event.shouldCommit()) {
+                event.requestId = RequestContext.current();
+                event.endpoint = endpoint.name().toLowerCase();
+                event.bytes = responseBody != null ? responseBody.length() : 0;
+                event.commit();
+            }
+        }
+
+        return responseBody;
+    }
+
+    private String apiErrorReason(String body, String fallback) {
+        try {
+            JsonObject root = gson.fromJson(body, JsonObject.class);
+            return root != null && root.has("reason") ? root.get("reason").getAsString() : fallback;
+        } catch (RuntimeException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Czas z nagłówka Retry-After (liczba sekund albo data HTTP) w nanosekundach; -1, gdy brak lub błędny.
+     */
+    static long retryAfterNanos(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toNanos());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    public CacheService getCacheService() {
+        return cacheService;
+    }
 
-            return responseBody;
+    public void close() {
+        chunkExecutor.shutdownNow();
+        if (archiveStore != null) {
+            archiveStore.close();
         }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.warn("Błąd zamykania klienta HTTP: {}", e.getMessage());
+        }
+        cacheService.close();
     }
 
-    private WeatherData parseWeatherResponse(String jsonResponse) {
+    WeatherData parseWeatherResponse(String jsonResponse) {
+        RequestContext.checkCancelled();
+        WeatherEvents.Parse event = new WeatherEvents.Parse();
+        event.begin();
+        long start = System.nanoTime();
+        WeatherData parsed = null;
         try {
-            System.out.println("Parsing JSON response...");
+            LOG.debug("Parsing JSON response ({} znaków)", jsonResponse.length());
             JsonObject root = gson.fromJson(jsonResponse, JsonObject.class);
+            // Building the tree is most of the work; skip the columns if the chart was superseded meanwhile
+            RequestContext.checkCancelled();
 
             // Check for API errors
             if (root.has("error")) {
@@ -150,22 +1036,25 @@ public class WeatherService {
                     times.add(timeArray.get(i).getAsString());
                 }
                 weatherData.setTimes(times);
-                System.out.println("Parsed " + times.size() + " time entries");
+                LOG.debug("Parsed {} time entries", times.size());
             }
 
+            // Missing measurements stay null (NaN in getValues()); a placeholder would be charted and stored
+            // as if it had been measured
+
             // Parse temperature data
             JsonArray tempArray = hourly.getAsJsonArray("temperature_2m");
             if (tempArray != null) {
                 List<Double> temperatures = new ArrayList<>();
                 for (int i = 0; i < tempArray.size(); i++) {
                     if (tempArray.get(i).isJsonNull()) {
-                        temperatures.add(0.0);
+                        temperatures.add(null);
                     } else {
                         temperatures.add(tempArray.get(i).getAsDouble());
                     }
                 }
                 weatherData.setTemperatures(temperatures);
-                System.out.println("Parsed " + temperatures.size() + " temperature entries");
+                LOG.debug("Parsed {} temperature entries", temperatures.size());
             }
 
             // Parse wind speed data
@@ -174,13 +1063,13 @@ public class WeatherService {
                 List<Double> windSpeeds = new ArrayList<>();
                 for (int i = 0; i < windArray.size(); i++) {
                     if (windArray.get(i).isJsonNull()) {
-                        windSpeeds.add(0.0);
+                        windSpeeds.add(null);
                     } else {
                         windSpeeds.add(windArray.get(i).getAsDouble());
                     }
                 }
                 weatherData.setWindSpeeds(windSpeeds);
-                System.out.println("Parsed " + windSpeeds.size() + " wind speed entries");
+                LOG.debug("Parsed {} wind speed entries", windSpeeds.size());
             }
 
             // Parse precipitation data
@@ -189,13 +1078,13 @@ public class WeatherService {
                 List<Double> rainfall = new ArrayList<>();
                 for (int i = 0; i < rainArray.size(); i++) {
                     if (rainArray.get(i).isJsonNull()) {
-                        rainfall.add(0.0);
+                        rainfall.add(null);
                     } else {
                         rainfall.add(rainArray.get(i).getAsDouble());
                     }
                 }
                 weatherData.setRainfall(rainfall);
-                System.out.println("Parsed " + rainfall.size() + " precipitation entries");
+                LOG.debug("Parsed {} precipitation entries", rainfall.size());
             }
 
             // Parse pressure data
@@ -204,13 +1093,13 @@ public class WeatherService {
                 List<Double> pressure = new ArrayList<>();
                 for (int i = 0; i < pressureArray.size(); i++) {
                     if (pressureArray.get(i).isJsonNull()) {
-                        pressure.add(1013.25); // Standard atmospheric pressure
+                        pressure.add(null);
                     } else {
                         pressure.add(pressureArray.get(i).getAsDouble());
                     }
                 }
                 weatherData.setPressure(pressure);
-                System.out.println("Parsed " + pressure.size() + " pressure entries");
+                LOG.debug("Parsed {} pressure entries", pressure.size());
             }
 
             // Parse soil temperature data - THIS WAS MISSING!
@@ -219,26 +1108,45 @@ public class WeatherService {
                 List<Double> soilTemperature = new ArrayList<>();
                 for (int i = 0; i < soilTempArray.size(); i++) {
                     if (soilTempArray.get(i).isJsonNull()) {
-                        soilTemperature.add(0.0);
+                        soilTemperature.add(null);
                     } else {
                         soilTemperature.add(soilTempArray.get(i).getAsDouble());
                     }
                 }
                 weatherData.setSoilTemperature(soilTemperature);
-                System.out.println("Parsed " + soilTemperature.size() + " soil temperature entries");
+                LOG.debug("Parsed {} soil temperature entries", soilTemperature.size());
             } else {
                 // If soil temperature data is not available, create an empty list to prevent null pointer
                 weatherData.setSoilTemperature(new ArrayList<>());
-                System.out.println("No soil temperature data available, using empty list");
+                LOG.debug("No soil temperature data available, using empty list");
             }
 
-            System.out.println("Successfully parsed weather data");
+            LOG.debug("Successfully parsed weather data");
+            parsed = weatherData;
             return weatherData;
 
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("Błąd podczas parsowania odpowiedzi JSON: " + e.getMessage());
-            e.printStackTrace();
+            PARSE_ERRORS.increment();
+            LOG.error("Błąd podczas parsowania odpowiedzi JSON", e);
             throw new RuntimeException("Nie można sparsować danych pogodowych: " + e.getMessage());
+        } finally {
+            PARSE_TIME.recordSince(start);
+            if (event.shouldCommit()) {
+                event.requestId = RequestContext.current();
+                event.bytes = jsonResponse != null ? jsonResponse.length() : 0;
+                if (parsed != null) {
+                    event.points = parsed.getTimes() != null ? parsed.getTimes().size() : 0;
+                    for (WeatherVariable variable : WeatherVariable.values()) {
+                        List<Double> column = variable.values(parsed);
+                        if (column != null && !column.isEmpty()) {
+                            event.variables++;
+                        }
+                    }
+                }
+                event.commit();
+            }
         }
     }
 }
\ No newline at end of file
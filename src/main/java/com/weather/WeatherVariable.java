@@ -0,0 +1,50 @@
+package com.weather;
+
+import java.util.List;
+
+/**
+ * Zmienne godzinowe pobierane z Open-Meteo wraz z nazwą parametru API i opisem do wykresów.
+ */
+public enum WeatherVariable {
+    TEMPERATURE("temperature_2m", "Temperatura (°C)"),
+    WIND_SPEED("wind_speed_10m", "Prędkość wiatru (km/h)"),
+    PRECIPITATION("precipitation", "Opady (mm)"),
+    PRESSURE("surface_pressure", "Ciśnienie (hPa)"),
+    SOIL_TEMPERATURE("soil_temperature_0cm", "Temperatura gleby (°C)");
+
+    private final String apiName;
+    private final String label;
+
+    WeatherVariable(String apiName, String label) {
+        this.apiName = apiName;
+        this.label = label;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<Double> values(WeatherData data) {
+        return switch (this) {
+            case TEMPERATURE -> data.getTemperatures();
+            case WIND_SPEED -> data.getWindSpeeds();
+            case PRECIPITATION -> data.getRainfall();
+            case PRESSURE -> data.getPressure();
+            case SOIL_TEMPERATURE -> data.getSoilTemperature();
+        };
+    }
+
+    public void setValues(WeatherData data, List<Double> values) {
+        switch (this) {
+            case TEMPERATURE -> data.setTemperatures(values);
+            case WIND_SPEED -> data.setWindSpeeds(values);
+            case PRECIPITATION -> data.setRainfall(values);
+            case PRESSURE -> data.setPressure(values);
+            case SOIL_TEMPERATURE -> data.setSoilTemperature(values);
+        }
+    }
+}
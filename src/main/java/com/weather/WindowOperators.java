@@ -0,0 +1,176 @@
+package com.weather;
+
+/**
+ * Przyrostowe operatory okna przesuwnego (suma, średnia, min/max, wariancja, różnica) dla kolumn
+ * WeatherData. Okno jest kroczące wstecz i liczone w próbkach (dla danych godzinowych: w godzinach),
+ * out[i] obejmuje in[i - window + 1 .. i]. Każdy operator działa w O(n) niezależnie od długości okna
+ * i nie alokuje pamięci, jeśli wywołujący poda tablice wynikowe (i bufor kolejki dla min/max).
+ * Wartości NaN są pomijane; gdy okno nie zawiera żadnej wartości, wynikiem jest NaN.
+ */
+public final class WindowOperators {
+
+    private WindowOperators() {
+    }
+
+    public static double[] rollingSum(double[] in, int window, double[] out) {
+        checkArguments(in, window, out);
+        // Compensated (Kahan) running sum, so adding and removing values does not accumulate drift
+        double sum = 0;
+        double compensation = 0;
+        int count = 0;
+        for (int i = 0; i < in.length; i++) {
+            double added = in[i];
+            if (added == added) {
+                double y = added - compensation;
+                double t = sum + y;
+                compensation = (t - sum) - y;
+                sum = t;
+                count++;
+            }
+            int leaving = i - window;
+            if (leaving >= 0 && in[leaving] == in[leaving]) {
+                double y = -in[leaving] - compensation;
+                double t = sum + y;
+                compensation = (t - sum) - y;
+                sum = t;
+                count--;
+            }
+            out[i] = count > 0 ? sum : Double.NaN;
+        }
+        return out;
+    }
+
+    public static double[] rollingMean(double[] in, int window, double[] out) {
+        checkArguments(in, window, out);
+        double sum = 0;
+        double compensation = 0;
+        int count = 0;
+        for (int i = 0; i < in.length; i++) {
+            double added = in[i];
+            if (added == added) {
+                double y = added - compensation;
+                double t = sum + y;
+                compensation = (t - sum) - y;
+                sum = t;
+                count++;
+            }
+            int leaving = i - window;
+            if (leaving >= 0 && in[leaving] == in[leaving]) {
+                double y = -in[leaving] - compensation;
+                double t = sum + y;
+                compensation = (t - sum) - y;
+                sum = t;
+                count--;
+            }
+            out[i] = count > 0 ? sum / count : Double.NaN;
+        }
+        return out;
+    }
+
+    /**
+     * Wariancja (populacyjna) w oknie, aktualizowana algorytmem Welforda przy dodawaniu i usuwaniu próbek.
+     */
+    public static double[] rollingVariance(double[] in, int window, double[] out) {
+        checkArguments(in, window, out);
+        double mean = 0;
+        double m2 = 0;
+        int count = 0;
+        for (int i = 0; i < in.length; i++) {
+            double added = in[i];
+            if (added == added) {
+                count++;
+                double delta = added - mean;
+                mean += delta / count;
+                m2 += delta * (added - mean);
+            }
+            int leaving = i - window;
+            if (leaving >= 0 && in[leaving] == in[leaving]) {
+                double removed = in[leaving];
+                count--;
+                if (count == 0) {
+                    mean = 0;
+                    m2 = 0;
+                } else {
+                    double delta = removed - mean;
+                    mean -= delta / count;
+                    m2 -= delta * (removed - mean);
+                }
+            }
+            out[i] = count > 0 ? Math.max(0, m2 / count) : Double.NaN;
+        }
+        return out;
+    }
+
+    public static double[] rollingMin(double[] in, int window, double[] out) {
+        return rollingExtreme(in, window, out, new int[window], false);
+    }
+
+    public static double[] rollingMax(double[] in, int window, double[] out) {
+        return rollingExtreme(in, window, out, new int[window], true);
+    }
+
+    /**
+     * Wersja bez alokacji: deque to bufor roboczy o długości co najmniej window.
+     */
+    public static double[] rollingMin(double[] in, int window, double[] out, int[] deque) {
+        return rollingExtreme(in, window, out, deque, false);
+    }
+
+    public static double[] rollingMax(double[] in, int window, double[] out, int[] deque) {
+        return rollingExtreme(in, window, out, deque, true);
+    }
+
+    /**
+     * Monotonic deque of indices kept in a ring buffer: values are increasing (min) or
+     * decreasing (max) from head to tail, so the head is always the extreme of the window.
+     */
+    private static double[] rollingExtreme(double[] in, int window, double[] out, int[] deque, boolean max) {
+        checkArguments(in, window, out);
+        if (deque.length < window) {
+            throw new IllegalArgumentException("Bufor kolejki krótszy niż okno");
+        }
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < in.length; i++) {
+            if (size > 0 && deque[head] <= i - window) {
+                head = (head + 1) % window;
+                size--;
+            }
+            double v = in[i];
+            if (v == v) {
+                while (size > 0) {
+                    double last = in[deque[(head + size - 1) % window]];
+                    if (max ? last <= v : last >= v) {
+                        size--;
+                    } else {
+                        break;
+                    }
+                }
+                deque[(head + size) % window] = i;
+                size++;
+            }
+            out[i] = size > 0 ? in[deque[head]] : Double.NaN;
+        }
+        return out;
+    }
+
+    /**
+     * out[i] = in[i] - in[i - lag], np. tendencja ciśnienia 3 h dla lag = 3.
+     */
+    public static double[] difference(double[] in, int lag, double[] out) {
+        checkArguments(in, lag, out);
+        for (int i = 0; i < in.length; i++) {
+            out[i] = i >= lag ? in[i] - in[i - lag] : Double.NaN;
+        }
+        return out;
+    }
+
+    private static void checkArguments(double[] in, int window, double[] out) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Okno musi mieć co najmniej 1 próbkę: " + window);
+        }
+        if (out.length < in.length) {
+            throw new IllegalArgumentException("Tablica wynikowa krótsza niż dane wejściowe");
+        }
+    }
+}
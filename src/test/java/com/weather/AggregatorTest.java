@@ -0,0 +1,43 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AggregatorTest {
+
+    private static double nearestRank(double[] sorted, double q) {
+        int n = sorted.length;
+        return sorted[Math.min(n - 1, Math.max(0, (int) Math.ceil(q * n) - 1))];
+    }
+
+    @Test
+    void percentilesMatchSortedValues() {
+        Random random = new Random(42);
+        long start = 1_704_067_200L; // 2024-01-01T00:00Z
+        int hours = 24 * 366;
+        long[] times = new long[hours];
+        double[] values = new double[hours];
+        for (int i = 0; i < hours; i++) {
+            times[i] = start + i * 3600L;
+            // Coarse values repeat, as rounded measurements do; every 50th hour is missing
+            values[i] = i % 50 == 7 ? Double.NaN : Math.round(random.nextGaussian() * 40) / 4.0;
+        }
+
+        for (Aggregator.Period period : Aggregator.Period.values()) {
+            Rollup rollup = Aggregator.rollup(times, values, period);
+            int[] offsets = Aggregator.periodOffsets(times, period);
+            for (int p = 0; p < rollup.getCounts().length; p++) {
+                double[] sorted = Arrays.stream(values, offsets[p], offsets[p + 1])
+                        .filter(v -> !Double.isNaN(v)).sorted().toArray();
+                assertEquals(sorted.length, rollup.getCounts()[p]);
+                assertEquals(nearestRank(sorted, 0.10), rollup.getP10()[p], period + " " + p);
+                assertEquals(nearestRank(sorted, 0.50), rollup.getP50()[p], period + " " + p);
+                assertEquals(nearestRank(sorted, 0.90), rollup.getP90()[p], period + " " + p);
+            }
+        }
+    }
+}
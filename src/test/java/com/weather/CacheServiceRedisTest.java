@@ -0,0 +1,52 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test na prawdziwych serwerach Redis, uruchamiany tylko z -Dweather.test.redis=host:port[,host:port...].
+ */
+@EnabledIfSystemProperty(named = "weather.test.redis", matches = ".+")
+class CacheServiceRedisTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsEntriesAndFailuresAcrossShards() {
+        String nodes = System.getProperty("weather.test.redis");
+        CacheService cache = new CacheService(nodes, tempDir.toString(), 2);
+        try {
+            assertTrue(cache.isRedisAvailable(), "Redis niedostępny: " + nodes);
+            // Unique keys, so the test does not depend on (or clear) what the servers already hold
+            String prefix = "test_" + UUID.randomUUID() + "_";
+            for (int k = 0; k < 100; k++) {
+                WeatherData data = new WeatherData();
+                data.setTimes(List.of("2024-01-01T00:00"));
+                data.setTemperatures(List.of((double) k));
+                cache.cacheWeatherData(prefix + k, data, 60);
+            }
+            for (int k = 0; k < 100; k++) {
+                WeatherData data = cache.getWeatherData(prefix + k);
+                assertNotNull(data);
+                assertEquals(k, data.getTemperatures().get(0));
+            }
+            assertNull(cache.getWeatherData(prefix + "missing"));
+
+            cache.cacheFailure(prefix + "failure", "Brak danych", 60);
+            assertEquals("Brak danych", cache.getFailure(prefix + "failure"));
+        } finally {
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheServiceTest {
+
+    private static final int KEYS = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private static WeatherData sample(int k) {
+        WeatherData data = new WeatherData();
+        data.setTimes(List.of("2024-01-01T00:00"));
+        data.setTemperatures(List.of((double) k));
+        return data;
+    }
+
+    private static void assertAllReadable(CacheService cache) {
+        for (int k = 0; k < KEYS; k++) {
+            WeatherData data = cache.getWeatherData("key_" + k);
+            assertNotNull(data, "brak klucza key_" + k);
+            assertEquals(k, data.getTemperatures().get(0));
+        }
+    }
+
+    @Test
+    void replicaServesReadsWhenPrimaryRedisNodeIsDown() throws IOException {
+        try (FakeRedis first = new FakeRedis(); FakeRedis second = new FakeRedis()) {
+            CacheService cache = new CacheService(first.endpoint() + "," + second.endpoint(),
+                    tempDir.toString(), 2);
+            try {
+                assertTrue(cache.isRedisAvailable());
+                for (int k = 0; k < KEYS; k++) {
+                    cache.cacheWeatherData("key_" + k, sample(k), 600);
+                }
+                assertEquals(KEYS, first.data.size());
+                assertEquals(KEYS, second.data.size());
+
+                // Roughly half of the keys have the killed node as their primary
+                first.kill();
+                assertAllReadable(cache);
+            } finally {
+                cache.close();
+            }
+        }
+    }
+
+    @Test
+    void keysAreShardedWithoutReplication() throws IOException {
+        try (FakeRedis first = new FakeRedis(); FakeRedis second = new FakeRedis()) {
+            CacheService cache = new CacheService(first.endpoint() + "," + second.endpoint(),
+                    tempDir.toString(), 1);
+            try {
+                for (int k = 0; k < KEYS; k++) {
+                    cache.cacheWeatherData("key_" + k, sample(k), 600);
+                }
+                assertEquals(KEYS, first.data.size() + second.data.size());
+                assertTrue(first.data.size() > KEYS / 4 && second.data.size() > KEYS / 4);
+                assertAllReadable(cache);
+            } finally {
+                cache.close();
+            }
+        }
+    }
+
+    @Test
+    void replicaDirectoryServesReadsWhenPrimaryCopyIsGone() throws IOException {
+        Path first = tempDir.resolve("a");
+        Path second = tempDir.resolve("b");
+        CacheService cache = new CacheService("", first + "," + second, 2);
+        for (int k = 0; k < KEYS; k++) {
+            cache.cacheWeatherData("key_" + k, sample(k), 600);
+        }
+        assertEquals(KEYS, countFiles(first));
+        assertEquals(KEYS, countFiles(second));
+
+        try (Stream<Path> files = Files.list(first)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        assertAllReadable(cache);
+    }
+
+    @Test
+    void expiredFileEntryIsDeleted() throws IOException {
+        CacheService cache = new CacheService("", tempDir.toString(), 1);
+        cache.cacheWeatherData("key", sample(1), -1);
+        assertEquals(1, countFiles(tempDir));
+        assertNull(cache.getWeatherData("key"));
+        assertEquals(0, countFiles(tempDir));
+    }
+
+    @Test
+    void failureRememberedDuringRedisOutageIsRead() throws IOException {
+        try (FakeRedis redis = new FakeRedis()) {
+            CacheService cache = new CacheService(redis.endpoint(), tempDir.toString(), 1);
+            try {
+                assertTrue(cache.isRedisAvailable());
+                redis.kill();
+                cache.cacheFailure("key", "HTTP 500", 60);
+                assertEquals(1, countFiles(tempDir));
+                assertEquals("HTTP 500", cache.getFailure("key"));
+            } finally {
+                cache.close();
+            }
+        }
+    }
+
+    @Test
+    void expiredFailureFileIsDeleted() throws IOException {
+        CacheService cache = new CacheService("", tempDir.toString(), 1);
+        cache.cacheFailure("key", "HTTP 500", -1);
+        assertEquals(1, countFiles(tempDir));
+        assertNull(cache.getFailure("key"));
+        assertEquals(0, countFiles(tempDir));
+
+        cache.cacheFailure("key", "HTTP 500", 60);
+        assertEquals("HTTP 500", cache.getFailure("key"));
+        assertEquals(1, countFiles(tempDir));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
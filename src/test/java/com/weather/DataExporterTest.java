@@ -0,0 +1,53 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DataExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static WeatherData temperatureOnly() {
+        WeatherData data = new WeatherData();
+        data.setTimes(List.of("2024-01-01T00:00", "2024-01-01T01:00"));
+        data.setTemperatures(Arrays.asList(-1.5, null));
+        return data;
+    }
+
+    @Test
+    void textExportHasOnlyPresentColumns() throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        DataExporter.export(temperatureOnly(), file, DataExporter.Format.CSV, (done, total) -> { }, () -> false);
+
+        assertEquals(List.of("Czas," + WeatherVariable.TEMPERATURE.getLabel(),
+                "2024-01-01T00:00,-1.50", "2024-01-01T01:00,"), Files.readAllLines(file));
+    }
+
+    @Test
+    void binaryExportHasOnlyPresentColumns() throws IOException {
+        Path file = tempDir.resolve("data.wxb");
+        DataExporter.export(temperatureOnly(), file, DataExporter.Format.BINARY, (done, total) -> { }, () -> false);
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        buffer.position(4);
+        assertEquals(2, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        assertEquals(WeatherVariable.TEMPERATURE.getApiName(), new String(name));
+        buffer.position(buffer.position() + 2 * Long.BYTES);
+        assertEquals(-1.5, buffer.getDouble());
+        assertEquals(Double.NaN, buffer.getDouble());
+        assertEquals(0, buffer.remaining());
+    }
+}
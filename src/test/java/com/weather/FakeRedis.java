@@ -0,0 +1,128 @@
+package com.weather;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Minimalny serwer RESP2 w procesie testu: PING, GET, SETEX, DBSIZE, KEYS (prefiks*), DEL;
+ * pozostałe polecenia odpowiadają +OK. kill() zamyka port i połączenia jak awaria węzła.
+ */
+final class FakeRedis implements AutoCloseable {
+
+    final Map<String, String> data = new ConcurrentHashMap<>();
+    private final ServerSocket server;
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private volatile boolean killed;
+
+    FakeRedis() throws IOException {
+        server = new ServerSocket(0);
+        Thread.ofVirtual().start(() -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    clients.add(socket);
+                    Thread.ofVirtual().start(() -> serve(socket));
+                }
+            } catch (IOException e) {
+                // Closed by kill()
+            }
+        });
+    }
+
+    String endpoint() {
+        return "localhost:" + server.getLocalPort();
+    }
+
+    void kill() throws IOException {
+        // A connection accepted but not yet in clients is dropped on its next command
+        killed = true;
+        server.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        kill();
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String line;
+            while ((line = readLine(in)) != null && !killed) {
+                int count = Integer.parseInt(line.substring(1));
+                List<String> args = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int length = Integer.parseInt(readLine(in).substring(1));
+                    args.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+                    in.readNBytes(2);
+                }
+                out.write(execute(args).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client went away
+        }
+    }
+
+    private String execute(List<String> args) {
+        switch (args.get(0).toUpperCase()) {
+            case "PING":
+                return "+PONG\r\n";
+            case "GET":
+                String value = data.get(args.get(1));
+                return value == null ? "$-1\r\n" : bulk(value);
+            case "SETEX":
+                data.put(args.get(1), args.get(3));
+                return "+OK\r\n";
+            case "DBSIZE":
+                return ":" + data.size() + "\r\n";
+            case "DEL":
+                int removed = 0;
+                for (String key : args.subList(1, args.size())) {
+                    if (data.remove(key) != null) {
+                        removed++;
+                    }
+                }
+                return ":" + removed + "\r\n";
+            case "KEYS":
+                String prefix = args.get(1).replace("*", "");
+                List<String> keys = data.keySet().stream().filter(key -> key.startsWith(prefix)).toList();
+                StringBuilder reply = new StringBuilder("*" + keys.size() + "\r\n");
+                keys.forEach(key -> reply.append(bulk(key)));
+                return reply.toString();
+            default:
+                return "+OK\r\n";
+        }
+    }
+
+    private static String bulk(String value) {
+        return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                in.read();
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+}
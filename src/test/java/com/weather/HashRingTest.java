@@ -0,0 +1,114 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    private static HashRing<String> ring(int nodes) {
+        HashRing<String> ring = new HashRing<>(512);
+        for (int i = 0; i < nodes; i++) {
+            ring.add(node(i), node(i));
+        }
+        return ring;
+    }
+
+    private static String node(int i) {
+        return "localhost:" + (6379 + i);
+    }
+
+    private static String key(int k) {
+        return "historical_" + k;
+    }
+
+    private static String[] owners(HashRing<String> ring) {
+        String[] owners = new String[KEYS];
+        for (int k = 0; k < KEYS; k++) {
+            owners[k] = ring.nodeFor(key(k));
+        }
+        return owners;
+    }
+
+    @Test
+    void virtualNodesBalanceKeys() {
+        for (int nodes : new int[] {3, 5, 8}) {
+            Map<String, Integer> load = new HashMap<>();
+            for (String owner : owners(ring(nodes))) {
+                load.merge(owner, 1, Integer::sum);
+            }
+            assertEquals(nodes, load.size());
+            double mean = (double) KEYS / nodes;
+            for (Map.Entry<String, Integer> entry : load.entrySet()) {
+                assertEquals(mean, entry.getValue(), mean * 0.15, nodes + " węzłów: " + load);
+            }
+        }
+    }
+
+    @Test
+    void joiningNodeTakesAboutOneNthOfKeys() {
+        HashRing<String> ring = ring(4);
+        String[] before = owners(ring);
+        ring.add(node(4), node(4));
+
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            String now = ring.nodeFor(key(k));
+            if (!now.equals(before[k])) {
+                moved++;
+                assertEquals(node(4), now, "klucz przeniesiony między starymi węzłami");
+            }
+        }
+        assertEquals(KEYS / 5.0, moved, KEYS * 0.04);
+    }
+
+    @Test
+    void leavingNodeMovesOnlyItsKeys() {
+        HashRing<String> ring = ring(5);
+        String[] before = owners(ring);
+        ring.remove(node(2));
+
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            String now = ring.nodeFor(key(k));
+            if (!now.equals(before[k])) {
+                moved++;
+                assertEquals(node(2), before[k], "przeniesiony klucz innego węzła");
+            }
+        }
+        assertEquals(KEYS / 5.0, moved, KEYS * 0.04);
+    }
+
+    @Test
+    void replicasAreDistinctSuccessors() {
+        HashRing<String> ring = ring(3);
+        for (int k = 0; k < 1_000; k++) {
+            List<String> nodes = ring.nodesFor(key(k), 2);
+            assertEquals(2, nodes.size());
+            assertEquals(ring.nodeFor(key(k)), nodes.get(0));
+            assertNotEquals(nodes.get(0), nodes.get(1));
+
+            // Without the primary its first replica owns the key
+            HashRing<String> reduced = ring(3);
+            reduced.remove(nodes.get(0));
+            assertEquals(nodes.get(1), reduced.nodeFor(key(k)));
+        }
+        assertEquals(3, ring.nodesFor(key(0), 10).size());
+    }
+
+    @Test
+    void emptyRingHasNoNodes() {
+        HashRing<String> ring = new HashRing<>(16);
+        assertNull(ring.nodeFor("key"));
+        assertTrue(ring.nodesFor("key", 2).isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    private static void assertNear(long expected, long actual) {
+        // Buckets are 1/16 of a power of two wide, the midpoint is within ~3% of any value in them
+        assertTrue(Math.abs(actual - expected) <= expected * 0.07, "oczekiwano ~" + expected + ", jest " + actual);
+    }
+
+    @Test
+    void quantilesOfUniformLatencies() {
+        Metrics.Histogram histogram = Metrics.histogram("test_uniform_seconds", "", "");
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        assertNear(TimeUnit.MILLISECONDS.toNanos(500), histogram.quantile(0.5));
+        assertNear(TimeUnit.MILLISECONDS.toNanos(950), histogram.quantile(0.95));
+        assertNear(TimeUnit.MILLISECONDS.toNanos(990), histogram.quantile(0.99));
+        assertTrue(histogram.quantile(1) <= TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    void quantileOfEmptyAndSingleValueHistogram() {
+        Metrics.Histogram histogram = Metrics.histogram("test_single_seconds", "", "");
+        assertEquals(0, histogram.quantile(0.95));
+
+        histogram.record(12_345_678);
+        // Capped at the maximum rather than the middle of its bucket
+        assertTrue(histogram.quantile(0.5) <= 12_345_678);
+        assertNear(12_345_678, histogram.quantile(0.5));
+    }
+}
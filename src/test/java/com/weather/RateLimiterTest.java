@@ -0,0 +1,65 @@
+package com.weather;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+
+    private static CompletableFuture<Void> acquireAsync(RateLimiter limiter,
+                                                        RequestContext.Cancellation cancellation) {
+        return CompletableFuture.runAsync(() -> {
+            try (RequestContext.Scope scope = RequestContext.begin(RequestContext.Priority.BATCH, cancellation)) {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static void awaitQueueDepth(RateLimiter limiter, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.queueDepth() != depth && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(depth, limiter.queueDepth());
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueueWithoutPermit() throws Exception {
+        // One permit per second, already taken
+        RateLimiter limiter = new RateLimiter("test=\"cancel\"", 1, 1);
+        limiter.acquire();
+
+        RequestContext.Cancellation cancellation = new RequestContext.Cancellation();
+        CompletableFuture<Void> cancelled = acquireAsync(limiter, cancellation);
+        awaitQueueDepth(limiter, 1);
+        CompletableFuture<Void> behind = acquireAsync(limiter, new RequestContext.Cancellation());
+        awaitQueueDepth(limiter, 2);
+
+        cancellation.cancel();
+        ExecutionException error = assertThrows(ExecutionException.class, () -> cancelled.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, error.getCause());
+
+        // The next permit goes to the waiter behind, the cancelled one did not use it up
+        behind.get(1500, TimeUnit.MILLISECONDS);
+        awaitQueueDepth(limiter, 0);
+    }
+
+    @Test
+    void cancelledRequestDoesNotQueue() {
+        RateLimiter limiter = new RateLimiter("test=\"cancelled\"", 0, 1);
+        RequestContext.Cancellation cancellation = new RequestContext.Cancellation();
+        cancellation.cancel();
+        try (RequestContext.Scope scope = RequestContext.begin(RequestContext.Priority.BATCH, cancellation)) {
+            assertThrows(CancellationException.class, limiter::acquire);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.weather;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesStoreTest {
+
+    private static final double LAT = 52.23;
+    private static final double LON = 21.01;
+    private static final Set<WeatherVariable> TEMPERATURE = Set.of(WeatherVariable.TEMPERATURE);
+
+    @TempDir
+    Path root;
+
+    private TimeSeriesStore store;
+
+    @BeforeEach
+    void open() throws IOException {
+        store = new TimeSeriesStore(root);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private static WeatherData days(LocalDate first, int count) {
+        List<String> times = new ArrayList<>();
+        List<Double> temperatures = new ArrayList<>();
+        LocalDateTime time = first.atStartOfDay();
+        for (int h = 0; h < count * 24; h++, time = time.plusHours(1)) {
+            times.add(time.toString());
+            long hour = time.toEpochSecond(ZoneOffset.UTC) / 3600;
+            temperatures.add(Math.round(Math.sin(hour / 12.0) * 100) / 10.0);
+        }
+        WeatherData data = new WeatherData();
+        data.setTimes(times);
+        data.setTemperatures(temperatures);
+        return data;
+    }
+
+    private Path seriesDirectory() {
+        return root.resolve("52.2300_21.0100").resolve(WeatherVariable.TEMPERATURE.getApiName());
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(seriesDirectory())) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    // Compaction runs in the background; it is done once the old files and their list are gone
+    private void awaitSegments(int count) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (segmentFiles().size() != count || Files.exists(seriesDirectory().resolve("obsolete.txt"))) {
+            assertTrue(System.nanoTime() < deadline, "segmenty: " + segmentFiles());
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void compactionRewritesOnlyYearsWithSeveralSegments() throws Exception {
+        store.append(LAT, LON, days(LocalDate.of(2023, 3, 1), 5), TEMPERATURE);
+        String compacted2023 = segmentFiles().get(0);
+        // Seven segments over two years passes the compaction threshold (years + 4)
+        for (int d = 0; d < 6; d++) {
+            store.append(LAT, LON, days(LocalDate.of(2024, 5, 1).plusDays(d), 1), TEMPERATURE);
+        }
+
+        awaitSegments(2);
+        assertTrue(segmentFiles().contains(compacted2023), "segment 2023 przepisany bez potrzeby");
+
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 6), TEMPERATURE);
+        assertEquals(days(LocalDate.of(2024, 5, 1), 6).getTemperatures(), read.getTemperatures());
+        assertTrue(store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 6)).isEmpty());
+    }
+
+    @Test
+    void obsoleteSegmentsAreDeletedAndSkippedOnOpen() throws Exception {
+        store.append(LAT, LON, days(LocalDate.of(2024, 1, 1), 3), TEMPERATURE);
+        store.close();
+
+        // A replaced segment whose deletion failed: same hours, different values
+        Path directory = seriesDirectory();
+        Path live = directory.resolve(segmentFiles().get(0));
+        Files.copy(live, directory.resolve("0-1.seg"));
+        Files.writeString(directory.resolve("obsolete.txt"), "0-1.seg\n");
+
+        store = new TimeSeriesStore(root);
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3), TEMPERATURE);
+        assertEquals(72, read.getTimes().size());
+        assertEquals(List.of(live.getFileName().toString()), segmentFiles());
+        assertFalse(Files.exists(directory.resolve("obsolete.txt")));
+    }
+
+    @Test
+    void daysWithoutValuesAreMissingAgainAfterRecheckTimeAndRefetchedIntoPlace() throws Exception {
+        store.close();
+        store = new TimeSeriesStore(root, 0);
+        WeatherData data = days(LocalDate.of(2024, 2, 1), 3);
+        List<Double> temperatures = new ArrayList<>(data.getTemperatures());
+        for (int h = 24; h < 48; h++) {
+            temperatures.set(h, null);
+        }
+        // A single missing hour is kept as missing, not as a placeholder value
+        temperatures.set(5, null);
+        data.setTemperatures(temperatures);
+        store.append(LAT, LON, data, TEMPERATURE);
+
+        List<LocalDate[]> gaps = store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 3));
+        assertEquals(1, gaps.size());
+        assertEquals(LocalDate.of(2024, 2, 2), gaps.get(0)[0]);
+        assertEquals(LocalDate.of(2024, 2, 2), gaps.get(0)[1]);
+
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 1), TEMPERATURE);
+        assertNull(read.getTemperatures().get(5));
+
+        store.append(LAT, LON, days(LocalDate.of(2024, 2, 2), 1), TEMPERATURE);
+        assertTrue(store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 3)).isEmpty());
+        read = store.read(LAT, LON, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 3), TEMPERATURE);
+        assertEquals(72, read.getTimes().size());
+        assertEquals(days(LocalDate.of(2024, 2, 2), 1).getTemperatures(), read.getTemperatures().subList(24, 48));
+    }
+
+    @Test
+    void checkedEmptyDaysAreNotMissingAcrossRestarts() throws Exception {
+        WeatherData data = days(LocalDate.of(2024, 2, 10), 2);
+        List<Double> temperatures = new ArrayList<>(data.getTemperatures());
+        for (int h = 24; h < 48; h++) {
+            temperatures.set(h, null);
+        }
+        data.setTemperatures(temperatures);
+        store.append(LAT, LON, data, TEMPERATURE);
+
+        assertTrue(store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 11)).isEmpty());
+        store.close();
+        store = new TimeSeriesStore(root);
+        assertTrue(store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 11)).isEmpty());
+        // An unchecked day next to it is still missing
+        List<LocalDate[]> gaps = store.missingDays(LAT, LON, WeatherVariable.TEMPERATURE,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 12));
+        assertEquals(1, gaps.size());
+        assertEquals(LocalDate.of(2024, 2, 12), gaps.get(0)[0]);
+
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 11), TEMPERATURE);
+        assertEquals(24, read.getTimes().size());
+    }
+
+    @Test
+    void storedValuesWinOverMissingOnesInOverlappingSegments() throws Exception {
+        WeatherData empty = days(LocalDate.of(2024, 3, 1), 2);
+        List<Double> temperatures = new ArrayList<>(empty.getTemperatures());
+        for (int h = 24; h < 48; h++) {
+            temperatures.set(h, h == 30 ? 1.0 : null);
+        }
+        empty.setTemperatures(temperatures);
+        store.append(LAT, LON, empty, TEMPERATURE);
+        store.append(LAT, LON, days(LocalDate.of(2024, 3, 2), 1), TEMPERATURE);
+
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2), TEMPERATURE);
+        List<Double> expected = new ArrayList<>(days(LocalDate.of(2024, 3, 1), 2).getTemperatures());
+        expected.set(30, 1.0);
+        assertEquals(expected, read.getTemperatures());
+    }
+
+    @Test
+    void variablesWithDifferentDaysShareOneTimeAxis() throws Exception {
+        WeatherData data = days(LocalDate.of(2024, 4, 1), 2);
+        List<Double> pressure = new ArrayList<>();
+        for (int h = 0; h < 48; h++) {
+            pressure.add(h < 24 ? 1000.0 + h : null);
+        }
+        data.setPressure(pressure);
+        Set<WeatherVariable> both = Set.of(WeatherVariable.TEMPERATURE, WeatherVariable.PRESSURE);
+        store.append(LAT, LON, data, both);
+
+        WeatherData read = store.read(LAT, LON, LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 2), both);
+        assertEquals(48, read.getTimes().size());
+        assertEquals(data.getTemperatures(), read.getTemperatures());
+        assertEquals(pressure, read.getPressure());
+    }
+
+    // ---- Segment codec -----------------------------------------------------------------------
+
+    private static void assertRoundTrip(long[] times, double[] values) {
+        ByteBuffer[] parts = TimeSeriesStore.encode(times, values, 0, times.length);
+        ByteBuffer segment = ByteBuffer.allocate(parts[0].remaining() + parts[1].remaining());
+        segment.put(parts[0]).put(parts[1]).flip();
+
+        TimeSeriesStore.SegmentReader reader = new TimeSeriesStore.SegmentReader(segment, times.length);
+        for (int i = 0; i < times.length; i++) {
+            assertTrue(reader.next(), "koniec segmentu po " + i + " punktach");
+            assertEquals(times[i], reader.time, "czas " + i);
+            // Bit patterns, so -0.0 differs from 0.0 and NaN equals NaN
+            assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits(reader.value),
+                    "wartość " + i + ": " + values[i] + " != " + reader.value);
+        }
+        assertFalse(reader.next());
+    }
+
+    private static long[] timesFromDeltaOfDeltas(long firstDelta, long... deltaOfDeltas) {
+        long[] times = new long[deltaOfDeltas.length + 2];
+        times[0] = 1_700_000_000L;
+        long delta = firstDelta;
+        times[1] = times[0] + delta;
+        for (int i = 0; i < deltaOfDeltas.length; i++) {
+            delta += deltaOfDeltas[i];
+            times[i + 2] = times[i + 1] + delta;
+        }
+        return times;
+    }
+
+    @Test
+    void codecRoundTripsDeltaOfDeltaBucketBoundaries() {
+        long[] times = timesFromDeltaOfDeltas(Integer.MAX_VALUE,
+                0, 1, -1,
+                63, -64, 64, -65,          // 7 bits and just past them
+                255, -256, 256, -257,      // 9 bits
+                2047, -2048, 2048, -2049,  // 12 bits
+                Integer.MIN_VALUE, Integer.MAX_VALUE, 1_000_000_000, -1_000_000_000,
+                0, 0, 3600, -7200);
+        double[] values = new double[times.length];
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void codecRejectsStepsBeyond32Bits() {
+        double[] values = new double[3];
+        assertThrows(IllegalArgumentException.class, () -> TimeSeriesStore.encode(
+                timesFromDeltaOfDeltas(1L << 31, 0), values, 0, 3));
+        assertThrows(IllegalArgumentException.class, () -> TimeSeriesStore.encode(
+                timesFromDeltaOfDeltas(3600, 1L << 31), values, 0, 3));
+    }
+
+    @Test
+    void codecRoundTripsIrregularSteps() {
+        Random random = new Random(44);
+        long[] times = new long[10_000];
+        double[] values = new double[times.length];
+        times[0] = 1_600_000_000L;
+        for (int i = 1; i < times.length; i++) {
+            long step = switch (random.nextInt(4)) {
+                case 0 -> 3600;
+                case 1 -> 1 + random.nextInt(7200);
+                case 2 -> 1 + random.nextInt(100_000);
+                default -> 1 + random.nextInt(Integer.MAX_VALUE / 2);
+            };
+            times[i] = times[i - 1] + step;
+            values[i] = random.nextInt(5) == 0 ? values[i - 1] : Math.round(random.nextGaussian() * 1000) / 10.0;
+        }
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void codecRoundTripsSpecialValues() {
+        double one = 1.0;
+        double lowestBit = Double.longBitsToDouble(Double.doubleToLongBits(one) ^ 1);
+        double[] values = {
+                Double.NaN, Double.NaN, 0.0, -0.0, 0.0, -0.0, -0.0,
+                // XOR with 63 and 32 leading zeros: the 5-bit count is capped at 31
+                one, lowestBit, one, Double.longBitsToDouble(Double.doubleToLongBits(one) ^ 0xFFFF_FFFFL),
+                // Then a narrower XOR that fits the previous window, and a sign flip using all 64 bits
+                Double.longBitsToDouble(Double.doubleToLongBits(one) ^ 0x10L), -lowestBit,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE,
+                Double.NaN, 1013.25, 1013.25, 1013.3, Double.NaN, -12.5
+        };
+        long[] times = new long[values.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1_700_000_000L + i * 3600L;
+        }
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    void codecRoundTripsSinglePoint() {
+        assertRoundTrip(new long[] {1_700_000_000L}, new double[] {Double.NaN});
+        assertRoundTrip(new long[] {1_700_000_000L}, new double[] {-0.0});
+    }
+}
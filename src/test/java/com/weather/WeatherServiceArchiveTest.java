@@ -0,0 +1,57 @@
+package com.weather;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherServiceArchiveTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path tempDir;
+
+    private OpenMeteoStub stub;
+    private WeatherService service;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new OpenMeteoStub(0, 0);
+        stub.start();
+        service = new WeatherService(4, stub.getForecastUrl(), stub.getHistoricalUrl(),
+                new CacheService("", tempDir.resolve("cache").toString(), 1),
+                new TimeSeriesStore(tempDir.resolve("store")));
+    }
+
+    @AfterEach
+    void stop() {
+        service.close();
+        stub.stop();
+    }
+
+    @Test
+    void variableWithoutValuesIsNotFetchedAgain() throws Exception {
+        stub.setMissingVariables(WeatherVariable.SOIL_TEMPERATURE.getApiName());
+        Set<WeatherVariable> variables = EnumSet.of(WeatherVariable.TEMPERATURE, WeatherVariable.SOIL_TEMPERATURE);
+
+        WeatherData first = service.getHistoricalData(54.6, 18.8, DAY, DAY.plusDays(1), variables);
+        int requests = stub.getRequestCount();
+        assertEquals(1, requests);
+        WeatherData second = service.getHistoricalData(54.6, 18.8, DAY, DAY.plusDays(1), variables);
+
+        assertEquals(requests, stub.getRequestCount());
+        assertEquals(48, second.getTimes().size());
+        assertEquals(first.getTemperatures(), second.getTemperatures());
+        assertEquals(48, second.getSoilTemperature().size());
+        assertTrue(second.getSoilTemperature().stream().allMatch(value -> value == null));
+    }
+}
@@ -0,0 +1,171 @@
+package com.weather;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ponowienia, hedging i Retry-After na zapytaniach do archiwum w lokalnej atrapie Open-Meteo.
+ * Budżet ponowień i histogram czasów endpointu są wspólne dla procesu, więc testy idą w ustalonej
+ * kolejności: hedging potrzebuje zapasu budżetu, który test awarii na końcu wyczerpuje.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class WeatherServiceUpstreamTest {
+
+    private static final long LATENCY_MS = 20;
+    private static final long SLOW_LATENCY_MS = 3000;
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    // Every call asks for other coordinates, so neither the cache nor remembered failures answer it
+    private static final AtomicInteger LOCATIONS = new AtomicInteger();
+
+    @TempDir
+    static Path cacheDir;
+
+    private static OpenMeteoStub stub;
+    private static WeatherService service;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        stub = new OpenMeteoStub(0, LATENCY_MS);
+        stub.setFaults(0, 0, SLOW_LATENCY_MS);
+        stub.start();
+        service = new WeatherService(4, stub.getForecastUrl(), stub.getHistoricalUrl(),
+                new CacheService("", cacheDir.toString(), 1), null);
+        WeatherService.Endpoint.ARCHIVE.limiter.setRate(0, 1);
+
+        // Hedging starts once the endpoint has enough response times for a percentile
+        while (WeatherService.Endpoint.ARCHIVE.fetchTime.getCount() < 20) {
+            fetch();
+        }
+    }
+
+    @AfterAll
+    static void stopStub() {
+        int rate = Integer.getInteger("weather.ratelimit.archive", 5);
+        WeatherService.Endpoint.ARCHIVE.limiter.setRate(rate, 2 * rate);
+        service.close();
+        stub.stop();
+    }
+
+    private static WeatherData fetch() throws Exception {
+        double latitude = 50 + LOCATIONS.incrementAndGet() * 0.01;
+        return service.getHistoricalData(latitude, 20, DAY, DAY, EnumSet.of(WeatherVariable.TEMPERATURE));
+    }
+
+    private static long counter(String name, String labels) {
+        return Metrics.counter(name, "", labels).get();
+    }
+
+    @Test
+    @Order(1)
+    void hedgeAfterPercentileReturnsFirstAnswer() throws Exception {
+        long hedgeDelay = Math.max(TimeUnit.MILLISECONDS.toNanos(50),
+                WeatherService.Endpoint.ARCHIVE.fetchTime.quantile(0.95));
+        long hedges = counter("weather_upstream_retries_total", "reason=\"hedge\"");
+        long wins = counter("weather_upstream_hedge_wins_total", "");
+        int requests = stub.getRequestCount();
+        stub.queueFaults(OpenMeteoStub.Fault.SLOW);
+
+        long start = System.nanoTime();
+        WeatherData data = fetch();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(24, data.getTimes().size());
+        assertEquals(2, stub.getRequestCount() - requests);
+        assertEquals(1, counter("weather_upstream_retries_total", "reason=\"hedge\"") - hedges);
+        // The win is counted in the hedge's completion callback, just after the caller was released
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (counter("weather_upstream_hedge_wins_total", "") == wins && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, counter("weather_upstream_hedge_wins_total", "") - wins);
+        assertTrue(elapsed >= hedgeDelay, "hedge wysłany przed percentylem: " + elapsed);
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(SLOW_LATENCY_MS), "czekano na wolną odpowiedź");
+    }
+
+    @Test
+    @Order(2)
+    void serverErrorsAreRetried() throws Exception {
+        long retries = counter("weather_upstream_retries_total", "reason=\"error\"");
+        int requests = stub.getRequestCount();
+        stub.queueFaults(OpenMeteoStub.Fault.ERROR, OpenMeteoStub.Fault.ERROR);
+
+        WeatherData data = fetch();
+
+        assertEquals(24, data.getTimes().size());
+        assertEquals(3, stub.getRequestCount() - requests);
+        assertEquals(2, counter("weather_upstream_retries_total", "reason=\"error\"") - retries);
+    }
+
+    @Test
+    @Order(3)
+    void retryDelaysAreSpreadOverTheWholeBackoffWindow() {
+        long window = TimeUnit.MILLISECONDS.toNanos(400);
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = WeatherService.retryDelayNanos(1);
+            assertTrue(delay >= 0 && delay < window, "opóźnienie poza oknem: " + delay);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        // A fixed or narrowly jittered backoff would bring failed clients back together
+        assertTrue(min < window / 10, "najkrótsze opóźnienie: " + min);
+        assertTrue(max > window * 9 / 10, "najdłuższe opóźnienie: " + max);
+    }
+
+    @Test
+    @Order(4)
+    void throttledRequestWaitsForRetryAfter() throws Exception {
+        Metrics.Counter throttled = WeatherService.Endpoint.ARCHIVE.throttled;
+        long before = throttled.get();
+        int requests = stub.getRequestCount();
+        stub.queueFaults(OpenMeteoStub.Fault.THROTTLE);
+
+        long start = System.nanoTime();
+        WeatherData data = fetch();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(24, data.getTimes().size());
+        assertEquals(2, stub.getRequestCount() - requests);
+        assertEquals(1, throttled.get() - before);
+        // The stub answers Retry-After: 1
+        assertTrue(elapsed >= TimeUnit.SECONDS.toNanos(1), "ponowiono po " + elapsed + " ns");
+    }
+
+    @Test
+    @Order(5)
+    void retryBudgetStopsRetriesDuringOutage() {
+        long exhausted = counter("weather_upstream_retry_budget_exhausted_total", "");
+        int requests = stub.getRequestCount();
+        stub.setFaults(1, 0, SLOW_LATENCY_MS);
+        try {
+            int calls = 30;
+            for (int i = 0; i < calls; i++) {
+                assertThrows(IOException.class, WeatherServiceUpstreamTest::fetch);
+            }
+            // Without the budget every call would try three times; with it only the reserve
+            // of 10 retries and 0.1 per call are left
+            int sent = stub.getRequestCount() - requests;
+            assertTrue(sent <= calls + 10 + calls / 10, "zapytań w czasie awarii: " + sent);
+            assertTrue(counter("weather_upstream_retry_budget_exhausted_total", "") > exhausted);
+        } finally {
+            stub.setFaults(0, 0, SLOW_LATENCY_MS);
+        }
+    }
+}